@@ -1,3 +1,4 @@
+import java.io.File;
 import java.io.IOException;
 
 import javafx.application.Application;
@@ -6,8 +7,56 @@ public class App {
   public static void main(String[] args) throws IOException {
     System.out.println("v0.1");
     Backend backend = new Backend(new DijkstraGraph<>());
-    backend.loadGraphData("src/campus.dot");
+    // Map the graph's snapshot when that is newer than the dot file, and otherwise parse the dot file
+    // and write a snapshot for the next launch. The app never modifies the graph, so the mapped
+    // read-only graph serves it without building an object per edge. Snapshots are build output, so
+    // they are kept in the user's cache directory rather than beside the sources
+    File dot = new File("src/campus.dot");
+    File snapshot = new File(cacheDirectory(), "campus.snapshot");
+    boolean restored = false;
+    if (snapshot.lastModified() >= dot.lastModified()) {
+      try {
+        backend.mapSnapshot(snapshot.getPath());
+        restored = true;
+      } catch (IOException e) {
+        System.out.println("Ignoring snapshot: " + e.getMessage());
+        backend = new Backend(new DijkstraGraph<>());
+      }
+    }
+    if (!restored) {
+      backend.loadGraphData(dot.getPath());
+      try {
+        backend.saveSnapshot(snapshot.getPath());
+      } catch (IOException e) {
+        System.out.println("Could not write snapshot: " + e.getMessage());
+      }
+    }
+    // Likewise load the contraction hierarchy that answers route queries, or build and save it when
+    // it is missing, damaged, or was built from different graph data
+    File hierarchy = new File(cacheDirectory(), "campus.ch");
+    try {
+      backend.loadContractionHierarchy(hierarchy.getPath());
+    } catch (IOException | RuntimeException e) {
+      if (hierarchy.exists())
+        System.out.println("Ignoring contraction hierarchy: " + e.getMessage());
+      try {
+        backend.saveContractionHierarchy(hierarchy.getPath());
+      } catch (IOException f) {
+        System.out.println("Could not write contraction hierarchy: " + f.getMessage());
+      }
+      backend.graph.setSearchMode(DijkstraGraph.SearchMode.CONTRACTION_HIERARCHY);
+    }
     Frontend.setBackend(backend);
     Application.launch(Frontend.class, args);
   }
+
+  // The directory for files that can be rebuilt from the dot file, created if it is missing
+  private static File cacheDirectory() {
+    String base = System.getenv("XDG_CACHE_HOME");
+    File directory = base == null || base.isEmpty()
+        ? new File(System.getProperty("user.home"), ".cache/campus-routes")
+        : new File(base, "campus-routes");
+    directory.mkdirs();
+    return directory;
+  }
 }
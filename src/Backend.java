@@ -2,23 +2,37 @@ import java.io.IOException;
 import java.util.List;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.file.Paths;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.NoSuchElementException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 /**
  * Backend class implementing the BackendInterface.
- * Provides mock implementations for graph-related operations.
+ * Loads campus graph data from dot files or snapshots and answers route queries on it: single,
+ * via and multi-stop routes, distance matrices and batches of queries, with recently found routes
+ * and shortest path trees cached until the graph or its search settings change. Also completes and
+ * resolves typed location names.
  */
 public class Backend implements BackendInterface {
 
     public DijkstraGraph<String, Double> graph;
-    private Set<String> allNodes; // Data structure to store all nodes
+    // Names of all locations, rebuilt whenever graph data is loaded, for listing and completion
+    protected volatile LocationIndex locations = new LocationIndex(new ArrayList<>());
+    // Bigram index of the same names for resolving misspelled locations, or null until the first
+    // lookup that needs it builds it, so that loading graph data does not pay for it
+    protected volatile FuzzyLocationIndex fuzzyLocations = null;
+    // Routes found by findRoute and findRouteVia, dropped whenever the graph or its search settings change
+    protected final RouteCache<RouteQuery, Route<String>> routeCache = new RouteCache<>(DEFAULT_ROUTE_CACHE_CAPACITY);
+    public static final int DEFAULT_ROUTE_CACHE_CAPACITY = 1024;
+    // Shortest path trees of recently used start locations, or null when trees are not cached
+    protected volatile RouteCache<String, ShortestPathTree<String>> treeCache = null;
 
     /**
      * Constructor for Backend class.
@@ -26,7 +40,8 @@ public class Backend implements BackendInterface {
      */
     public Backend(DijkstraGraph<String, Double> graph) {
         this.graph = graph;
-        this.allNodes = new HashSet<>();
+        if (graph != null)
+            indexLocations(graph);
     }
 
     /**
@@ -35,47 +50,373 @@ public class Backend implements BackendInterface {
      * @throws IOException if there was a problem reading in the specified file
      */
     public void loadGraphData(String filename) throws IOException {
-        // Open the dot file for reading
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            // Define the pattern to match each line in the dot file
-            Pattern pattern = Pattern.compile("\"([^\"]+)\" -> \"([^\"]+)\" \\[seconds=([0-9.]+)\\];");
-            // Read each line in the dot file
-            while ((line = reader.readLine()) != null) {
-                // Match the line with the defined pattern
-                Matcher matcher = pattern.matcher(line);
-                // If the pattern matches
-                if (matcher.find()) {
-                    // Extract the source node, destination node, and edge weight from the matched groups
-                    String sourceNode = matcher.group(1);
-                    String destinationNode = matcher.group(2);
-                    double seconds = Double.parseDouble(matcher.group(3));
-                    // Insert the edge into the graph
-                    graph.insertNode(sourceNode);
-                    graph.insertNode(destinationNode);
-                    graph.insertEdge(sourceNode, destinationNode, seconds);
-                }
-            }
+        // Index edges by their pair of nodes while loading, so that inserting each edge does not
+        // scan the edges already leaving its start location. Queries are answered from the frozen
+        // graph or contraction hierarchy, which never look edges up, so the index is dropped again
+        // afterwards unless it was already on
+        boolean indexed = graph.isEdgeIndexEnabled();
+        graph.setEdgeIndexEnabled(true);
+        try {
+            // Parse line-aligned chunks of the memory-mapped dot file on the common ForkJoinPool,
+            // then insert their edges on this thread in file order, looking up each location's node
+            // id in the graph once and inserting the edge by id, instead of two node insertions
+            // and an edge insertion that each look up their locations again
+            new ParallelDotLoader("seconds").load(Paths.get(filename), (source, destination, seconds) -> {
+                graph.insertEdgeById(nodeIdFor(source), nodeIdFor(destination), seconds);
+            });
+        } finally {
+            graph.setEdgeIndexEnabled(indexed);
+        }
+        indexLocations(graph);
+        System.out.println("Graph data loaded successfully from " + filename);
+    }
+
+
+    /**
+     * Writes the loaded graph, with any landmarks it has computed, to a binary snapshot that
+     * loadSnapshot can restore much faster than loadGraphData can parse the dot file.
+     * @param filename the path of the snapshot file to write
+     * @throws IOException if there was a problem writing the file
+     */
+    public void saveSnapshot(String filename) throws IOException {
+        GraphSnapshot.write(graph, Paths.get(filename));
+    }
+
+    /**
+     * Loads graph data from a snapshot written by saveSnapshot, instead of parsing a dot file.
+     * @param filename the path of the snapshot file to read
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     * @throws IllegalArgumentException if graph data has already been loaded
+     */
+    public void loadSnapshot(String filename) throws IOException {
+        // Index edges only while they are inserted, as loadGraphData does
+        boolean indexed = graph.isEdgeIndexEnabled();
+        graph.setEdgeIndexEnabled(true);
+        try {
+            GraphSnapshot.read(Paths.get(filename), graph);
+        } finally {
+            graph.setEdgeIndexEnabled(indexed);
         }
+        indexLocations(graph);
         System.out.println("Graph data loaded successfully from " + filename);
     }
 
+    /**
+     * Writes the contraction hierarchy of the graph to a file, building it first if the graph does
+     * not have one yet, so that later launches can load it instead of preprocessing again.
+     * @param filename the path of the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void saveContractionHierarchy(String filename) throws IOException {
+        graph.currentContractionHierarchy().save(Paths.get(filename));
+    }
+
+    /**
+     * Loads a contraction hierarchy written by saveContractionHierarchy and answers later queries
+     * with it, using the CONTRACTION_HIERARCHY search mode.
+     * @param filename the path of the file to read
+     * @throws IOException if the file cannot be read, does not hold a contraction hierarchy, is
+     *         damaged, or holds the hierarchy of a graph whose locations, edges or travel times differ
+     */
+    public void loadContractionHierarchy(String filename) throws IOException {
+        ContractionHierarchy<String> hierarchy = ContractionHierarchy.load(Paths.get(filename));
+        try {
+            graph.setContractionHierarchy(hierarchy);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(filename + " was built from different graph data", e);
+        }
+        graph.setSearchMode(DijkstraGraph.SearchMode.CONTRACTION_HIERARCHY);
+    }
+
+    /**
+     * Replaces the graph with a read-only graph served straight from a memory-mapped snapshot
+     * written by saveSnapshot. The graph's edges stay outside the Java heap, so very large graphs
+     * can be served with a small heap, but the graph can no longer be modified. The current search
+     * mode is kept unless it is LINKED, which read-only graphs do not support.
+     * @param filename the path of the snapshot file to map
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public void mapSnapshot(String filename) throws IOException {
+        DijkstraGraph<String, Double> mapped = GraphSnapshot.map(Paths.get(filename));
+        if (graph != null && graph.getSearchMode() != DijkstraGraph.SearchMode.LINKED)
+            mapped.setSearchMode(graph.getSearchMode());
+        graph = mapped;
+        indexLocations(mapped);
+        routeCache.clear();
+        if (treeCache != null)
+            treeCache.clear();
+        System.out.println("Graph data mapped successfully from " + filename);
+    }
+
+    // indexes the names of a graph's locations for listing, completion and fuzzy resolution
+    private void indexLocations(DijkstraGraph<String, Double> graph) {
+        LocationIndex index = LocationIndex.of(graph);
+        synchronized (this) {
+            locations = index;
+            fuzzyLocations = null;
+        }
+    }
+
+    // returns the fuzzy index of the current locations, building it on first use; building under the
+    // same lock that indexLocations replaces the locations under keeps it from indexing stale names
+    private FuzzyLocationIndex fuzzyLocations() {
+        FuzzyLocationIndex fuzzy = fuzzyLocations;
+        if (fuzzy == null) {
+            synchronized (this) {
+                fuzzy = fuzzyLocations;
+                if (fuzzy == null)
+                    fuzzyLocations = fuzzy = new FuzzyLocationIndex(locations.getNames());
+            }
+        }
+        return fuzzy;
+    }
+
+    // returns the id of the node for a location, inserting the node when it is new
+    private int nodeIdFor(String location) {
+        int id = graph.getNodeId(location);
+        if (id < 0) {
+            graph.insertNode(location);
+            id = graph.getNodeId(location);
+        }
+        return id;
+    }
 
     /**
-     * Returns a list of all locations (nodes) available on the backend's graph.
+     * Returns a list of all locations (nodes) available on the backend's graph, sorted by name
+     * ignoring case.
      * @return list of all location names
      */
     public List<String> getListOfAllLocations() {
         // Check if the graph is initialized
         if (graph != null) {
             // If the graph is initialized, return a new ArrayList containing all nodes
-            return new ArrayList<>(allNodes);
+            return new ArrayList<>(locations.getNames());
         } else {
             // If the graph is not initialized, return null
             return null;
         }
     }
 
+    /**
+     * Returns the locations whose names start with prefix, ignoring case, sorted by name.
+     * @param prefix the start of the location names to find
+     * @param limit the largest number of locations to return
+     * @return up to limit location names starting with prefix
+     */
+    public List<String> suggestLocations(String prefix, int limit) {
+        // Binary search the sorted names, so completing a prefix does not scan every location
+        return locations.complete(prefix, limit);
+    }
+
+    /**
+     * Returns the location that loosely typed text most likely names, such as "Helen C White Hall"
+     * for "helen white" or "Memorial Union" for "memorial unoin". Text that is already a location's
+     * name resolves to that location.
+     * @param text the text typed for a location
+     * @return the best matching location, or null if no location is close to text
+     */
+    public String resolveLocation(String text) {
+        if (locations.contains(text))
+            return text;
+        return fuzzyLocations().resolve(text);
+    }
+
+    /**
+     * Returns the locations that loosely typed text may name, best match first.
+     * @param text the text typed for a location
+     * @param limit the largest number of locations to return
+     * @return up to limit locations matching text, or an empty list if none do
+     */
+    public List<String> resolveLocations(String text, int limit) {
+        return fuzzyLocations().match(text, limit);
+    }
+
+
+    /**
+     * Returns the shortest route from startLocation to endLocation, found with a single search, or
+     * an empty route if no such path exists.
+     * @param startLocation the start location of the route
+     * @param endLocation the end location of the route
+     * @return the route with the nodes, travel times, and total time from startLocation to
+     *         endLocation, or an empty route if no such path exists
+     */
+    public Route<String> findRoute(String startLocation, String endLocation) {
+        // Check if the graph is initialized and contains both locations
+        if (graph == null || !graph.containsNode(startLocation) || !graph.containsNode(endLocation)) {
+            // If not, there is no route and nothing was searched
+            return Route.empty(0);
+        }
+
+        // Reuse the route found for an earlier query while neither the graph nor the search settings
+        // have changed since
+        return routeCache.computeIfAbsent(new RouteQuery(startLocation, endLocation),
+                graph.getResultVersion(), query -> {
+                    RouteCache<String, ShortestPathTree<String>> trees = treeCache;
+                    if (trees != null)
+                        return routeFromTree(trees, startLocation, endLocation);
+                    try {
+                        // Use Dijkstra's algorithm to find the shortest route
+                        return graph.shortestRoute(startLocation, endLocation);
+                    } catch (NoSuchElementException e) {
+                        // If no path exists, return an empty route
+                        return Route.empty(graph.getLastSettledCount());
+                    }
+                });
+    }
+
+
+    /**
+     * Returns the shortest route from startLocation to endLocation that leads through viaLocation,
+     * found with one search per leg, or an empty route if no such path exists.
+     * @param startLocation the start location of the route
+     * @param viaLocation a location that the route should lead through
+     * @param endLocation the end location of the route
+     * @return the route with the nodes, travel times, and total time from startLocation to
+     *         endLocation through viaLocation, or an empty route if no such path exists
+     */
+    public Route<String> findRouteVia(String startLocation, String viaLocation, String endLocation) {
+        // Reuse the route found for the same query earlier, while the graph has not changed since
+        RouteQuery query = new RouteQuery(startLocation, viaLocation, endLocation);
+        if (graph != null) {
+            Route<String> cached = routeCache.get(query, graph.getResultVersion());
+            if (cached != null)
+                return cached;
+        }
+
+        // Find and combine the legs to and from viaLocation, which findRoute may take from the cache
+        Route<String> route = findRouteThrough(Arrays.asList(startLocation, viaLocation, endLocation));
+        if (graph != null)
+            routeCache.put(query, route, graph.getResultVersion());
+        return route;
+    }
+
+    /**
+     * Returns the shortest route that visits waypoints in the given order, found with one search per leg.
+     * Legs that were found before, such as a leg travelled twice, are taken from the route cache.
+     * @param waypoints the locations to visit in order, starting with the start location and ending with
+     *        the end location
+     * @return the route through every waypoint in order, with the travel time of every hop, or an empty
+     *         route if some leg has no path
+     * @throws IllegalArgumentException if fewer than two waypoints are given
+     */
+    public Route<String> findRouteThrough(List<String> waypoints) {
+        if (waypoints.size() < 2)
+            throw new IllegalArgumentException("a route needs a start and an end location");
+        Route<String> route = findRoute(waypoints.get(0), waypoints.get(1));
+        // Once a leg has no path the whole route is empty, so the remaining legs are not searched
+        for (int i = 2; i < waypoints.size() && !route.isEmpty(); i++)
+            route = route.append(findRoute(waypoints.get(i - 1), waypoints.get(i)));
+        return route;
+    }
+
+    /**
+     * Returns the shortest route from startLocation to endLocation that visits every one of stopLocations
+     * in whichever order is quickest. The travel times between all of the locations are computed once,
+     * as a distance matrix. The order of the stops is chosen from that matrix, exactly for up to
+     * WaypointOrder.EXACT_LIMIT stops and with 2-opt and Or-opt improvements for more. The route is then
+     * put together from the paths behind the matrix without searching again.
+     * @param startLocation the start location of the route
+     * @param stopLocations the locations to visit, in any order
+     * @param endLocation the end location of the route, which is startLocation for a round trip
+     * @return the route through every stop, with the travel time of every hop, or an empty route if a
+     *         location is not in the graph or the stops cannot all be reached
+     */
+    public Route<String> findRouteVisiting(String startLocation, List<String> stopLocations,
+            String endLocation) {
+        List<String> waypoints = new ArrayList<>();
+        waypoints.add(startLocation);
+        waypoints.addAll(stopLocations);
+        waypoints.add(endLocation);
+        // Check if the graph is initialized and contains every location
+        if (graph == null)
+            return Route.empty(0);
+        for (String waypoint : waypoints)
+            if (!graph.containsNode(waypoint))
+                return Route.empty(0);
+
+        // Compute the travel times between all waypoints together, keeping the paths behind them
+        DistanceMatrix<String> matrix = graph.distanceMatrix(waypoints, waypoints, true);
+        int[] order = WaypointOrder.plan(matrix.getCosts());
+
+        // Follow the route of each leg in the chosen order, whose travel times come from the search
+        // behind the matrix rather than from looking up each hop's edge
+        List<String> nodes = new ArrayList<>();
+        List<Double> travelTimes = new ArrayList<>();
+        nodes.add(startLocation);
+        double totalCost = 0;
+        for (int i = 1; i < order.length; i++) {
+            double legCost = matrix.getCost(order[i - 1], order[i]);
+            if (legCost == Double.POSITIVE_INFINITY)
+                return Route.empty(matrix.getSettledCount());
+            Route<String> leg = matrix.getRoute(order[i - 1], order[i]);
+            nodes.addAll(leg.getNodes().subList(1, leg.getNodes().size()));
+            travelTimes.addAll(leg.getTravelTimes());
+            totalCost += legCost;
+        }
+        return new Route<>(nodes, travelTimes, totalCost, matrix.getSettledCount());
+    }
+
+    /**
+     * Finds a route by walking the shortest path tree of its start location, searching the whole
+     * graph from the start location only when its tree is not cached yet.
+     */
+    private Route<String> routeFromTree(RouteCache<String, ShortestPathTree<String>> trees,
+            String startLocation, String endLocation) {
+        int version = graph.getResultVersion();
+        ShortestPathTree<String> tree = trees.get(startLocation, version);
+        int settled = 0;
+        if (tree == null) {
+            tree = graph.shortestPathTree(startLocation);
+            trees.put(startLocation, tree, version);
+            settled = tree.getSettledCount();
+        }
+        if (!tree.reaches(endLocation))
+            return Route.empty(settled);
+        Route<String> route = tree.routeTo(endLocation);
+        // only the search that built the tree settled any nodes
+        return new Route<>(route.getNodes(), route.getTravelTimes(), route.getTotalCost(), settled);
+    }
+
+    /**
+     * Starts or stops keeping the shortest path trees of recently used start locations. While trees
+     * are kept, findRoute answers a query whose start location has a cached tree by walking the
+     * tree's parent pointers instead of searching, and otherwise searches the whole graph from the
+     * start location once and caches the resulting tree. This suits workloads where many queries
+     * share a start location, such as a kiosk asking for routes to everywhere.
+     * @param memoryBudget the largest number of bytes the cached trees may take up, or 0 to stop
+     *        caching trees
+     * @param policy which tree to evict when the budget is used up
+     * @throws IllegalArgumentException if memoryBudget is negative
+     */
+    public void setShortestPathTreeCache(long memoryBudget, RouteCache.EvictionPolicy policy) {
+        if (memoryBudget < 0)
+            throw new IllegalArgumentException("memory budget must not be negative");
+        treeCache = memoryBudget == 0 ? null
+                : new RouteCache<>(memoryBudget, policy, ShortestPathTree::getMemorySize);
+        // routes cached before were found without the trees
+        routeCache.clear();
+    }
+
+    /**
+     * Returns the cache of shortest path trees, whose weight is the number of bytes the cached trees
+     * take up, and whose hit and miss counts show how often a route was read from a cached tree.
+     * @return the tree cache, or null if trees are not cached
+     */
+    public RouteCache<String, ShortestPathTree<String>> getShortestPathTreeCache() {
+        return treeCache;
+    }
+
+    /**
+     * Returns the cache of routes found by findRoute and findRouteVia, whose capacity can be changed
+     * and whose hit and miss counts show how often it avoids a search. The cache is dropped whenever
+     * the graph is modified or a setting that changes its search results, such as the search mode, is
+     * changed.
+     * @return the route cache of this backend
+     */
+    public RouteCache<RouteQuery, Route<String>> getRouteCache() {
+        return routeCache;
+    }
+
 
     /**
      * Returns the sequence of locations along the shortest path from startLocation to endLocation, or
@@ -86,23 +427,7 @@ public class Backend implements BackendInterface {
      *         an empty list if no such path exists
      */
     public List<String> findShortestPath(String startLocation, String endLocation) {
-        // Check if the graph is initialized
-        if (graph == null) {
-            // If the graph is not initialized, return an empty list
-            return new ArrayList<>();
-        }
-        System.out.println("Start: " + startLocation);
-
-        // Use Dijkstra's algorithm to find the shortest path
-        List<String> shortestPath = graph.shortestPathData(startLocation, endLocation);
-        System.out.println("Path: " + shortestPath.toString());
-
-        // If no path exists, return an empty list
-        if (shortestPath.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        return shortestPath;
+        return findRoute(startLocation, endLocation).getNodes();
     }
 
 
@@ -115,34 +440,7 @@ public class Backend implements BackendInterface {
      *         startLocation to endLocation, or an empty list if no such path exists
      */
     public List<Double> getTravelTimesOnPath(String startLocation, String endLocation) {
-        // Check if the graph is initialized
-        if (graph == null) {
-            // If the graph is not initialized, return an empty list
-            return new ArrayList<>();
-        }
-
-        // Use Dijkstra's algorithm to find the shortest path
-        List<String> shortestPath = graph.shortestPathData(startLocation, endLocation);
-
-        // If no path exists, return an empty list
-        if (shortestPath.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // Initialize the list to store travel times
-        List<Double> travelTimes = new ArrayList<>();
-
-        // Iterate through the shortest path and retrieve the travel times between consecutive nodes
-        for (int i = 0; i < shortestPath.size() - 1; i++) {
-            String currentLocation = shortestPath.get(i);
-            String nextLocation = shortestPath.get(i + 1);
-
-            // Retrieve the travel time between the current and next locations from the graph
-            Double time = graph.getEdge(currentLocation, nextLocation);
-            travelTimes.add(time);
-        }
-
-        return travelTimes;
+        return findRoute(startLocation, endLocation).getTravelTimes();
     }
 
 
@@ -157,28 +455,7 @@ public class Backend implements BackendInterface {
      *         viaLocation, or an empty list if no such path exists
      */
     public List<String> findShortestPathVia(String startLocation, String viaLocation, String endLocation) {
-        // Check if the graph is initialized
-        if (graph == null) {
-            // If the graph is not initialized, return an empty list
-            return new ArrayList<>();
-        }
-
-        // Find the shortest path from startLocation to viaLocation
-        List<String> pathFromStartToVia = graph.shortestPathData(startLocation, viaLocation);
-
-        // Find the shortest path from viaLocation to endLocation
-        List<String> pathFromViaToEnd = graph.shortestPathData(viaLocation, endLocation);
-
-        // If either path is empty, it means there is no path from startLocation to endLocation via viaLocation
-        if (pathFromStartToVia.isEmpty() || pathFromViaToEnd.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // Combine the two paths to form the final path
-        List<String> finalPath = new ArrayList<>(pathFromStartToVia);
-        finalPath.addAll(pathFromViaToEnd.subList(1, pathFromViaToEnd.size())); // Exclude the first node from the second path
-
-        return finalPath;
+        return findRouteVia(startLocation, viaLocation, endLocation).getNodes();
     }
 
 
@@ -192,39 +469,99 @@ public class Backend implements BackendInterface {
      *         startLocation to endLocationthrough viaLocation, or an empty list if no such path exists
      */
     public List<Double> getTravelTimesOnPathVia(String startLocation, String viaLocation, String endLocation) {
-        // Check if the graph is initialized
-        if (graph == null) {
-            // If the graph is not initialized, return an empty list
-            return new ArrayList<>();
-        }
+        return findRouteVia(startLocation, viaLocation, endLocation).getTravelTimes();
+    }
 
-        // Find the shortest path from startLocation to viaLocation
-        List<String> pathFromStartToVia = graph.shortestPathData(startLocation, viaLocation);
 
-        // Find the shortest path from viaLocation to endLocation
-        List<String> pathFromViaToEnd = graph.shortestPathData(viaLocation, endLocation);
+    /**
+     * Returns the walking times in seconds of the shortest paths from each of the originLocations to
+     * each of the destinationLocations, computed together rather than one pair at a time.
+     * @param originLocations the locations the paths start at
+     * @param destinationLocations the locations the paths end at
+     * @param keepPaths whether the returned matrix should also be able to return the path behind each entry
+     * @return a matrix whose entry (i, j) is the walking time from the i-th origin to the j-th destination,
+     *         or Double.POSITIVE_INFINITY if no such path exists
+     * @throws java.util.NoSuchElementException if any of the locations is not in the graph
+     */
+    public DistanceMatrix<String> getTravelTimeMatrix(List<String> originLocations,
+            List<String> destinationLocations, boolean keepPaths) {
+        return graph.distanceMatrix(originLocations, destinationLocations, keepPaths);
+    }
 
-        // If either path is empty, it means there is no path from startLocation to endLocation via viaLocation
-        if (pathFromStartToVia.isEmpty() || pathFromViaToEnd.isEmpty()) {
-            return new ArrayList<>();
-        }
 
-        // Combine the two paths to form the final path
-        List<String> finalPath = new ArrayList<>(pathFromStartToVia);
-        finalPath.addAll(pathFromViaToEnd.subList(1, pathFromViaToEnd.size())); // Exclude the first node from the second path
+    /**
+     * Finds the shortest route of every query in a batch, running the queries concurrently on executor.
+     * Each worker thread searches with its own search state, while the graph itself is only read, so
+     * the graph must not be modified until this method returns. Any executor can be used, such as a
+     * fixed pool of platform threads or a virtual thread per task executor.
+     * @param queries the queries to answer
+     * @param executor the executor to run the queries on
+     * @return the route of each query, in the same order as queries, where a query whose locations are
+     *         not connected or not in the graph has an empty route
+     */
+    public List<Route<String>> findRoutes(List<RouteQuery> queries, Executor executor) {
+        return runBatch(queries, executor, this::routeOf);
+    }
 
-        // Initialize the list to store travel times
-        List<Double> travelTimes = new ArrayList<>();
+    /**
+     * Finds the shortest path of every query in a batch, running the queries concurrently on executor in
+     * the same way as findRoutes.
+     * @param queries the queries to answer
+     * @param executor the executor to run the queries on
+     * @return the path of each query, in the same order as queries, where a query whose locations are
+     *         not connected or not in the graph has an empty list
+     */
+    public List<List<String>> findShortestPaths(List<RouteQuery> queries, Executor executor) {
+        return runBatch(queries, executor, query -> routeOf(query).getNodes());
+    }
 
-        // Iterate through the final path and calculate the travel times between consecutive nodes
-        for (int i = 0; i < finalPath.size() - 1; i++) {
-            String currentNode = finalPath.get(i);
-            String nextNode = finalPath.get(i + 1);
-            Double time = graph.getEdge(currentNode, nextNode);
-            travelTimes.add(time);
+    /**
+     * Finds the walking times in seconds between each two nodes on the shortest path of every query in a
+     * batch, running the queries concurrently on executor in the same way as findRoutes.
+     * @param queries the queries to answer
+     * @param executor the executor to run the queries on
+     * @return the travel times of each query, in the same order as queries, where a query whose
+     *         locations are not connected or not in the graph has an empty list
+     */
+    public List<List<Double>> getTravelTimesOnPaths(List<RouteQuery> queries, Executor executor) {
+        return runBatch(queries, executor, query -> routeOf(query).getTravelTimes());
+    }
+
+    /**
+     * Runs one function for each query on executor, and collects their results in input order.
+     */
+    private <T> List<T> runBatch(List<RouteQuery> queries, Executor executor, Function<RouteQuery, T> answer) {
+        if (graph == null) {
+            // If the graph is not initialized, every query gets an empty answer
+            List<T> results = new ArrayList<>();
+            for (RouteQuery query : queries)
+                results.add(answer.apply(query));
+            return results;
         }
+        // Take the snapshot searched by the workers once, before they start
+        graph.freeze();
+        List<CompletableFuture<T>> futures = new ArrayList<>(queries.size());
+        for (RouteQuery query : queries)
+            futures.add(CompletableFuture.supplyAsync(() -> answer.apply(query), executor));
+        List<T> results = new ArrayList<>(queries.size());
+        try {
+            for (CompletableFuture<T> future : futures)
+                results.add(future.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return results;
+    }
 
-        return travelTimes;
+    /**
+     * Returns the route answering one query.
+     */
+    private Route<String> routeOf(RouteQuery query) {
+        if (query.hasViaLocation())
+            return findRouteVia(query.getStartLocation(), query.getViaLocation(), query.getEndLocation());
+        return findRoute(query.getStartLocation(), query.getEndLocation());
     }
 
-}
+}
\ No newline at end of file
@@ -1,4 +1,30 @@
 import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class BackendDeveloperTests {
@@ -77,4 +103,1218 @@ public class BackendDeveloperTests {
         // Print the path passing through the via location (for debugging)
         System.out.println("Shortest path via " + viaLocation + ": " + pathVia);
     }
+
+    /**
+     * Test to verify that a batch of queries run concurrently returns the same paths and travel times,
+     * in input order, as running each query on its own.
+     */
+    @Test
+    void testBatchQueriesMatchSingleQueries() throws Exception {
+        Backend campus = new Backend(new DijkstraGraph<>());
+        campus.loadGraphData("src/campus.dot");
+        List<String> locations = new ArrayList<>();
+        FrozenGraph<String> nodes = campus.graph.freeze();
+        for (int i = 0; i < nodes.getIndexCount(); i++)
+            locations.add(nodes.getData(i));
+
+        // Build queries with and without via locations, plus one with an unknown location
+        List<RouteQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            String start = locations.get((i * 7) % locations.size());
+            String end = locations.get((i * 13 + 3) % locations.size());
+            if (i % 3 == 0)
+                queries.add(new RouteQuery(start, locations.get((i * 5 + 1) % locations.size()), end));
+            else
+                queries.add(new RouteQuery(start, end));
+        }
+        queries.add(new RouteQuery("Union South", "Nowhere"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<List<String>> paths = campus.findShortestPaths(queries, executor);
+            List<List<Double>> times = campus.getTravelTimesOnPaths(queries, executor);
+            assertEquals(queries.size(), paths.size());
+            for (int i = 0; i < queries.size(); i++) {
+                RouteQuery query = queries.get(i);
+                List<String> expected;
+                try {
+                    expected = query.hasViaLocation()
+                            ? campus.findShortestPathVia(query.getStartLocation(), query.getViaLocation(),
+                                    query.getEndLocation())
+                            : campus.findShortestPath(query.getStartLocation(), query.getEndLocation());
+                } catch (NoSuchElementException e) {
+                    expected = new ArrayList<>();
+                }
+                assertEquals(expected, paths.get(i));
+                assertEquals(Math.max(0, expected.size() - 1), times.get(i).size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that measures the throughput of batch queries on a synthetic grid graph with about one
+     * million edges on 1 through N worker threads, where N is the number of available cores, and
+     * verifies that every thread count returns the same paths.
+     */
+    @Test
+    void testBatchThroughputScaling() throws Exception {
+        int side = 500;
+        DijkstraGraph<String, Double> grid = DijkstraGraph.gridGraph(9, side, Integer::toString);
+        grid.setSearchMode(DijkstraGraph.SearchMode.BIDIRECTIONAL);
+        Backend backend = new Backend(grid);
+        // every thread count reruns the same queries, which must be searched rather than cached
+        backend.getRouteCache().setCapacity(0);
+
+        Random random = new Random(9);
+        List<RouteQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 96; i++)
+            queries.add(new RouteQuery(Integer.toString(random.nextInt(side * side)),
+                    Integer.toString(random.nextInt(side * side))));
+        // the first batch freezes the graph and warms up the searches, and is not timed
+        ExecutorService warmup = Executors.newSingleThreadExecutor();
+        List<List<String>> expected;
+        try {
+            expected = backend.findShortestPaths(queries, warmup);
+        } finally {
+            warmup.shutdown();
+        }
+        for (List<String> path : expected)
+            assertFalse(path.isEmpty());
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(cores, 2); threads++) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                long start = System.nanoTime();
+                List<List<String>> paths = backend.findShortestPaths(queries, executor);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                assertEquals(expected, paths);
+                System.out.printf("%d edges, %d threads: %.0f queries/s%n", grid.getEdgeCount(), threads,
+                        queries.size() / seconds);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test to verify that the streaming DOT parser reads the same edges and weights as the regular
+     * expression the backend used to match each line with, that it also handles other DOT syntax,
+     * including statements across lines and edge attribute statements, and that it rejects syntax it
+     * does not support.
+     */
+    @Test
+    void testDotParserMatchesRegexLoader() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get("src/campus.dot"))) {
+            Matcher matcher = LEGACY_EDGE.matcher(line);
+            if (matcher.find())
+                expected.add(matcher.group(1) + "|" + matcher.group(2) + "|" + Double.parseDouble(matcher.group(3)));
+        }
+        List<String> actual = new ArrayList<>();
+        DotParser parser = new DotParser("seconds", (source, target, weight) -> actual.add(source + "|" + target + "|" + weight));
+        try (InputStream in = new FileInputStream("src/campus.dot")) {
+            assertEquals(expected.size(), parser.parse(in));
+        }
+        assertEquals(expected, actual);
+
+        // Chains, unquoted and escaped ids, comments, attribute lists without a weight, default
+        // attribute statements, and weights that need the slow path
+        String dot = "strict digraph \"g\" {\n"
+                + "  rankdir=LR; node [shape=box, seconds=99]\n"
+                + "  // a comment -> \"x\" [seconds=1]\n"
+                + "  a -> b -> \"c \\\"d\\\"\" [color=red, seconds = 2.5] /* block\n -> comment */\n"
+                + "  b -> a [seconds=.001][label=\"x\"]\n"
+                + "  # a preprocessor line\n"
+                + "  a -> c [color=blue]\n"
+                + "  lonely\n"
+                + "  b -> a [seconds=156.49999999999997]; c -> a [seconds=0.000000000000000000000001]\n"
+                + "}\n";
+        List<String> edges = new ArrayList<>();
+        List<String> nodes = new ArrayList<>();
+        DotParser general = new DotParser("seconds", new DotParser.EdgeHandler() {
+            public void node(String name) {
+                nodes.add(name);
+            }
+
+            public void edge(String source, String target, double weight) {
+                edges.add(source + "|" + target + "|" + weight);
+            }
+        });
+        assertEquals(5, general.parse(new ByteArrayInputStream(dot.getBytes("UTF-8"))));
+        assertEquals(List.of("a|b|2.5", "b|c \"d\"|2.5", "b|a|0.001", "b|a|156.49999999999997", "c|a|1.0E-24"),
+                edges);
+        assertEquals(List.of("lonely"), nodes);
+        assertThrows(IllegalArgumentException.class, () -> general.parse(
+                new ByteArrayInputStream("a -> b [seconds=fast]".getBytes("UTF-8"))));
+
+        // statements end at semicolons or where the next one starts, not at line breaks, and edge
+        // attribute statements weigh the edges after them up to the end of their braces
+        String spanning = "digraph {\n"
+                + "  a -> b\n    [seconds=3]\n"
+                + "  b\n    -> c [seconds=4];\n"
+                + "  edge [seconds=7]\n"
+                + "  c -> a\n"
+                + "  subgraph s { edge [color=red, seconds=2]; a -> c }\n"
+                + "  c -> b; b -> a [seconds=1]\n"
+                + "}\n";
+        edges.clear();
+        nodes.clear();
+        assertEquals(6, general.parse(new ByteArrayInputStream(spanning.getBytes("UTF-8"))));
+        assertEquals(List.of("a|b|3.0", "b|c|4.0", "c|a|7.0", "a|c|2.0", "c|b|7.0", "b|a|1.0"), edges);
+        assertEquals(List.of(), nodes);
+        for (String unsupported : List.of("a -> {b c} [seconds=1]", "a:n -> b [seconds=1]", "a -> [seconds=1]",
+                "a -> b, c [seconds=1]", "rankdir=;"))
+            assertThrows(IllegalArgumentException.class, () -> general.parse(
+                    new ByteArrayInputStream(unsupported.getBytes("UTF-8"))));
+    }
+
+    /**
+     * Measures the throughput in MB/s of loading a synthetic DOT file with about 400 thousand edges,
+     * comparing the streaming parser with the regular expression the backend used to match each line.
+     */
+    @Test
+    void testDotParserThroughput() throws Exception {
+        File file = writeGridDot(320, 5);
+        double megabytes = file.length() / 1e6;
+
+        double[] regexSeconds = new double[1];
+        double[] parserSeconds = new double[1];
+        int[] edgeCounts = new int[2];
+        for (int round = 0; round < 2; round++) { // the first round warms up both loaders
+            long begin = System.nanoTime();
+            DijkstraGraph<String, Double> legacy = new DijkstraGraph<>();
+            legacy.setEdgeIndexEnabled(true);
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Matcher matcher = LEGACY_EDGE.matcher(line);
+                    if (matcher.find()) {
+                        legacy.insertNode(matcher.group(1));
+                        legacy.insertNode(matcher.group(2));
+                        legacy.insertEdge(matcher.group(1), matcher.group(2), Double.parseDouble(matcher.group(3)));
+                    }
+                }
+            }
+            regexSeconds[0] = (System.nanoTime() - begin) / 1e9;
+            edgeCounts[0] = legacy.getEdgeCount();
+
+            begin = System.nanoTime();
+            Backend backend = new Backend(new DijkstraGraph<>());
+            backend.loadGraphData(file.getPath());
+            parserSeconds[0] = (System.nanoTime() - begin) / 1e9;
+            edgeCounts[1] = backend.graph.getEdgeCount();
+        }
+        assertEquals(edgeCounts[0], edgeCounts[1]);
+        System.out.printf("Loading %.1f MB of DOT: regex %.1f MB/s, DotParser %.1f MB/s%n", megabytes,
+                megabytes / regexSeconds[0], megabytes / parserSeconds[0]);
+    }
+
+    /**
+     * Test to verify that loading a DOT file in line-aligned chunks on several threads passes the same
+     * edges, in the same order, as parsing it on one thread, also when statements, comments, quoted ids
+     * or edge attribute statements cross chunk boundaries, and measures how loading scales with the
+     * number of threads.
+     */
+    @Test
+    void testParallelLoaderMatchesStreamingParser() throws Exception {
+        File file = writeGridDot(250, 6);
+        List<String> expected = new ArrayList<>();
+        try (InputStream in = new FileInputStream(file)) {
+            new DotParser("seconds", (source, target, weight) -> expected.add(source + "|" + target + "|" + weight))
+                    .parse(in);
+        }
+
+        double megabytes = file.length() / 1e6;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Parsing %.1f MB of DOT in chunks:%n", megabytes);
+        for (int threads = 1; threads <= Math.max(cores, 2); threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                // small chunks, so that many chunk boundaries fall inside lines
+                ParallelDotLoader loader = new ParallelDotLoader("seconds", pool, 100_000);
+                List<String> actual = new ArrayList<>();
+                loader.load(file.toPath(), (source, target, weight) -> actual.add(source + "|" + target + "|" + weight));
+                assertEquals(expected, actual);
+
+                int[] edges = new int[1];
+                long begin = System.nanoTime();
+                loader.load(file.toPath(), (source, target, weight) -> edges[0]++);
+                double seconds = (System.nanoTime() - begin) / 1e9;
+                assertEquals(expected.size(), edges[0]);
+                int chunks;
+                try (FileChannel channel = FileChannel.open(file.toPath())) {
+                    chunks = loader.chunkBounds(channel).length - 1;
+                }
+                assertTrue(chunks > 1);
+                System.out.printf("  %d threads: %d chunks at %.1f MB/s%n", threads, chunks, megabytes / seconds);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        // a chunk for about every line, so that each of these splits across several chunks
+        String[] crossing = {
+            "a -> b\n  [seconds=3]\n",
+            "/* a comment\n  -> \"x\" [seconds=1];\n*/\n",
+            "\"a long\\\nname\" -> b [seconds=2];\n",
+            "edge [seconds=7]\nc -> d\n",
+            "subgraph s {\n  edge [seconds=5];\n  e -> f;\n}\ne -> f;\n",
+            "g -> h -> i [seconds=4]\nlonely\n",
+        };
+        ForkJoinPool pool = new ForkJoinPool(64);
+        try {
+            ParallelDotLoader loader = new ParallelDotLoader("seconds", pool, 16);
+            for (String snippet : crossing) {
+                StringBuilder dot = new StringBuilder("digraph {\n");
+                for (int i = 0; i < 20; i++)
+                    dot.append("\"n").append(i).append("\" -> \"n").append(i + 1).append("\" [seconds=1];\n");
+                dot.append(snippet);
+                for (int i = 20; i < 40; i++)
+                    dot.append("\"n").append(i).append("\" -> \"n").append(i + 1).append("\" [seconds=1];\n");
+                dot.append("}\n");
+                File tricky = File.createTempFile("crossing", ".dot");
+                tricky.deleteOnExit();
+                Files.write(tricky.toPath(), dot.toString().getBytes("UTF-8"));
+
+                List<String> sequential = new ArrayList<>();
+                DotParser.EdgeHandler sequentialHandler = new DotParser.EdgeHandler() {
+                    public void node(String name) {
+                        sequential.add(name);
+                    }
+
+                    public void edge(String source, String target, double weight) {
+                        sequential.add(source + "|" + target + "|" + weight);
+                    }
+                };
+                new DotParser("seconds", sequentialHandler).parse(new ByteArrayInputStream(
+                        dot.toString().getBytes("UTF-8")));
+                List<String> parallel = new ArrayList<>();
+                DotParser.EdgeHandler parallelHandler = new DotParser.EdgeHandler() {
+                    public void node(String name) {
+                        parallel.add(name);
+                    }
+
+                    public void edge(String source, String target, double weight) {
+                        parallel.add(source + "|" + target + "|" + weight);
+                    }
+                };
+                loader.load(tricky.toPath(), parallelHandler);
+                assertEquals(sequential, parallel);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(IOException.class,
+                () -> new ParallelDotLoader("seconds").load(Paths.get("src/missing.dot"), (s, t, w) -> { }));
+    }
+
+    /**
+     * Test to verify that the streaming parser and the parallel loader accept only the unsigned decimal
+     * weights the backend's old regular expression matched, and reject negative, infinite and NaN weights
+     * and weights with signs, exponents or type suffixes rather than loading them or dropping their edges.
+     */
+    @Test
+    void testInvalidWeightsAreRejected() throws Exception {
+        List<String> edges = new ArrayList<>();
+        DotParser parser = new DotParser("seconds", (source, target, weight) -> edges.add(source + "|" + target + "|" + weight));
+        parser.parse(new ByteArrayInputStream("a -> b [seconds=12]; b -> c [seconds=0.5]; c -> a [seconds=.25]; a -> c [seconds=\"3.\"]"
+                .getBytes("UTF-8")));
+        assertEquals(List.of("a|b|12.0", "b|c|0.5", "c|a|0.25", "a|c|3.0"), edges);
+
+        String huge = "1" + "0".repeat(400);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String weight : List.of("-5", "+5", "\"-5\"", "1e-3", "1E3", "Infinity", "-Infinity", "NaN", "1d", "1f",
+                    "1.5F", "0x10", "1.2.3", ".", huge)) {
+                String edge = "\"A\" -> \"B\" [seconds=" + weight + "];\n";
+                assertThrows(IllegalArgumentException.class, () -> parser.parse(
+                        new ByteArrayInputStream(edge.getBytes("UTF-8"))), weight);
+
+                // the whole file in one chunk, and the invalid weight in a chunk of its own after many others
+                File file = File.createTempFile("invalid", ".dot");
+                file.deleteOnExit();
+                StringBuilder dot = new StringBuilder("digraph {\n");
+                for (int i = 0; i < 40; i++)
+                    dot.append("\"n").append(i).append("\" -> \"n").append(i + 1).append("\" [seconds=1];\n");
+                dot.append(edge).append("}\n");
+                Files.write(file.toPath(), dot.toString().getBytes("UTF-8"));
+                assertThrows(IllegalArgumentException.class,
+                        () -> new ParallelDotLoader("seconds").load(file.toPath(), (s, t, w) -> { }), weight);
+                assertThrows(IllegalArgumentException.class,
+                        () -> new ParallelDotLoader("seconds", pool, 16).load(file.toPath(), (s, t, w) -> { }), weight);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test to verify that a graph restored from a snapshot finds the same routes as the graph it was
+     * written from, reuses the snapshot's frozen graph and landmarks, and rejects corrupted files. Also
+     * verifies that mapping the snapshot of a larger graph, as App does at startup, is several times
+     * faster than parsing its dot file.
+     */
+    @Test
+    void testSnapshotRoundTrip() throws Exception {
+        Backend original = new Backend(new DijkstraGraph<>());
+        original.loadGraphData("src/campus.dot");
+        original.graph.setSearchMode(DijkstraGraph.SearchMode.ALT);
+        original.findRoute("Union South", "Memorial Union"); // selects landmarks
+        File snapshot = File.createTempFile("campus", ".snapshot");
+        snapshot.deleteOnExit();
+        original.saveSnapshot(snapshot.getPath());
+
+        Backend restored = new Backend(new DijkstraGraph<>());
+        restored.loadSnapshot(snapshot.getPath());
+        // neither loader keeps the edge index it inserts edges with
+        assertFalse(original.graph.isEdgeIndexEnabled());
+        assertFalse(restored.graph.isEdgeIndexEnabled());
+        assertEquals(original.graph.getNodeCount(), restored.graph.getNodeCount());
+        assertEquals(original.graph.getEdgeCount(), restored.graph.getEdgeCount());
+        FrozenGraph<String> frozen = restored.graph.frozen;
+        assertNotNull(frozen);
+        assertNotNull(restored.graph.landmarks);
+        List<String> locations = new ArrayList<>();
+        for (int i = 0; i < frozen.getIndexCount(); i++)
+            locations.add(frozen.getData(i));
+        for (DijkstraGraph.SearchMode mode : DijkstraGraph.SearchMode.values()) {
+            original.graph.setSearchMode(mode);
+            restored.graph.setSearchMode(mode);
+            for (int i = 0; i < 40; i++) {
+                String start = locations.get((i * 7) % locations.size());
+                String end = locations.get((i * 11 + 5) % locations.size());
+                assertEquals(original.findRoute(start, end).getNodes(), restored.findRoute(start, end).getNodes());
+                assertEquals(original.findRoute(start, end).getTotalCost(), restored.findRoute(start, end).getTotalCost());
+            }
+        }
+        // the searches used the snapshot's frozen graph rather than freezing the graph again
+        assertSame(frozen, restored.graph.freeze());
+        assertThrows(IllegalArgumentException.class, () -> restored.loadSnapshot(snapshot.getPath()));
+
+        // flipping one byte must fail the checksum
+        byte[] bytes = Files.readAllBytes(snapshot.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot.toPath(), bytes);
+        assertThrows(IOException.class, () -> new Backend(new DijkstraGraph<>()).loadSnapshot(snapshot.getPath()));
+
+        File dot = writeGridDot(250, 7);
+        double parseMillis = 0;
+        double snapshotMillis = 0;
+        Backend mapped = null;
+        for (int round = 0; round < 2; round++) { // the first round warms up both loaders
+            System.gc(); // keep collecting the previous round's graphs out of the timings
+            long begin = System.nanoTime();
+            Backend parsed = new Backend(new DijkstraGraph<>());
+            parsed.loadGraphData(dot.getPath());
+            parsed.graph.freeze();
+            parseMillis = (System.nanoTime() - begin) / 1e6;
+            // a new file each round, since the previous round's file may still be mapped
+            File grid = File.createTempFile("grid", ".snapshot");
+            grid.deleteOnExit();
+            parsed.saveSnapshot(grid.getPath());
+            int parsedEdges = parsed.graph.getEdgeCount();
+            parsed = null;
+            System.gc();
+            begin = System.nanoTime();
+            mapped = new Backend(new DijkstraGraph<>());
+            mapped.mapSnapshot(grid.getPath());
+            mapped.graph.freeze();
+            snapshotMillis = (System.nanoTime() - begin) / 1e6;
+            assertEquals(parsedEdges, mapped.graph.getEdgeCount());
+        }
+        System.out.printf("Cold start of %d edges: dot file %.0f ms, snapshot %.0f ms%n", mapped.graph.getEdgeCount(),
+                parseMillis, snapshotMillis);
+        assertTrue(3 * snapshotMillis < parseMillis);
+    }
+
+    /**
+     * Test to verify that a saved contraction hierarchy is loaded into a backend that parsed the same
+     * dot file and switches it to the CONTRACTION_HIERARCHY search mode, and that a hierarchy built
+     * from different travel times is rejected with an IOException.
+     */
+    @Test
+    void testContractionHierarchyLoadsAtStartup() throws Exception {
+        Backend original = new Backend(new DijkstraGraph<>());
+        original.loadGraphData("src/campus.dot");
+        File file = File.createTempFile("campus", ".ch");
+        file.deleteOnExit();
+        original.saveContractionHierarchy(file.getPath());
+
+        Backend restarted = new Backend(new DijkstraGraph<>());
+        restarted.loadGraphData("src/campus.dot");
+        restarted.loadContractionHierarchy(file.getPath());
+        assertEquals(DijkstraGraph.SearchMode.CONTRACTION_HIERARCHY, restarted.graph.getSearchMode());
+        assertEquals(original.findRoute("Union South", "Memorial Union").getTotalCost(),
+                restarted.findRoute("Union South", "Memorial Union").getTotalCost(), 1e-9);
+
+        // App maps its snapshot and then loads the hierarchy into the mapped graph
+        File snapshot = File.createTempFile("campus", ".snapshot");
+        snapshot.deleteOnExit();
+        original.saveSnapshot(snapshot.getPath());
+        Backend mapped = new Backend(new DijkstraGraph<>());
+        mapped.mapSnapshot(snapshot.getPath());
+        mapped.loadContractionHierarchy(file.getPath());
+        assertEquals(DijkstraGraph.SearchMode.CONTRACTION_HIERARCHY, mapped.graph.getSearchMode());
+        for (String start : List.of("Union South", "Memorial Union", "Radio Hall"))
+            for (String end : List.of("Science Hall", "Helen C White Hall", "Union South"))
+                assertEquals(original.findRoute(start, end).getNodes(), mapped.findRoute(start, end).getNodes());
+
+        Backend edited = new Backend(new DijkstraGraph<>());
+        edited.loadGraphData("src/campus.dot");
+        List<String> path = edited.findShortestPath("Union South", "Memorial Union");
+        edited.graph.insertEdge(path.get(0), path.get(1), edited.graph.getEdge(path.get(0), path.get(1)) * 2);
+        assertThrows(IOException.class, () -> edited.loadContractionHierarchy(file.getPath()));
+        assertEquals(DijkstraGraph.SearchMode.LINKED, edited.graph.getSearchMode());
+    }
+
+    /**
+     * Test to verify that a saved contraction hierarchy with any single flipped bit is either rejected
+     * with an IOException or still finds the same costs, rather than answering queries wrongly or failing
+     * with a runtime exception.
+     */
+    @Test
+    void testDamagedContractionHierarchiesAreRejected() throws Exception {
+        Backend original = new Backend(new DijkstraGraph<>());
+        original.loadGraphData("src/campus.dot");
+        File file = File.createTempFile("campus", ".ch");
+        file.deleteOnExit();
+        original.saveContractionHierarchy(file.getPath());
+        byte[] saved = Files.readAllBytes(file.toPath());
+        List<String> locations = original.getListOfAllLocations();
+        double[][] expected = new double[locations.size()][locations.size()];
+        original.graph.setSearchMode(DijkstraGraph.SearchMode.FROZEN);
+        for (int i = 0; i < locations.size(); i += 5)
+            for (int j = 0; j < locations.size(); j += 5)
+                expected[i][j] = costOrInfinity(original.graph, locations.get(i), locations.get(j));
+
+        Backend restarted = new Backend(new DijkstraGraph<>());
+        restarted.loadGraphData("src/campus.dot");
+        File damaged = File.createTempFile("damaged", ".ch");
+        damaged.deleteOnExit();
+        int rejected = 0;
+        for (int flip = 0; flip < 400; flip++) {
+            byte[] bytes = saved.clone();
+            bytes[(int) ((long) flip * bytes.length / 400)] ^= 1 << (flip % 8);
+            Files.write(damaged.toPath(), bytes);
+            try {
+                restarted.loadContractionHierarchy(damaged.getPath());
+            } catch (IOException e) {
+                rejected++;
+                continue;
+            }
+            for (int i = 0; i < locations.size(); i += 5)
+                for (int j = 0; j < locations.size(); j += 5)
+                    assertEquals(expected[i][j], costOrInfinity(restarted.graph, locations.get(i), locations.get(j)),
+                            1e-9);
+        }
+        assertTrue(rejected > 300, rejected + " of 400 damaged hierarchies rejected");
+    }
+
+    // the cost of the shortest path between two locations, or infinity if there is none
+    private static double costOrInfinity(DijkstraGraph<String, Double> graph, String start, String end) {
+        try {
+            return graph.shortestPathCost(start, end);
+        } catch (NoSuchElementException e) {
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Test to verify that snapshots whose checksums match but whose counts, lengths or indexes do not
+     * are rejected with an IOException by both the reader and the mapper, rather than failing with a
+     * runtime exception part of the way through loading.
+     */
+    @Test
+    void testInconsistentSnapshotsAreRejected() throws Exception {
+        Backend original = new Backend(new DijkstraGraph<>());
+        original.loadGraphData("src/campus.dot");
+        File snapshot = File.createTempFile("campus", ".snapshot");
+        snapshot.deleteOnExit();
+        original.saveSnapshot(snapshot.getPath());
+        byte[] valid = Files.readAllBytes(snapshot.toPath());
+        ByteBuffer header = ByteBuffer.wrap(valid);
+        int indexCount = header.getInt(12);
+        int nameBytes = 0;
+        for (int i = 0; i < indexCount; i++)
+            nameBytes += Math.max(header.getInt(24 + 4 * i), 0);
+        int targets = 24 + 4 * indexCount + nameBytes + 4 * (indexCount + 1);
+
+        int[][] corruptions = {
+            {12, -1}, // negative index count
+            {16, Integer.MAX_VALUE}, // edge count larger than the file
+            {16, header.getInt(16) - 1}, // edge count smaller than the file
+            {24, -7}, // negative name length
+            {24 + 4 * indexCount + nameBytes, 1}, // edge offsets that do not start at 0
+            {targets, indexCount}, // edge to an index past the end
+            {targets, -1}, // edge to a negative index
+        };
+        for (int[] corruption : corruptions) {
+            byte[] bytes = valid.clone();
+            ByteBuffer.wrap(bytes).putInt(corruption[0], corruption[1]);
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            ByteBuffer.wrap(bytes).putInt(bytes.length - 4, (int) crc.getValue());
+            Files.write(snapshot.toPath(), bytes);
+            assertThrows(IOException.class,
+                    () -> new Backend(new DijkstraGraph<>()).loadSnapshot(snapshot.getPath()));
+            assertThrows(IOException.class,
+                    () -> new Backend(new DijkstraGraph<>()).mapSnapshot(snapshot.getPath()));
+        }
+    }
+
+    /**
+     * Test to verify that a backend serving a memory-mapped snapshot finds the same routes as the
+     * backend that wrote it, and that the mapped graph cannot be modified.
+     */
+    @Test
+    void testMappedSnapshotServesRoutes() throws Exception {
+        Backend original = new Backend(new DijkstraGraph<>());
+        original.loadGraphData("src/campus.dot");
+        original.graph.setSearchMode(DijkstraGraph.SearchMode.ALT);
+        original.findRoute("Union South", "Memorial Union"); // selects landmarks
+        File snapshot = File.createTempFile("campus", ".snapshot");
+        snapshot.deleteOnExit();
+        original.saveSnapshot(snapshot.getPath());
+
+        Backend mapped = new Backend(new DijkstraGraph<>());
+        mapped.graph.setSearchMode(DijkstraGraph.SearchMode.ALT);
+        mapped.mapSnapshot(snapshot.getPath());
+        assertTrue(mapped.graph.isReadOnly());
+        assertTrue(mapped.graph.freeze() instanceof OffHeapFrozenGraph);
+        assertEquals(DijkstraGraph.SearchMode.ALT, mapped.graph.getSearchMode());
+        assertNotNull(mapped.graph.landmarks);
+        FrozenGraph<String> frozen = original.graph.freeze();
+        for (int i = 0; i < 60; i++) {
+            String start = frozen.getData((i * 7) % frozen.getIndexCount());
+            String end = frozen.getData((i * 13 + 5) % frozen.getIndexCount());
+            assertEquals(original.findRoute(start, end).getNodes(), mapped.findRoute(start, end).getNodes());
+            assertEquals(original.findRoute(start, end).getTravelTimes(), mapped.findRoute(start, end).getTravelTimes());
+        }
+        assertTrue(mapped.findRoute("Union South", "Nowhere").isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> mapped.loadGraphData("src/campus.dot"));
+    }
+
+    /**
+     * Test to verify that repeated queries are answered from the route cache, that the least recently
+     * used routes are evicted once it is full, that modifying the graph drops every cached route, and
+     * that routes found for an older version of the graph are neither cached nor drop newer ones.
+     */
+    @Test
+    void testRouteCache() throws Exception {
+        Backend campus = new Backend(new DijkstraGraph<>());
+        campus.loadGraphData("src/campus.dot");
+        RouteCache<RouteQuery, Route<String>> cache = campus.getRouteCache();
+        campus.getRouteCache().setCapacity(3);
+
+        Route<String> first = campus.findRoute("Union South", "Memorial Union");
+        assertSame(first, campus.findRoute("Union South", "Memorial Union"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        // a via query caches both legs and the combined route
+        Route<String> via = campus.findRouteVia("Union South", "Memorial Union", "Radio Hall");
+        assertSame(via, campus.findRouteVia("Union South", "Memorial Union", "Radio Hall"));
+        assertEquals(3, cache.getSize());
+        assertEquals(first.append(campus.findRoute("Memorial Union", "Radio Hall")).getNodes(), via.getNodes());
+        // the least recently used entry is now the via route's first leg
+        campus.findRoute("Science Hall", "Radio Hall");
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(new RouteQuery("Union South", "Memorial Union"), campus.graph.getResultVersion()));
+
+        // a new shortcut must be found right away rather than the cached route
+        Route<String> before = campus.findRoute("Science Hall", "Radio Hall");
+        campus.graph.insertEdge("Science Hall", "Radio Hall", 0.5);
+        Route<String> after = campus.findRoute("Science Hall", "Radio Hall");
+        assertNotSame(before, after);
+        assertEquals(0.5, after.getTotalCost());
+        assertEquals(1, cache.getInvalidationCount());
+        assertEquals(1, cache.getSize());
+
+        // a query that finishes after the graph changed must neither cache its route nor drop newer ones
+        int current = campus.graph.getResultVersion();
+        cache.put(new RouteQuery("Union South", "Radio Hall"), before, current - 1);
+        assertNull(cache.get(new RouteQuery("Science Hall", "Radio Hall"), current - 1));
+        assertSame(after, cache.get(new RouteQuery("Science Hall", "Radio Hall"), current));
+        assertNull(cache.get(new RouteQuery("Union South", "Radio Hall"), current));
+        assertEquals(1, cache.getInvalidationCount());
+        assertEquals(1, cache.getSize());
+        assertTrue(cache.getHitRate() > 0);
+        assertTrue(cache.toString().contains("hits"));
+        assertThrows(IllegalArgumentException.class, () -> cache.setCapacity(-1));
+    }
+
+    /**
+     * Test to verify that changing a search setting that can change the routes found, such as the
+     * precision of weights or the search mode, drops the cached routes, while setting the same value
+     * again keeps them.
+     */
+    @Test
+    void testRouteCacheFollowsSearchSettings() throws Exception {
+        Backend campus = new Backend(new DijkstraGraph<>());
+        campus.loadGraphData("src/campus.dot");
+        RouteCache<RouteQuery, Route<String>> cache = campus.getRouteCache();
+        campus.graph.setSearchMode(DijkstraGraph.SearchMode.FROZEN);
+        // a weight that single precision rounds, so rounded costs differ from the cached one
+        campus.graph.insertEdge("Union South", "Radio Hall", 0.1);
+        Route<String> exact = campus.findRoute("Union South", "Radio Hall");
+        assertEquals(0.1, exact.getTotalCost());
+
+        campus.graph.setSinglePrecisionWeights(true);
+        Route<String> rounded = campus.findRoute("Union South", "Radio Hall");
+        assertNotSame(exact, rounded);
+        assertEquals((double) 0.1f, rounded.getTotalCost());
+        assertEquals(1, cache.getInvalidationCount());
+
+        campus.graph.setSearchMode(DijkstraGraph.SearchMode.BIDIRECTIONAL);
+        assertNotSame(rounded, campus.findRoute("Union South", "Radio Hall"));
+        campus.graph.setHeapArity(2);
+        Route<String> heap = campus.findRoute("Union South", "Radio Hall");
+        assertEquals(3, cache.getInvalidationCount());
+
+        // settings that do not change keep the cached routes
+        campus.graph.setSearchMode(DijkstraGraph.SearchMode.BIDIRECTIONAL);
+        campus.graph.setHeapArity(2);
+        campus.graph.setSinglePrecisionWeights(true);
+        assertSame(heap, campus.findRoute("Union South", "Radio Hall"));
+        assertEquals(3, cache.getInvalidationCount());
+    }
+
+    /**
+     * Test to verify that routes read from cached shortest path trees match the routes found by
+     * searching, that the trees are held to their memory budget, and that they are dropped when the
+     * graph changes.
+     */
+    @Test
+    void testShortestPathTreeCache() throws Exception {
+        Backend searched = new Backend(new DijkstraGraph<>());
+        searched.loadGraphData("src/campus.dot");
+        Backend kiosk = new Backend(new DijkstraGraph<>());
+        kiosk.loadGraphData("src/campus.dot");
+        // every query below must reach the tree cache rather than the route cache
+        kiosk.getRouteCache().setCapacity(0);
+        long treeSize = kiosk.graph.shortestPathTree("Memorial Union").getMemorySize();
+        kiosk.setShortestPathTreeCache(2 * treeSize, RouteCache.EvictionPolicy.LRU);
+        RouteCache<String, ShortestPathTree<String>> trees = kiosk.getShortestPathTreeCache();
+
+        FrozenGraph<String> frozen = searched.graph.freeze();
+        for (int i = 0; i < frozen.getIndexCount(); i++) {
+            String end = frozen.getData(i);
+            Route<String> expected = searched.findRoute("Memorial Union", end);
+            Route<String> actual = kiosk.findRoute("Memorial Union", end);
+            assertEquals(expected.getTotalCost(), actual.getTotalCost(), 1e-9);
+            assertEquals(expected.isEmpty(), actual.isEmpty());
+            if (!actual.isEmpty())
+                assertEquals(actual.getTravelTimes().stream().mapToDouble(Double::doubleValue).sum(),
+                        actual.getTotalCost(), 1e-9);
+        }
+        // only the first query searched, and every later one walked the cached tree
+        assertEquals(1, trees.getMissCount());
+        assertEquals(frozen.getIndexCount() - 1, trees.getHitCount());
+        assertEquals(0, kiosk.findRoute("Memorial Union", "Union South").getSettledNodes());
+        assertTrue(kiosk.findRoute("Memorial Union", "Nowhere").isEmpty());
+
+        // a third start location evicts the least recently used tree
+        kiosk.findRoute("Union South", "Radio Hall");
+        kiosk.findRoute("Memorial Union", "Radio Hall");
+        kiosk.findRoute("Science Hall", "Radio Hall");
+        assertEquals(2, trees.getSize());
+        assertEquals(1, trees.getEvictionCount());
+        assertTrue(trees.getWeight() <= trees.getCapacity());
+        assertNull(trees.get("Union South", kiosk.graph.getResultVersion()));
+        assertNotNull(trees.get("Memorial Union", kiosk.graph.getResultVersion()));
+
+        // a new shortcut drops every tree
+        kiosk.graph.insertEdge("Memorial Union", "Radio Hall", 0.5);
+        assertEquals(0.5, kiosk.findRoute("Memorial Union", "Radio Hall").getTotalCost());
+        assertEquals(1, trees.getSize());
+        assertEquals(1, trees.getInvalidationCount());
+
+        // trees heavier than the whole budget are never cached, and a budget of 0 stops caching
+        kiosk.setShortestPathTreeCache(treeSize / 2, RouteCache.EvictionPolicy.FIFO);
+        kiosk.findRoute("Memorial Union", "Radio Hall");
+        assertEquals(0, kiosk.getShortestPathTreeCache().getSize());
+        kiosk.setShortestPathTreeCache(0, RouteCache.EvictionPolicy.LRU);
+        assertNull(kiosk.getShortestPathTreeCache());
+    }
+
+    /**
+     * Test to verify that the location index lists every location once in sorted order, completes
+     * prefixes ignoring case, and answers a completion in microseconds.
+     */
+    @Test
+    void testLocationIndexCompletesPrefixes() throws Exception {
+        Backend campus = new Backend(new DijkstraGraph<>());
+        assertTrue(campus.getListOfAllLocations().isEmpty());
+        campus.loadGraphData("src/campus.dot");
+        List<String> all = campus.getListOfAllLocations();
+        assertEquals(campus.graph.getNodeCount(), all.size());
+        assertEquals(all.size(), new HashSet<>(all).size());
+        for (int i = 1; i < all.size(); i++)
+            assertTrue(all.get(i - 1).compareToIgnoreCase(all.get(i)) <= 0);
+
+        assertEquals(List.of("Union South"), campus.suggestLocations("union s", 10));
+        assertEquals(List.of("Union South"), campus.suggestLocations("UNION SOUTH", 10));
+        assertTrue(campus.suggestLocations("Memorial", 10).contains("Memorial Union"));
+        for (String name : campus.suggestLocations("l", 100))
+            assertTrue(name.toLowerCase().startsWith("l"));
+        assertEquals(all.subList(0, 3), campus.suggestLocations("", 3));
+        assertTrue(campus.suggestLocations("Nowhere", 10).isEmpty());
+        assertTrue(campus.suggestLocations("Union South, Madison", 10).isEmpty());
+
+        // names that differ only in case are both kept, and duplicates are kept once
+        LocationIndex index = new LocationIndex(List.of("b", "Ab", "aB", "ab", "ab", "c"));
+        assertEquals(List.of("Ab", "aB", "ab", "b", "c"), index.getNames());
+        assertEquals(List.of("Ab", "aB"), index.complete("AB", 2));
+        assertTrue(index.contains("aB"));
+        assertFalse(index.contains("AB"));
+        assertFalse(index.contains("a"));
+
+        // completion is a binary search followed by a short scan, even among many names
+        List<String> many = new ArrayList<>();
+        for (int i = 0; i < 200000; i++)
+            many.add("Location " + i);
+        LocationIndex large = new LocationIndex(many);
+        String[] prefixes = { "location 1", "LOCATION 19999", "Location 5", "location 123456", "x" };
+        int completed = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 100000; i++)
+                completed += large.complete(prefixes[i % prefixes.length], 8).size();
+            double microseconds = (System.nanoTime() - start) / 1000.0 / 100000;
+            if (round == 1) {
+                System.out.printf("%d names: %.2f us per completion%n", large.getSize(), microseconds);
+                assertTrue(microseconds < 50, "completion took " + microseconds + " us");
+            }
+        }
+        assertTrue(completed > 0);
+        assertEquals(List.of("Location 19999", "Location 199990", "Location 199991"),
+                large.complete("location 19999", 3));
+    }
+
+    /**
+     * Test to verify that misspelled and partly typed location names resolve to the locations they
+     * mean, that the index for them is only built by the first lookup that needs it, and that
+     * resolving text among 100,000 names takes less than a millisecond.
+     */
+    @Test
+    void testFuzzyLocationResolution() throws Exception {
+        Backend campus = new Backend(new DijkstraGraph<>());
+        campus.loadGraphData("src/campus.dot");
+        assertEquals("Memorial Union", campus.resolveLocation("Memorial Union"));
+        assertNull(campus.fuzzyLocations);
+        assertEquals("Helen C White Hall", campus.resolveLocation("helen white"));
+        assertNotNull(campus.fuzzyLocations);
+        assertEquals("Helen C White Hall", campus.resolveLocation("Helen C. White"));
+        assertEquals("Memorial Union", campus.resolveLocation("memorial unoin"));
+        assertEquals("Memorial Union", campus.resolveLocation("Memorial Union"));
+        assertEquals("Union South", campus.resolveLocation("unoin south"));
+        assertEquals("Steenbock Memorial Library", campus.resolveLocation("steenbok libr"));
+        assertNull(campus.resolveLocation("zzzz qqqq"));
+        assertNull(campus.resolveLocation(""));
+        // every matching location contains a word close to "memorial"
+        List<String> memorials = campus.resolveLocations("memorail", 10);
+        assertTrue(memorials.size() >= 6);
+        for (String name : memorials)
+            assertTrue(name.contains("Memorial"), name);
+
+        // 100,000 names made of 1 to 3 words from a vocabulary of 5,000, and a kind of building
+        Random random = new Random(24);
+        String consonants = "bcdfghjklmnprstvwz";
+        String vowels = "aeiou";
+        String[] vocabulary = new String[5000];
+        for (int v = 0; v < vocabulary.length; v++) {
+            StringBuilder word = new StringBuilder();
+            int length = 4 + random.nextInt(6);
+            for (int c = 0; c < length; c++)
+                word.append(c % 2 == 0 ? consonants.charAt(random.nextInt(consonants.length()))
+                        : vowels.charAt(random.nextInt(vowels.length())));
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            vocabulary[v] = word.toString();
+        }
+        String[] kinds = { "Hall", "Library", "Building", "House", "Center", "Institute", "Arch" };
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int w = 0; w < 1 + random.nextInt(3); w++)
+                name.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+            names.add(name.append(kinds[random.nextInt(kinds.length)]).toString());
+        }
+        FuzzyLocationIndex index = new FuzzyLocationIndex(names);
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            // swap two neighboring letters of the first word
+            int at = random.nextInt(name.indexOf(' ') - 1);
+            char[] typo = name.toLowerCase().toCharArray();
+            char swapped = typo[at];
+            typo[at] = typo[at + 1];
+            typo[at + 1] = swapped;
+            queries.add(new String(typo));
+            queries.add(name);
+        }
+        int resolved = 0;
+        double microseconds = 0;
+        for (int round = 0; round < 2; round++) {
+            resolved = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < queries.size(); i += 2)
+                if (queries.get(i + 1).equals(index.resolve(queries.get(i))))
+                    resolved++;
+            microseconds = (System.nanoTime() - start) / 1000.0 / (queries.size() / 2);
+        }
+        // an unmodified name resolves to itself, or to an identical name
+        for (int i = 1; i < queries.size(); i += 200)
+            assertEquals(queries.get(i), index.resolve(queries.get(i)));
+        System.out.printf("%d names: %.1f us per fuzzy resolution, %d of %d typos resolved%n",
+                index.getSize(), microseconds, resolved, queries.size() / 2);
+        // a few typos are as close to another name as to their own
+        assertTrue(resolved >= queries.size() / 2 * 95 / 100, resolved + " typos resolved");
+        assertTrue(microseconds < 1000, "resolution took " + microseconds + " us");
+    }
+
+    /**
+     * Test to verify that ordered waypoints are visited in order with one search per leg, and that
+     * unordered stops are visited in the quickest order, which is checked against every order.
+     */
+    @Test
+    void testMultiStopRoutes() throws Exception {
+        Backend campus = new Backend(new DijkstraGraph<>());
+        campus.loadGraphData("src/campus.dot");
+
+        // ordered waypoints give the same route as a single via location, and as the legs appended
+        Route<String> via = campus.findRouteVia("Union South", "Memorial Union", "Radio Hall");
+        Route<String> through = campus.findRouteThrough(List.of("Union South", "Memorial Union", "Radio Hall"));
+        assertEquals(via.getNodes(), through.getNodes());
+        assertEquals(via.getTravelTimes(), through.getTravelTimes());
+        List<String> waypoints = List.of("Union South", "Science Hall", "Union South", "Science Hall");
+        Route<String> legs = campus.findRoute("Union South", "Science Hall")
+                .append(campus.findRoute("Science Hall", "Union South"))
+                .append(campus.findRoute("Union South", "Science Hall"));
+        long hits = campus.getRouteCache().getHitCount();
+        assertEquals(legs.getNodes(), campus.findRouteThrough(waypoints).getNodes());
+        // every leg was found before, so none of them was searched again
+        assertEquals(hits + 3, campus.getRouteCache().getHitCount());
+        assertTrue(campus.findRouteThrough(List.of("Union South", "Nowhere", "Radio Hall")).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> campus.findRouteThrough(List.of("Union South")));
+
+        // unordered stops are visited in the quickest of all 24 orders
+        List<String> stops = List.of("Memorial Union", "Science Hall", "Radio Hall", "Helen C White Hall");
+        Route<String> tour = campus.findRouteVisiting("Union South", stops, "Union South");
+        double quickest = Double.POSITIVE_INFINITY;
+        for (List<String> order : permutations(stops)) {
+            List<String> trip = new ArrayList<>();
+            trip.add("Union South");
+            trip.addAll(order);
+            trip.add("Union South");
+            quickest = Math.min(quickest, campus.findRouteThrough(trip).getTotalCost());
+        }
+        assertEquals(quickest, tour.getTotalCost(), 1e-6);
+        assertEquals("Union South", tour.getNodes().get(0));
+        assertEquals("Union South", tour.getNodes().get(tour.getNodes().size() - 1));
+        assertTrue(tour.getNodes().containsAll(stops));
+        assertEquals(tour.getNodes().size() - 1, tour.getTravelTimes().size());
+        for (int i = 0; i < tour.getTravelTimes().size(); i++)
+            assertEquals(campus.graph.getEdge(tour.getNodes().get(i), tour.getNodes().get(i + 1)),
+                    tour.getTravelTimes().get(i));
+        assertEquals(tour.getTravelTimes().stream().mapToDouble(Double::doubleValue).sum(), tour.getTotalCost(),
+                1e-6);
+        assertEquals(campus.findRoute("Union South", "Radio Hall").getTotalCost(),
+                campus.findRouteVisiting("Union South", List.of(), "Radio Hall").getTotalCost(), 1e-9);
+        assertTrue(campus.findRouteVisiting("Union South", List.of("Nowhere"), "Radio Hall").isEmpty());
+    }
+
+    /**
+     * Test to verify that OpenAddressingMap behaves like PlaceholderMap through growth, collisions
+     * and removals, including removals that shift keys back across the end of the table.
+     */
+    @Test
+    void testOpenAddressingMapMatchesPlaceholderMap() {
+        Random random = new Random(3);
+        OpenAddressingMap<Integer, Integer> map = new OpenAddressingMap<>(0, 0.75);
+        PlaceholderMap<Integer, Integer> expected = new PlaceholderMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // keys that are multiples of 64 collide in small tables
+            int key = random.nextInt(500) * (random.nextBoolean() ? 64 : 1);
+            if (expected.containsKey(key)) {
+                assertThrows(IllegalArgumentException.class, () -> map.put(key, 0));
+                assertEquals(expected.remove(key), map.remove(key));
+                assertFalse(map.containsKey(key));
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+            assertEquals(expected.getSize(), map.getSize());
+        }
+        for (int key = -10; key < 500 * 64; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+            if (expected.containsKey(key))
+                assertEquals(expected.get(key), map.get(key));
+        }
+        assertTrue(map.getSize() <= map.getCapacity() * 0.75);
+        assertEquals(-1, (int) map.getOrDefault(-5, -1));
+        assertThrows(NoSuchElementException.class, () -> map.get(-5));
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new OpenAddressingMap<>(4, 1.0));
+        map.clear();
+        assertEquals(0, map.getSize());
+        assertFalse(map.containsKey(0));
+    }
+
+    /**
+     * Test that compares the insert and lookup throughput of OpenAddressingMap with that of
+     * PlaceholderMap for the location names of the campus graph.
+     */
+    @Test
+    void testOpenAddressingMapThroughput() throws IOException {
+        DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+        new Backend(campus).loadGraphData("src/campus.dot");
+        FrozenGraph<String> graph = campus.freeze();
+        String[] names = new String[graph.getIndexCount()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = new String(graph.getData(i)); // copies have no cached hash code
+
+        int rounds = 2000;
+        long[] insertNanos = new long[2];
+        long[] lookupNanos = new long[2];
+        long checksum = 0;
+        for (int warmup = 0; warmup < 2; warmup++)
+            for (int m = 0; m < 2; m++) {
+                insertNanos[m] = 0;
+                lookupNanos[m] = 0;
+                for (int round = 0; round < rounds; round++) {
+                    MapADT<String, Integer> map = m == 0 ? new PlaceholderMap<>() : new OpenAddressingMap<>();
+                    long begin = System.nanoTime();
+                    for (int i = 0; i < names.length; i++)
+                        map.put(names[i], i);
+                    insertNanos[m] += System.nanoTime() - begin;
+                    begin = System.nanoTime();
+                    for (String name : names)
+                        if (map.containsKey(name))
+                            checksum += map.get(name);
+                    lookupNanos[m] += System.nanoTime() - begin;
+                }
+            }
+        assertTrue(checksum > 0);
+        double operations = (double) rounds * names.length;
+        System.out.printf("%d campus names: PlaceholderMap %.1f M inserts/s, %.1f M lookups/s; "
+                + "OpenAddressingMap %.1f M inserts/s, %.1f M lookups/s%n", names.length,
+                operations / insertNanos[0] * 1000, operations / lookupNanos[0] * 1000,
+                operations / insertNanos[1] * 1000, operations / lookupNanos[1] * 1000);
+    }
+
+    /**
+     * Test to verify that LongHashMap behaves like a HashMap through puts that overwrite, growth and
+     * removals, including removals that shift colliding keys back across the end of the table.
+     */
+    @Test
+    void testLongHashMapMatchesHashMap() {
+        Random random = new Random(5);
+        LongHashMap<Integer> map = new LongHashMap<>(0);
+        HashMap<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // a small range of keys, so that many puts overwrite and many removals hit
+            long key = random.nextInt(2000) * (random.nextBoolean() ? 1L << 32 : 1);
+            if (random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), map.remove(key));
+            else
+                assertEquals(expected.put(key, i), map.put(key, i));
+            assertEquals(expected.size(), map.getSize());
+        }
+        for (long key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.get(key << 32), map.get(key << 32));
+        }
+        assertTrue(map.getSize() <= map.getCapacity() * LongHashMap.LOAD_FACTOR);
+        int capacity = map.getCapacity();
+        map.clear();
+        assertEquals(0, map.getSize());
+        assertEquals(capacity, map.getCapacity());
+        assertNull(map.get(0));
+    }
+
+    /**
+     * Test to verify that LongHashMap keys sharing a home slot stay findable after the keys probed
+     * before them are removed, also when their run wraps around the end of the table, and that a
+     * table only grows once it is half full.
+     */
+    @Test
+    void testLongHashMapCollidingKeys() {
+        LongHashMap<String> map = new LongHashMap<>(8);
+        int capacity = map.getCapacity();
+        int mask = capacity - 1;
+        // keys whose home is the last slot, so that their run wraps around
+        long[] colliding = new long[4];
+        for (long key = 0, found = 0; found < colliding.length; key++)
+            if ((LongHashMap.hash(key) & mask) == mask)
+                colliding[(int) found++] = key;
+        for (long key : colliding)
+            assertNull(map.put(key, "k" + key));
+        assertEquals("k" + colliding[0], map.put(colliding[0], "again"));
+        assertEquals(4, map.getSize());
+        assertEquals("again", map.remove(colliding[0]));
+        assertNull(map.remove(colliding[0]));
+        for (int i = 1; i < colliding.length; i++)
+            assertEquals("k" + colliding[i], map.get(colliding[i]));
+        assertEquals("k" + colliding[2], map.remove(colliding[2]));
+        assertEquals("k" + colliding[1], map.get(colliding[1]));
+        assertEquals("k" + colliding[3], map.get(colliding[3]));
+        assertEquals(2, map.getSize());
+
+        for (long key = 0; map.getSize() < capacity * LongHashMap.LOAD_FACTOR; key++)
+            map.put(key, "filler");
+        assertEquals(capacity, map.getCapacity());
+        map.put(Long.MAX_VALUE, "largest");
+        assertEquals(2 * capacity, map.getCapacity());
+        assertEquals("largest", map.get(Long.MAX_VALUE));
+        assertEquals("k" + colliding[3], map.get(colliding[3]));
+    }
+
+    /**
+     * Test to verify that LongHashMap never stores negative keys, and rejects null values before
+     * they can be counted as keys.
+     */
+    @Test
+    void testLongHashMapRejectsNegativeKeysAndNullValues() {
+        LongHashMap<String> map = new LongHashMap<>(4);
+        map.put(3, "three");
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, "empty"));
+        assertThrows(IllegalArgumentException.class, () -> map.put(Long.MIN_VALUE, "smallest"));
+        assertThrows(NullPointerException.class, () -> map.put(5, null));
+        assertThrows(NullPointerException.class, () -> map.put(3, null));
+        assertEquals(1, map.getSize());
+        assertEquals("three", map.get(3));
+        assertNull(map.get(5));
+        assertNull(map.get(-1));
+        assertNull(map.remove(-1));
+        assertNull(map.remove(Long.MIN_VALUE));
+        assertEquals(1, map.getSize());
+    }
+
+    /**
+     * Test to verify that Held-Karp finds the cheapest order of stops, checked against every order on
+     * asymmetric costs, and that 2-opt and Or-opt come close to it and handle many stops quickly.
+     */
+    @Test
+    void testWaypointOrder() {
+        Random random = new Random(25);
+        for (int trial = 0; trial < 20; trial++) {
+            int stops = trial % 7;
+            double[][] costs = new double[stops + 2][stops + 2];
+            for (double[] row : costs)
+                for (int j = 0; j < row.length; j++)
+                    row[j] = random.nextInt(10) == 0 ? Double.POSITIVE_INFINITY : 1 + random.nextInt(100);
+            List<Integer> middle = new ArrayList<>();
+            for (int stop = 1; stop <= stops; stop++)
+                middle.add(stop);
+            double best = Double.POSITIVE_INFINITY;
+            for (List<Integer> order : permutations(middle)) {
+                int[] trip = new int[stops + 2];
+                trip[stops + 1] = stops + 1;
+                for (int i = 0; i < stops; i++)
+                    trip[i + 1] = order.get(i);
+                best = Math.min(best, WaypointOrder.cost(costs, trip));
+            }
+            int[] optimal = WaypointOrder.optimal(costs);
+            assertEquals(best, WaypointOrder.cost(costs, optimal));
+            assertValidOrder(optimal);
+            assertValidOrder(WaypointOrder.improved(costs));
+        }
+
+        // points on a plane, where the heuristic stays close to the best order
+        double totalGap = 0;
+        for (int trial = 0; trial < 10; trial++) {
+            double[][] costs = planeCosts(random, WaypointOrder.EXACT_LIMIT + 2);
+            double optimal = WaypointOrder.cost(costs, WaypointOrder.optimal(costs));
+            int[] improved = WaypointOrder.improved(costs);
+            assertValidOrder(improved);
+            double cost = WaypointOrder.cost(costs, improved);
+            assertTrue(cost >= optimal - 1e-9);
+            totalGap += cost / optimal - 1;
+        }
+        System.out.printf("2-opt and Or-opt are %.1f%% above the best order on average%n", 10 * totalGap);
+        assertTrue(totalGap / 10 < 0.05, "heuristic orders are too long");
+
+        // and many stops are ordered in well under a second
+        double[][] many = planeCosts(random, 202);
+        long start = System.nanoTime();
+        int[] order = WaypointOrder.plan(many);
+        long milliseconds = (System.nanoTime() - start) / 1000000;
+        assertValidOrder(order);
+        int[] given = new int[many.length];
+        for (int i = 0; i < given.length; i++)
+            given[i] = i;
+        assertTrue(WaypointOrder.cost(many, order) < WaypointOrder.cost(many, given) / 3);
+        System.out.println("Ordered 200 stops in " + milliseconds + " ms");
+        assertTrue(milliseconds < 1000);
+    }
+
+    // checks that an order starts at 0, ends at the last index and visits every index once
+    private static void assertValidOrder(int[] order) {
+        assertEquals(0, order[0]);
+        assertEquals(order.length - 1, order[order.length - 1]);
+        boolean[] seen = new boolean[order.length];
+        for (int index : order) {
+            assertFalse(seen[index]);
+            seen[index] = true;
+        }
+    }
+
+    // the distances between random points on a plane
+    private static double[][] planeCosts(Random random, int count) {
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = random.nextDouble() * 1000;
+            y[i] = random.nextDouble() * 1000;
+        }
+        double[][] costs = new double[count][count];
+        for (int i = 0; i < count; i++)
+            for (int j = 0; j < count; j++)
+                costs[i][j] = Math.hypot(x[i] - x[j], y[i] - y[j]);
+        return costs;
+    }
+
+    // every ordering of items
+    private static <T> List<List<T>> permutations(List<T> items) {
+        List<List<T>> result = new ArrayList<>();
+        if (items.isEmpty()) {
+            result.add(new ArrayList<>());
+            return result;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            List<T> rest = new ArrayList<>(items);
+            T first = rest.remove(i);
+            for (List<T> permutation : permutations(rest)) {
+                permutation.add(0, first);
+                result.add(permutation);
+            }
+        }
+        return result;
+    }
+
+    // writes a DOT file of a side by side grid with random weights, one edge per line
+    private static File writeGridDot(int side, long seed) throws IOException {
+        File file = File.createTempFile("grid", ".dot");
+        file.deleteOnExit();
+        Random random = new Random(seed);
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            out.write("digraph grid {\n");
+            for (int node = 0; node < side * side; node++) {
+                int[] neighbors = { node + 1, node - 1, node + side, node - side };
+                for (int neighbor : neighbors)
+                    if (neighbor >= 0 && neighbor < side * side)
+                        out.write("\t\"Location " + node + "\" -> \"Location " + neighbor + "\" [seconds="
+                                + (10 + random.nextInt(100000) / 100.0) + "];\n");
+            }
+            out.write("}\n");
+        }
+        return file;
+    }
+
+    // the pattern Backend.loadGraphData matched each line with before it used DotParser
+    private static final Pattern LEGACY_EDGE = Pattern
+            .compile("\"([^\"]+)\" -> \"([^\"]+)\" \\[seconds=([0-9.]+)\\];");
 }
@@ -22,6 +22,15 @@ public interface BackendInterface {
    */
   public List<String> getListOfAllLocations();
 
+  /**
+   * Returns the locations whose names start with prefix, ignoring case, to suggest while a location
+   * name is typed.
+   * @param prefix the start of the location names to find
+   * @param limit the largest number of locations to return
+   * @return up to limit location names starting with prefix
+   */
+  public List<String> suggestLocations(String prefix, int limit);
+
   /**
    * Returns the sequence of locations along the shortest path from startLocation to endLocation, or
    * en empty list if no such path exists.
@@ -65,4 +74,44 @@ public interface BackendInterface {
    */
   public List<Double> getTravelTimesOnPathVia(String startLocation, String viaLocation, String endLocation);
 
+  /**
+   * Returns the shortest route from startLocation to endLocation, with the locations along it, the walking
+   * time in seconds between each two of them, and its total walking time, all found with a single search.
+   * Returns an empty route if no such path exists.
+   * @param startLocation the start location of the route
+   * @param endLocation the end location of the route
+   * @return the route from startLocation to endLocation, or an empty route if no such path exists
+   */
+  public Route<String> findRoute(String startLocation, String endLocation);
+
+  /**
+   * Returns the shortest route from startLocation to endLocation that leads through viaLocation, found with
+   * one search per leg, or an empty route if no such path exists.
+   * @param startLocation the start location of the route
+   * @param viaLocation a location that the route should lead through
+   * @param endLocation the end location of the route
+   * @return the route from startLocation to endLocation through viaLocation, or an empty route if no such
+   *         path exists
+   */
+  public Route<String> findRouteVia(String startLocation, String viaLocation, String endLocation);
+
+  /**
+   * Returns the shortest route that visits waypoints in the given order, found with one search per leg,
+   * or an empty route if some leg has no path.
+   * @param waypoints the locations to visit in order, starting with the start location and ending with the
+   *        end location
+   * @return the route through every waypoint in order
+   */
+  public Route<String> findRouteThrough(List<String> waypoints);
+
+  /**
+   * Returns the shortest route from startLocation to endLocation that visits every one of stopLocations in
+   * whichever order is quickest, or an empty route if no such route exists.
+   * @param startLocation the start location of the route
+   * @param stopLocations the locations to visit, in any order
+   * @param endLocation the end location of the route
+   * @return the route through every stop
+   */
+  public Route<String> findRouteVisiting(String startLocation, List<String> stopLocations, String endLocation);
+
 }
@@ -1,6 +1,7 @@
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class BackendPlaceholder implements BackendInterface {
 
@@ -12,6 +13,12 @@ public class BackendPlaceholder implements BackendInterface {
     return Arrays.asList("Union South", "Computer Sciences and Statistics", "Atmospheric, Oceanic and Space Sciences");
   }
 
+  public List<String> suggestLocations(String prefix, int limit) {
+    return getListOfAllLocations().stream()
+        .filter(location -> location.toLowerCase().startsWith(prefix.toLowerCase()))
+        .limit(limit).collect(Collectors.toList());
+  }
+
   public List<String> findShortestPath(String startLocation, String endLocation) {
     return Arrays.asList("Union South", "Computer Sciences and Statistics", "Atmospheric, Oceanic and Space Sciences");
   }
@@ -28,4 +35,24 @@ public class BackendPlaceholder implements BackendInterface {
     return Arrays.asList(146.0, 30.0);
   }
 
+  public Route<String> findRoute(String startLocation, String endLocation) {
+    return new Route<>(findShortestPath(startLocation, endLocation),
+        getTravelTimesOnPath(startLocation, endLocation), 256.0, 3);
+  }
+
+  public Route<String> findRouteVia(String startLocation, String via, String endLocation) {
+    return new Route<>(findShortestPathVia(startLocation, via, endLocation),
+        getTravelTimesOnPathVia(startLocation, via, endLocation), 176.0, 3);
+  }
+
+  public Route<String> findRouteThrough(List<String> waypoints) {
+    return findRouteVia(waypoints.get(0), waypoints.get(1), waypoints.get(waypoints.size() - 1));
+  }
+
+  public Route<String> findRouteVisiting(String startLocation, List<String> stops, String endLocation) {
+    if (stops.isEmpty())
+      return findRoute(startLocation, endLocation);
+    return findRouteVia(startLocation, stops.get(0), endLocation);
+  }
+
 }
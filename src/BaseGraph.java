@@ -1,5 +1,6 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.LinkedList;
 import java.util.NoSuchElementException;
 
 /**
@@ -8,11 +9,13 @@ import java.util.NoSuchElementException;
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
-    // Each node contains unique data along with two lists of directed edges
+    // Each node contains unique data along with two lists of directed edges;
+    // removing an edge moves the last edge of each list into its place
     protected class Node {
         public NodeType data;
-        public List<Edge> edgesLeaving = new LinkedList<>();
-        public List<Edge> edgesEntering = new LinkedList<>();
+        public int index; // position of this node within nodeList
+        public List<Edge> edgesLeaving = new ArrayList<>();
+        public List<Edge> edgesEntering = new ArrayList<>();
 
         public Node(NodeType data) {
             this.data = data;
@@ -22,21 +25,73 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     // Nodes can be retrieved from this map by their unique data
     protected MapADT<NodeType, Node> nodes = null;
 
-    // Each edge contains data/weight, and two nodes that it connects
+    // Nodes can also be retrieved by their index; a removed node leaves a null
+    // slot in this list that is reused by the next inserted node
+    protected ArrayList<Node> nodeList = new ArrayList<>();
+    protected ArrayDeque<Integer> freeIndices = new ArrayDeque<>();
+
+    // Incremented on every change to the nodes or edges of this graph, so that
+    // structures derived from the graph (like a FrozenGraph) can detect that
+    // they are out of date
+    protected int modCount = 0;
+
+    // Each edge contains a weight, and two nodes that it connects. The weight
+    // is stored once as a primitive double, so that searches never unbox it,
+    // and the edge's data is boxed again from it only when it is asked for
     protected class Edge {
-        public EdgeType data; // the weight or cost of this edge
+        public double weight; // the weight or cost of this edge
         public Node predecessor;
         public Node successor;
+        public int leavingIndex; // position of this edge within predecessor.edgesLeaving
+        public int enteringIndex; // position of this edge within successor.edgesEntering
 
-        public Edge(EdgeType data, Node pred, Node succ) {
-            this.data = data;
+        public Edge(double weight, Node pred, Node succ) {
+            this.weight = weight;
             this.predecessor = pred;
             this.successor = succ;
         }
+
+        // returns this edge's data, boxed from its weight
+        public EdgeType getData() {
+            return boxWeight(weight);
+        }
+
+        // changes this edge's data, which must be boxable
+        public void setData(EdgeType data) {
+            this.weight = data.doubleValue();
+        }
+    }
+
+    // An edge whose data cannot be boxed again from its weight, such as a
+    // BigDecimal or a Long beyond 2^53, also keeps the data it was given
+    protected class ExactEdge extends Edge {
+        public EdgeType data;
+
+        public ExactEdge(EdgeType data, Node pred, Node succ) {
+            super(data.doubleValue(), pred, succ);
+            this.data = data;
+        }
+
+        @Override
+        public EdgeType getData() {
+            return data;
+        }
+
+        @Override
+        public void setData(EdgeType data) {
+            super.setData(data);
+            this.data = data;
+        }
     }
 
+    // The class of the data of every edge that is not an ExactEdge, taken from
+    // the first edge inserted with boxable data
+    protected Class<?> edgeDataClass = null;
+
     protected int edgeCount = 0;
-    // Edges can be retrieved through the edge lists in either connected node
+    // Edges can be retrieved through the edge lists in either connected node,
+    // and also from this index keyed by edgeKey when it is enabled
+    protected LongHashMap<Edge> edgeIndex = null;
 
     /**
      * Constructor for BaseGraph that provides the map the graph uses.
@@ -48,6 +103,67 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         this.nodes = map;
     }
 
+    /**
+     * Turns the edge index on or off. With the index on, finding, updating and
+     * removing the edge between two nodes takes constant time instead of time
+     * proportional to the predecessor's number of leaving edges, at the cost
+     * of one hash table entry per edge.
+     * 
+     * @param enabled true to build and maintain the index, or false to drop it
+     */
+    public void setEdgeIndexEnabled(boolean enabled) {
+        if (!enabled) {
+            edgeIndex = null;
+            return;
+        }
+        if (edgeIndex != null)
+            return;
+        edgeIndex = new LongHashMap<>(edgeCount);
+        for (Node node : nodeList)
+            if (node != null)
+                for (Edge edge : node.edgesLeaving)
+                    edgeIndex.put(edgeKey(node, edge.successor), edge);
+    }
+
+    /**
+     * Check whether the edge index is on.
+     * 
+     * @return true if edges are indexed by their pair of nodes
+     */
+    public boolean isEdgeIndexEnabled() {
+        return edgeIndex != null;
+    }
+
+    /**
+     * Return the number of changes made to the nodes and edges of this graph.
+     * The count grows whenever a node or edge is inserted or removed or an
+     * edge's weight is changed, so results computed from the graph are still
+     * valid as long as it has not changed.
+     * 
+     * @return the number of modifications made to this graph
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
+    // combines the ids of an edge's nodes into the key of its index entry
+    protected long edgeKey(Node pred, Node succ) {
+        return ((long) pred.index << 32) | succ.index;
+    }
+
+    /**
+     * Returns the node containing data, or null if there is none, without
+     * throwing when data is missing.
+     * 
+     * @throws NullPointerException if data is null
+     */
+    @SuppressWarnings("unchecked")
+    protected Node lookupNode(NodeType data) {
+        if (nodes instanceof OpenAddressingMap)
+            return ((OpenAddressingMap<NodeType, Node>) nodes).getOrDefault(data, null);
+        return nodes.containsKey(data) ? nodes.get(data) : null;
+    }
+
     /**
      * Insert a new node into the graph.
      * 
@@ -59,7 +175,17 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     public boolean insertNode(NodeType data) {
         if (nodes.containsKey(data))
             return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
+        Node newNode = new Node(data);
+        nodes.put(data, newNode);
+        // place the new node in a free slot of nodeList, or at its end
+        if (freeIndices.isEmpty()) {
+            newNode.index = nodeList.size();
+            nodeList.add(newNode);
+        } else {
+            newNode.index = freeIndices.pop();
+            nodeList.set(newNode.index, newNode);
+        }
+        modCount++;
         return true;
     }
 
@@ -77,12 +203,21 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         if (!nodes.containsKey(data))
             return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
+        nodeList.set(oldNode.index, null);
+        freeIndices.push(oldNode.index);
+        modCount++;
         // remove all edges entering neighboring nodes from this one
-        for (Edge edge : oldNode.edgesLeaving)
-            edge.successor.edgesEntering.remove(edge);
+        for (Edge edge : oldNode.edgesLeaving) {
+            unlinkEntering(edge);
+            if (edgeIndex != null)
+                edgeIndex.remove(edgeKey(oldNode, edge.successor));
+        }
         // remove all edges leaving neighboring nodes toward this one
-        for (Edge edge : oldNode.edgesEntering)
-            edge.predecessor.edgesLeaving.remove(edge);
+        for (Edge edge : oldNode.edgesEntering) {
+            unlinkLeaving(edge);
+            if (edgeIndex != null)
+                edgeIndex.remove(edgeKey(edge.predecessor, oldNode));
+        }
         return true;
     }
 
@@ -97,6 +232,57 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return nodes.containsKey(data);
     }
 
+    /**
+     * Return the id of the node containing the provided data. Every node is
+     * given a dense int id when it is inserted, which is its position in
+     * nodeList and its index in any FrozenGraph compiled from this graph. The
+     * id of a removed node is given to the next inserted node.
+     * 
+     * @param data the node contents to look for
+     * @return the id of that node, or -1 if data is not stored in the graph
+     */
+    public int getNodeId(NodeType data) {
+        Node node = lookupNode(data);
+        return node == null ? -1 : node.index;
+    }
+
+    /**
+     * Return the data stored in the node with the provided id.
+     * 
+     * @param id the id of the node
+     * @return the data stored in that node
+     * @throws NoSuchElementException if no node has that id
+     */
+    public NodeType getNodeData(int id) {
+        return nodeById(id).data;
+    }
+
+    /**
+     * Check whether the graph contains a node with the provided id.
+     * 
+     * @param id the id to check for
+     * @return true if a node has that id, or false otherwise
+     */
+    public boolean containsNodeId(int id) {
+        return id >= 0 && id < nodeList.size() && nodeList.get(id) != null;
+    }
+
+    /**
+     * Return the number of node ids, which is one more than the largest id in
+     * use. Arrays indexed by node id should have this length.
+     * 
+     * @return the number of node ids
+     */
+    public int getNodeIdCount() {
+        return nodeList.size();
+    }
+
+    protected Node nodeById(int id) {
+        if (!containsNodeId(id))
+            throw new NoSuchElementException("No node with id " + id);
+        return nodeList.get(id);
+    }
+
     /**
      * Return the number of nodes in the graph
      * 
@@ -119,25 +305,123 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      */
     public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
         // find nodes associated with node data, and return false when not found
-        Node predNode = nodes.get(pred);
-        Node succNode = nodes.get(succ);
+        Node predNode = lookupNode(pred);
+        Node succNode = lookupNode(succ);
         if (predNode == null || succNode == null)
             return false;
-        try {
+        return insertEdgeHelper(predNode, succNode, weight);
+    }
+
+    /**
+     * Insert a new directed edge between the nodes with the provided ids, or
+     * update the weight of the edge between them if it already exists, without
+     * looking up either node by its data.
+     * 
+     * @param predId the id of the new edge's predecessor node
+     * @param succId the id of the new edge's successor node
+     * @param weight is the non-negative data item stored in the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if no node has predId or succId
+     */
+    public boolean insertEdgeById(int predId, int succId, EdgeType weight) {
+        if (!containsNodeId(predId) || !containsNodeId(succId))
+            return false;
+        return insertEdgeHelper(nodeList.get(predId), nodeList.get(succId), weight);
+    }
+
+    protected boolean insertEdgeHelper(Node predNode, Node succNode, EdgeType weight) {
+        Edge existingEdge = findEdge(predNode, succNode);
+        boolean boxable = isBoxable(weight);
+        if (existingEdge != null && (boxable || existingEdge instanceof ExactEdge)) {
             // when an edge alread exists within the graph, update its weight
-            Edge existingEdge = getEdgeHelper(pred, succ);
-            existingEdge.data = weight;
-        } catch (NoSuchElementException e) {
+            existingEdge.setData(weight);
+        } else if (existingEdge != null) {
+            // an edge that only keeps its weight cannot hold this data, so it
+            // is replaced where it is in both of its nodes' edge lists
+            Edge newEdge = new ExactEdge(weight, predNode, succNode);
+            newEdge.leavingIndex = existingEdge.leavingIndex;
+            newEdge.enteringIndex = existingEdge.enteringIndex;
+            predNode.edgesLeaving.set(newEdge.leavingIndex, newEdge);
+            succNode.edgesEntering.set(newEdge.enteringIndex, newEdge);
+            if (edgeIndex != null)
+                edgeIndex.put(edgeKey(predNode, succNode), newEdge);
+        } else {
             // otherwise create a new edges
-            Edge newEdge = new Edge(weight, predNode, succNode);
+            Edge newEdge = boxable ? new Edge(weight.doubleValue(), predNode, succNode)
+                    : new ExactEdge(weight, predNode, succNode);
             this.edgeCount++;
             // and insert it into each of its adjacent nodes' respective lists
+            newEdge.leavingIndex = predNode.edgesLeaving.size();
+            newEdge.enteringIndex = succNode.edgesEntering.size();
             predNode.edgesLeaving.add(newEdge);
             succNode.edgesEntering.add(newEdge);
+            if (edgeIndex != null)
+                edgeIndex.put(edgeKey(predNode, succNode), newEdge);
         }
+        modCount++;
         return true;
     }
 
+    // removes an edge from its predecessor's leaving edges in constant time,
+    // by moving the last of those edges into its place
+    private void unlinkLeaving(Edge edge) {
+        List<Edge> edges = edge.predecessor.edgesLeaving;
+        Edge last = edges.remove(edges.size() - 1);
+        if (last != edge) {
+            last.leavingIndex = edge.leavingIndex;
+            edges.set(last.leavingIndex, last);
+        }
+    }
+
+    // removes an edge from its successor's entering edges in constant time,
+    // by moving the last of those edges into its place
+    private void unlinkEntering(Edge edge) {
+        List<Edge> edges = edge.successor.edgesEntering;
+        Edge last = edges.remove(edges.size() - 1);
+        if (last != edge) {
+            last.enteringIndex = edge.enteringIndex;
+            edges.set(last.enteringIndex, last);
+        }
+    }
+
+    /**
+     * Checks whether an edge can store data as its primitive weight alone, so
+     * that boxWeight gives back data equal to it. That is the case for the
+     * data of the boxed primitive types, whose value a double holds exactly,
+     * as long as all edges share one class of data.
+     */
+    protected boolean isBoxable(EdgeType data) {
+        Class<?> dataClass = data.getClass();
+        if (edgeDataClass == null) {
+            if (dataClass != Double.class && dataClass != Integer.class && dataClass != Long.class
+                    && dataClass != Float.class && dataClass != Short.class && dataClass != Byte.class)
+                return false;
+            edgeDataClass = dataClass;
+        }
+        return dataClass == edgeDataClass && data.equals(boxWeight(data.doubleValue()));
+    }
+
+    /**
+     * Boxes a primitive weight as the data of an edge, in edgeDataClass.
+     */
+    @SuppressWarnings("unchecked")
+    protected EdgeType boxWeight(double weight) {
+        Number data;
+        if (edgeDataClass == Double.class)
+            data = Double.valueOf(weight);
+        else if (edgeDataClass == Integer.class)
+            data = Integer.valueOf((int) weight);
+        else if (edgeDataClass == Long.class)
+            data = Long.valueOf((long) weight);
+        else if (edgeDataClass == Float.class)
+            data = Float.valueOf((float) weight);
+        else if (edgeDataClass == Short.class)
+            data = Short.valueOf((short) weight);
+        else
+            data = Byte.valueOf((byte) weight);
+        return (EdgeType) data;
+    }
+
     /**
      * Remove an edge from the graph.
      * 
@@ -147,19 +431,19 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *         false if such an edge is not found in the graph
      */
     public boolean removeEdge(NodeType pred, NodeType succ) {
-        try {
-            // when an edge exists
-            Edge oldEdge = getEdgeHelper(pred, succ);
-            // remove it from the edge lists of each adjacent node
-            oldEdge.predecessor.edgesLeaving.remove(oldEdge);
-            oldEdge.successor.edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
-            this.edgeCount--;
-            return true;
-        } catch (NoSuchElementException e) {
-            // when no such edge exists, return false instead
+        Edge oldEdge = findEdge(pred, succ);
+        // when no such edge exists, return false instead
+        if (oldEdge == null)
             return false;
-        }
+        // remove it from the edge lists of each adjacent node
+        unlinkLeaving(oldEdge);
+        unlinkEntering(oldEdge);
+        if (edgeIndex != null)
+            edgeIndex.remove(edgeKey(oldEdge.predecessor, oldEdge.successor));
+        // and decrement the edge count before removing
+        this.edgeCount--;
+        modCount++;
+        return true;
     }
 
     /**
@@ -170,12 +454,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return true if the edge is found in the graph, or false other
      */
     public boolean containsEdge(NodeType pred, NodeType succ) {
-        try {
-            getEdgeHelper(pred, succ);
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
-        }
+        return findEdge(pred, succ) != null;
     }
 
     /**
@@ -188,19 +467,65 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *                                are not found within this graph
      */
     public EdgeType getEdge(NodeType pred, NodeType succ) {
-        return getEdgeHelper(pred, succ).data;
+        return getEdgeHelper(pred, succ).getData();
+    }
+
+    /**
+     * Return the data associated with the edge between the nodes with the
+     * provided ids, without looking up either node by its data.
+     * 
+     * @param predId the id of the source node for the edge
+     * @param succId the id of the target node for the edge
+     * @return the non-negative data from the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public EdgeType getEdgeById(int predId, int succId) {
+        return getEdgeHelper(nodeById(predId), nodeById(succId)).getData();
     }
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
-        Node predNode = nodes.get(pred);
+        Edge edge = findEdge(pred, succ);
+        // when no such edge can be found, throw NSE
+        if (edge == null)
+            throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+                    succ.toString());
+        return edge;
+    }
+
+    protected Edge getEdgeHelper(Node predNode, Node succNode) {
+        Edge edge = findEdge(predNode, succNode);
+        // when no such edge can be found, throw NSE
+        if (edge == null)
+            throw new NoSuchElementException("No edge from " + predNode.data.toString() + " to " +
+                    succNode.data.toString());
+        return edge;
+    }
+
+    /**
+     * Returns the edge between the nodes containing pred and succ, or null if
+     * either node or the edge between them is not in this graph.
+     */
+    protected Edge findEdge(NodeType pred, NodeType succ) {
+        Node predNode = lookupNode(pred);
+        Node succNode = lookupNode(succ);
+        if (predNode == null || succNode == null)
+            return null;
+        return findEdge(predNode, succNode);
+    }
+
+    /**
+     * Returns the edge from predNode to succNode, or null if there is none.
+     */
+    protected Edge findEdge(Node predNode, Node succNode) {
+        if (edgeIndex != null)
+            return edgeIndex.get(edgeKey(predNode, succNode));
         // search for edge through the predecessor's list of leaving edges
         for (Edge edge : predNode.edgesLeaving)
-            // compare succ to the data in each leaving edge's successor
-            if (edge.successor.data.equals(succ))
+            // compare each leaving edge's successor to succNode
+            if (edge.successor == succNode)
                 return edge;
-        // when no such edge can be found, throw NSE
-        throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
-                succ.toString());
+        return null;
     }
 
     /**
@@ -212,4 +537,83 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return this.edgeCount;
     }
 
+    /**
+     * Compiles the current contents of this graph into an immutable compressed
+     * sparse row (CSR) representation. Nodes keep their index from nodeList,
+     * and the edges leaving each node are stored contiguously in primitive
+     * arrays, so that searches over the result never dereference Node or Edge
+     * objects. Later changes to this graph are not reflected in the result.
+     * 
+     * @return a FrozenGraph holding a snapshot of this graph
+     */
+    public FrozenGraph<NodeType> freeze() {
+        return freeze(false);
+    }
+
+    /**
+     * Does the same as freeze, optionally storing edge weights as floats,
+     * which halves the memory they use but rounds each weight to single
+     * precision.
+     * 
+     * @param singlePrecision true to store weights as floats, or false to
+     *                        store them as doubles
+     * @return a FrozenGraph holding a snapshot of this graph
+     */
+    public FrozenGraph<NodeType> freeze(boolean singlePrecision) {
+        int indexCount = nodeList.size();
+        Object[] nodeData = new Object[indexCount];
+        int[] offsets = new int[indexCount + 1];
+        int[] reverseOffsets = new int[indexCount + 1];
+        // count the edges leaving and entering each node to find where its
+        // edges start
+        for (int i = 0; i < indexCount; i++) {
+            Node node = nodeList.get(i);
+            int outDegree = 0;
+            int inDegree = 0;
+            if (node != null) {
+                nodeData[i] = node.data;
+                outDegree = node.edgesLeaving.size();
+                inDegree = node.edgesEntering.size();
+            }
+            offsets[i + 1] = offsets[i] + outDegree;
+            reverseOffsets[i + 1] = reverseOffsets[i] + inDegree;
+        }
+        // then copy the neighbor index and weight of each of those edges,
+        // allocating only the weight arrays of the chosen precision
+        int[] targets = new int[offsets[indexCount]];
+        int[] sources = new int[reverseOffsets[indexCount]];
+        double[] weights = singlePrecision ? null : new double[targets.length];
+        double[] reverseWeights = singlePrecision ? null : new double[sources.length];
+        float[] floatWeights = singlePrecision ? new float[targets.length] : null;
+        float[] floatReverseWeights = singlePrecision ? new float[sources.length] : null;
+        for (int i = 0; i < indexCount; i++) {
+            Node node = nodeList.get(i);
+            if (node == null)
+                continue;
+            int e = offsets[i];
+            for (Edge edge : node.edgesLeaving) {
+                targets[e] = edge.successor.index;
+                if (singlePrecision)
+                    floatWeights[e] = (float) edge.weight;
+                else
+                    weights[e] = edge.weight;
+                e++;
+            }
+            e = reverseOffsets[i];
+            for (Edge edge : node.edgesEntering) {
+                sources[e] = edge.predecessor.index;
+                if (singlePrecision)
+                    floatReverseWeights[e] = (float) edge.weight;
+                else
+                    reverseWeights[e] = edge.weight;
+                e++;
+            }
+        }
+        if (singlePrecision)
+            return new FrozenGraph<>(nodeData, nodes.getSize(), offsets, targets, floatWeights,
+                    reverseOffsets, sources, floatReverseWeights, modCount);
+        return new FrozenGraph<>(nodeData, nodes.getSize(), offsets, targets, weights,
+                reverseOffsets, sources, reverseWeights, modCount);
+    }
+
 }
@@ -0,0 +1,1100 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * A Contraction Hierarchy answers shortest path queries on a graph that does
+ * not change. Preprocessing contracts the nodes one at a time in order of
+ * importance: contracting a node removes it, and adds a shortcut edge between
+ * two of its neighbors whenever the only shortest path between them led
+ * through the removed node. Every node is then given a rank, its position in
+ * that order, and any shortest path can be found by searching only edges that
+ * lead to higher ranked nodes, forward from the start and backward from the
+ * end. Such searches settle a tiny fraction of the graph, and shortcuts in the
+ * path they find are unpacked back into the original edges.
+ *
+ * Preprocessing contracts an independent set of nodes in each round, so that
+ * the witness searches of each round can run in parallel. The result is
+ * Serializable, so it can be saved once and loaded at startup. A hierarchy
+ * carries a CRC32 of its node data, ranks and edge arrays, and loading one
+ * only deserializes the classes a hierarchy is made of, then checks the
+ * checksum and that every rank, offset, edge and weight is consistent, so a
+ * damaged file is rejected with an IOException rather than answering queries
+ * wrongly or failing while it is searched.
+ */
+public class ContractionHierarchy<NodeType> implements Serializable {
+
+    private static final long serialVersionUID = 3L;
+
+    // witness searches give up after settling this many nodes and add a
+    // shortcut, which may be unnecessary but is never wrong
+    protected static final int WITNESS_SETTLE_LIMIT = 500;
+
+    // node data by index, null for unused indexes, as in FrozenGraph
+    protected final Object[] nodeData;
+    // the position of each node in the contraction order
+    protected final int[] rank;
+    // edges u->w with rank[u] < rank[w], stored at u, used by forward searches;
+    // middle is the contracted node a shortcut bypasses, or -1 for an edge of
+    // the original graph
+    protected final int[] upOffsets;
+    protected final int[] upTargets;
+    protected final double[] upWeights;
+    protected final int[] upMiddles;
+    // edges u->w with rank[u] > rank[w], stored at w, used by backward searches
+    protected final int[] downOffsets;
+    protected final int[] downSources;
+    protected final double[] downWeights;
+    protected final int[] downMiddles;
+    protected final int shortcutCount;
+    // version of the FrozenGraph this hierarchy was built from
+    protected final int version;
+    // checksum of the edges and weights of that graph, from edgeChecksum
+    protected final long edgeChecksum;
+    // CRC32 of this hierarchy's own arrays, from arrayChecksum
+    protected final long arrayChecksum;
+
+    // rebuilt after deserialization by init()
+    protected transient OpenAddressingMap<NodeType, Integer> indexes;
+    protected transient ThreadLocal<SearchWorkspace> forwardWorkspaces;
+    protected transient ThreadLocal<SearchWorkspace> backwardWorkspaces;
+
+    /**
+     * Constructor for ContractionHierarchy, used by build.
+     */
+    protected ContractionHierarchy(Object[] nodeData, int[] rank, EdgeLists up, EdgeLists down,
+            int shortcutCount, int version, long edgeChecksum) {
+        this.nodeData = nodeData;
+        this.rank = rank;
+        this.upOffsets = up.offsets();
+        this.upTargets = up.neighbors();
+        this.upWeights = up.weights();
+        this.upMiddles = up.middles();
+        this.downOffsets = down.offsets();
+        this.downSources = down.neighbors();
+        this.downWeights = down.weights();
+        this.downMiddles = down.middles();
+        this.shortcutCount = shortcutCount;
+        this.version = version;
+        this.edgeChecksum = edgeChecksum;
+        this.arrayChecksum = arrayChecksum();
+        init();
+    }
+
+    /**
+     * Builds a contraction hierarchy from the current contents of a graph,
+     * using every available processor.
+     *
+     * @param graph the graph to preprocess
+     * @return the contraction hierarchy of that graph
+     */
+    public static <T> ContractionHierarchy<T> build(BaseGraph<T, ?> graph) {
+        return build(graph.freeze(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds a contraction hierarchy from a frozen graph.
+     *
+     * @param graph       the graph to preprocess
+     * @param parallelism the number of threads to run witness searches on
+     * @return the contraction hierarchy of that graph
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public static <T> ContractionHierarchy<T> build(FrozenGraph<T> graph, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return new Contractor(graph, pool).contract();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads a contraction hierarchy written by save. Only a hierarchy, its
+     * arrays, and node data that are Strings, boxed numbers, characters or
+     * booleans are deserialized.
+     *
+     * @param file the file to read
+     * @return the contraction hierarchy stored in that file
+     * @throws IOException if the file cannot be read, does not hold a
+     *                     contraction hierarchy, or holds one that is damaged
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ContractionHierarchy<T> load(Path file) throws IOException {
+        long size = Files.size(file);
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            in.setObjectInputFilter(info -> checkClass(info, size));
+            return (ContractionHierarchy<T>) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a contraction hierarchy: " + file, e);
+        } catch (RuntimeException e) {
+            // such as a damaged class descriptor or string
+            throw new IOException("Damaged contraction hierarchy: " + file, e);
+        }
+    }
+
+    // accepts only the classes a hierarchy of simple node data is made of,
+    // and no array longer than the file it is read from could hold
+    private static ObjectInputFilter.Status checkClass(ObjectInputFilter.FilterInfo info, long fileSize) {
+        if (info.arrayLength() > fileSize || info.depth() > 3)
+            return ObjectInputFilter.Status.REJECTED;
+        Class<?> type = info.serialClass();
+        if (type == null)
+            return ObjectInputFilter.Status.UNDECIDED;
+        while (type.isArray())
+            type = type.getComponentType();
+        boolean allowed = type.isPrimitive() || type == ContractionHierarchy.class || type == Object.class
+                || type == String.class || type == Number.class || type == Integer.class
+                || type == Long.class || type == Short.class || type == Byte.class || type == Double.class
+                || type == Float.class || type == Character.class || type == Boolean.class;
+        return allowed ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+    }
+
+    /**
+     * Writes this contraction hierarchy to a file, so that it can be loaded
+     * later without repeating the preprocessing. The data of every node must
+     * be a String, a boxed number, a Character or a Boolean for load to read
+     * the file back.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(this);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        validate();
+        if (arrayChecksum() != arrayChecksum)
+            throw new InvalidObjectException("contraction hierarchy checksum does not match");
+        init();
+    }
+
+    // CRC32 of the node data's hash codes, the ranks, the edge arrays and the
+    // shortcut count; node data are Strings or boxed values, whose hash codes
+    // are the same in every run
+    private long arrayChecksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+        for (Object data : nodeData)
+            buffer = put(crc, buffer, data == null ? 0 : data.hashCode());
+        for (int[] values : new int[][] { rank, upOffsets, upTargets, upMiddles, downOffsets, downSources,
+                downMiddles })
+            for (int value : values)
+                buffer = put(crc, buffer, value);
+        for (double[] values : new double[][] { upWeights, downWeights })
+            for (double value : values) {
+                long bits = Double.doubleToLongBits(value);
+                buffer = put(crc, buffer, (int) (bits >>> 32));
+                buffer = put(crc, buffer, (int) bits);
+            }
+        buffer = put(crc, buffer, shortcutCount);
+        buffer.flip();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    // adds an int to buffer, first passing a full buffer to crc
+    private static ByteBuffer put(CRC32 crc, ByteBuffer buffer, int value) {
+        if (!buffer.hasRemaining()) {
+            buffer.flip();
+            crc.update(buffer);
+            buffer.clear();
+        }
+        return buffer.putInt(value);
+    }
+
+    /**
+     * Checks that deserialized arrays describe a hierarchy that queries can
+     * search and unpack: ranks that order the nodes, CSR arrays whose offsets
+     * fit their edges, edges between existing nodes that lead to a higher
+     * ranked node, finite non-negative weights, and shortcuts whose halves are
+     * edges at a lower ranked middle node.
+     */
+    private void validate() throws InvalidObjectException {
+        if (nodeData == null || rank == null || upOffsets == null || upTargets == null || upWeights == null
+                || upMiddles == null || downOffsets == null || downSources == null || downWeights == null
+                || downMiddles == null)
+            throw new InvalidObjectException("contraction hierarchy is missing arrays");
+        int used = 0;
+        for (Object data : nodeData)
+            if (data != null)
+                used++;
+        if (rank.length != nodeData.length)
+            throw new InvalidObjectException("contraction hierarchy has " + rank.length + " ranks for "
+                    + nodeData.length + " nodes");
+        boolean[] ranked = new boolean[used];
+        for (int v = 0; v < nodeData.length; v++) {
+            if (nodeData[v] == null)
+                continue;
+            if (rank[v] < 0 || rank[v] >= used || ranked[rank[v]])
+                throw new InvalidObjectException("contraction hierarchy has invalid rank " + rank[v]);
+            ranked[rank[v]] = true;
+        }
+        // shortcuts that were merged with an edge between the same nodes are
+        // counted but not stored, so there can only be fewer
+        int shortcuts = validateEdges(upOffsets, upTargets, upWeights, upMiddles)
+                + validateEdges(downOffsets, downSources, downWeights, downMiddles);
+        if (shortcuts > shortcutCount)
+            throw new InvalidObjectException("contraction hierarchy has " + shortcuts + " shortcuts, not "
+                    + shortcutCount);
+        // every shortcut from a to b through m unpacks into the edges a->m,
+        // stored at m for backward searches, and m->b, stored at m for forward
+        // ones
+        for (int v = 0; v < nodeData.length; v++) {
+            for (int e = upOffsets[v]; e < upOffsets[v + 1]; e++)
+                if (upMiddles[e] != -1 && !hasHalves(v, upMiddles[e], upTargets[e]))
+                    throw new InvalidObjectException("contraction hierarchy has a shortcut without its edges");
+            for (int e = downOffsets[v]; e < downOffsets[v + 1]; e++)
+                if (downMiddles[e] != -1 && !hasHalves(downSources[e], downMiddles[e], v))
+                    throw new InvalidObjectException("contraction hierarchy has a shortcut without its edges");
+        }
+    }
+
+    private boolean hasHalves(int a, int m, int b) {
+        return downEdge(a, m) != -1 && upEdge(m, b) != -1;
+    }
+
+    // checks the edges stored at each node v, which all lead between v and a
+    // higher ranked node, returning the number of shortcuts among them
+    private int validateEdges(int[] offsets, int[] neighbors, double[] weights, int[] middles)
+            throws InvalidObjectException {
+        int n = nodeData.length;
+        if (offsets.length != n + 1 || offsets[0] != 0 || offsets[n] != neighbors.length
+                || weights.length != neighbors.length || middles.length != neighbors.length)
+            throw new InvalidObjectException("contraction hierarchy has inconsistent edge arrays");
+        for (int v = 0; v < n; v++)
+            if (offsets[v + 1] < offsets[v] || (nodeData[v] == null && offsets[v + 1] != offsets[v]))
+                throw new InvalidObjectException("contraction hierarchy has invalid edge offsets");
+        int shortcuts = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int other = neighbors[e];
+                int middle = middles[e];
+                if (other < 0 || other >= n || nodeData[other] == null || rank[other] <= rank[v])
+                    throw new InvalidObjectException("contraction hierarchy has an edge to node " + other);
+                if (!(weights[e] >= 0) || weights[e] == Double.POSITIVE_INFINITY)
+                    throw new InvalidObjectException("contraction hierarchy has invalid weight " + weights[e]);
+                if (middle == -1)
+                    continue;
+                if (middle < 0 || middle >= n || nodeData[middle] == null || rank[middle] >= rank[v])
+                    throw new InvalidObjectException("contraction hierarchy has a shortcut through node " + middle);
+                shortcuts++;
+            }
+        }
+        return shortcuts;
+    }
+
+    // builds the transient node index and search state
+    @SuppressWarnings("unchecked")
+    private void init() {
+        indexes = new OpenAddressingMap<>(nodeData.length);
+        for (int i = 0; i < nodeData.length; i++)
+            if (nodeData[i] != null)
+                indexes.put((NodeType) nodeData[i], i);
+        forwardWorkspaces = ThreadLocal.withInitial(SearchWorkspace::new);
+        backwardWorkspaces = ThreadLocal.withInitial(SearchWorkspace::new);
+    }
+
+    /**
+     * Return the number of shortcuts added by preprocessing.
+     *
+     * @return the number of shortcut edges
+     */
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * Return the version of the FrozenGraph this hierarchy was built from.
+     *
+     * @return the version of that graph
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Check whether this hierarchy was built from a graph with the same data
+     * at the same node indexes, and the same edges with the same weights, as
+     * a frozen graph. Versions are not compared: a graph loaded again from the
+     * same file, as at every startup, has new versions but the same contents.
+     *
+     * @param graph the graph to compare with
+     * @return true if both graphs have the same nodes, edges and weights
+     */
+    public boolean matches(FrozenGraph<NodeType> graph) {
+        if (graph.getIndexCount() != nodeData.length)
+            return false;
+        for (int i = 0; i < nodeData.length; i++)
+            if (nodeData[i] == null ? graph.nodeData[i] != null : !nodeData[i].equals(graph.nodeData[i]))
+                return false;
+        return edgeChecksum(graph) == edgeChecksum;
+    }
+
+    // hashes the edge offsets, targets and weight bits of a frozen graph into
+    // 64 bits, so that matches notices any edge or weight that changed
+    protected static long edgeChecksum(FrozenGraph<?> graph) {
+        long hash = graph.getIndexCount();
+        for (int i = 0; i < graph.getIndexCount(); i++) {
+            hash = mix(hash, graph.edgesEnd(i));
+            for (int e = graph.edgesBegin(i); e < graph.edgesEnd(i); e++) {
+                hash = mix(hash, graph.target(e));
+                hash = mix(hash, Double.doubleToLongBits(graph.weight(e)));
+            }
+        }
+        return hash;
+    }
+
+    // one round of a multiply-xorshift hash
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path from
+     * the node with the provided start value through the node with the
+     * provided end value, with all shortcuts unpacked.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        return shortestPathDataByIndex(indexOf(start), indexOf(end));
+    }
+
+    /**
+     * Does the same as shortestPathData, for the nodes with the provided
+     * indexes, which are the node ids of the graph this hierarchy was built
+     * from.
+     *
+     * @param start index of the starting node
+     * @param end   index of the destination node
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when no node has either index
+     */
+    @SuppressWarnings("unchecked")
+    public List<NodeType> shortestPathDataByIndex(int start, int end) {
+        int meetingNode = computePath(checkIndex(start), checkIndex(end));
+        if (meetingNode == -1)
+            throw new NoSuchElementException("No path from " + nodeData[start].toString() + " to "
+                    + nodeData[end].toString());
+        LinkedList<NodeType> pathData = new LinkedList<>();
+        for (int node : unpackPath(meetingNode, null))
+            pathData.add((NodeType) nodeData[node]);
+        return pathData;
+    }
+
+    /**
+     * Returns the shortest route from the node containing the start data to
+     * the node containing the end data, with the weight of each of its edges.
+     *
+     * @param start the data item in the starting node for the route
+     * @param end   the data item in the destination node for the route
+     * @return the shortest route from start to end
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    public Route<NodeType> shortestRoute(NodeType start, NodeType end) {
+        return shortestRouteByIndex(indexOf(start), indexOf(end));
+    }
+
+    /**
+     * Returns the shortest route from the node with index start to the node
+     * with index end, with all shortcuts unpacked into the original edges,
+     * whose weights are read from the hierarchy as they are unpacked.
+     *
+     * @param start index of the starting node
+     * @param end   index of the destination node
+     * @return the shortest route from start to end
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when no node has either index
+     */
+    @SuppressWarnings("unchecked")
+    public Route<NodeType> shortestRouteByIndex(int start, int end) {
+        int meetingNode = computePath(checkIndex(start), checkIndex(end));
+        if (meetingNode == -1)
+            throw new NoSuchElementException("No path from " + nodeData[start].toString() + " to "
+                    + nodeData[end].toString());
+        List<Double> travelTimes = new ArrayList<>();
+        List<NodeType> pathData = new ArrayList<>();
+        for (int node : unpackPath(meetingNode, travelTimes))
+            pathData.add((NodeType) nodeData[node]);
+        double totalCost = forwardWorkspaces.get().getCost(meetingNode)
+                + backwardWorkspaces.get().getCost(meetingNode);
+        return new Route<>(pathData, travelTimes, totalCost, getSettledCount());
+    }
+
+    /**
+     * Returns the cost of the shortest path from the node containing the start
+     * data to the node containing the end data.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return shortestPathCostByIndex(indexOf(start), indexOf(end));
+    }
+
+    /**
+     * Does the same as shortestPathCost, for the nodes with the provided
+     * indexes.
+     *
+     * @param start index of the starting node
+     * @param end   index of the destination node
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when no node has either index
+     */
+    public double shortestPathCostByIndex(int start, int end) {
+        int meetingNode = computePath(checkIndex(start), checkIndex(end));
+        if (meetingNode == -1)
+            throw new NoSuchElementException("No path from " + nodeData[start].toString() + " to "
+                    + nodeData[end].toString());
+        return forwardWorkspaces.get().getCost(meetingNode) + backwardWorkspaces.get().getCost(meetingNode);
+    }
+
+    /**
+     * Return the number of nodes settled by the most recent query on the
+     * calling thread.
+     *
+     * @return the number of nodes settled by both directions of that query
+     */
+    public int getSettledCount() {
+        return forwardWorkspaces.get().getSettledCount() + backwardWorkspaces.get().getSettledCount();
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= nodeData.length || nodeData[index] == null)
+            throw new NoSuchElementException("No node with index " + index);
+        return index;
+    }
+
+    private int indexOf(NodeType data) {
+        int index = indexes.getOrDefault(data, -1);
+        if (index < 0)
+            throw new NoSuchElementException("That key is not in the graph");
+        return index;
+    }
+
+    /**
+     * Searches upward from start over edges leaving each node and upward from
+     * end over edges entering each node. Each direction stops once the
+     * cheapest node left in its heap costs at least as much as the best path
+     * found, and the best path passes through the highest ranked node on it,
+     * which both directions settle. Each node's parent edge is the index of
+     * the upward edge it was reached by, in the up arrays for the forward
+     * search and in the down arrays for the backward search.
+     *
+     * @param start index of the starting node
+     * @param end   index of the destination node
+     * @return the index of the node where the shortest path's two halves meet,
+     *         or -1 if end cannot be reached from start
+     */
+    protected int computePath(int start, int end) {
+        SearchWorkspace forward = forwardWorkspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        forward.begin(nodeData.length);
+        backward.begin(nodeData.length);
+        IndexedMinHeap forwardHeap = forward.getHeap(4);
+        IndexedMinHeap backwardHeap = backward.getHeap(4);
+        forward.reach(start, 0, -1);
+        backward.reach(end, 0, -1);
+        forwardHeap.insert(start, 0);
+        backwardHeap.insert(end, 0);
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+        while (true) {
+            if (!forwardHeap.isEmpty() && forwardHeap.peekPriority() >= bestCost)
+                forwardHeap.clear();
+            if (!backwardHeap.isEmpty() && backwardHeap.peekPriority() >= bestCost)
+                backwardHeap.clear();
+            if (forwardHeap.isEmpty() && backwardHeap.isEmpty())
+                return meetingNode;
+
+            boolean forwardStep = backwardHeap.isEmpty()
+                    || (!forwardHeap.isEmpty() && forwardHeap.peekPriority() <= backwardHeap.peekPriority());
+            SearchWorkspace self = forwardStep ? forward : backward;
+            SearchWorkspace other = forwardStep ? backward : forward;
+            IndexedMinHeap heap = forwardStep ? forwardHeap : backwardHeap;
+            int[] offsets = forwardStep ? upOffsets : downOffsets;
+            int[] neighbors = forwardStep ? upTargets : downSources;
+            double[] weights = forwardStep ? upWeights : downWeights;
+
+            int node = heap.poll();
+            self.settle(node);
+            double nodeCost = self.getCost(node);
+            if (other.isReached(node) && nodeCost + other.getCost(node) < bestCost) {
+                bestCost = nodeCost + other.getCost(node);
+                meetingNode = node;
+            }
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                int next = neighbors[e];
+                double newCost = nodeCost + weights[e];
+                if (!self.isSettled(next) && newCost < self.getCost(next)) {
+                    self.reach(next, newCost, node, e);
+                    heap.insertOrDecrease(next, newCost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the cost of the shortest path from every origin to every
+     * destination with the bucket-based many-to-many algorithm. A complete
+     * upward search backward from each destination leaves a bucket entry,
+     * holding that destination and its cost, at every node it settles. A
+     * complete upward search forward from each origin then scans the bucket
+     * of every node it settles, since each shortest path meets its
+     * destination's search at its highest ranked node. Both phases run their
+     * searches in parallel on the common ForkJoinPool.
+     *
+     * @param origins      the data items of the nodes paths start at
+     * @param destinations the data items of the nodes paths end at
+     * @return costs[i][j] is the cost of the shortest path from origin i to
+     *         destination j, or Double.POSITIVE_INFINITY if there is none
+     * @throws NoSuchElementException when an origin or destination does not
+     *                                correspond to a graph node
+     */
+    public double[][] distanceMatrix(List<NodeType> origins, List<NodeType> destinations) {
+        int[] sources = new int[origins.size()];
+        int[] targets = new int[destinations.size()];
+        for (int i = 0; i < sources.length; i++)
+            sources[i] = indexOf(origins.get(i));
+        for (int j = 0; j < targets.length; j++)
+            targets[j] = indexOf(destinations.get(j));
+
+        // search backward from every destination
+        int[][] reached = new int[targets.length][];
+        double[][] reachedCosts = new double[targets.length][];
+        IntStream.range(0, targets.length).parallel().forEach(j -> {
+            SearchWorkspace workspace = backwardWorkspaces.get();
+            reached[j] = upwardSearch(targets[j], downOffsets, downSources, downWeights, workspace);
+            reachedCosts[j] = new double[reached[j].length];
+            for (int k = 0; k < reached[j].length; k++)
+                reachedCosts[j][k] = workspace.getCost(reached[j][k]);
+        });
+
+        // group the bucket entries by node, so that the entries of node v are
+        // stored from bucketOffsets[v] to bucketOffsets[v+1]-1
+        int[] bucketOffsets = new int[nodeData.length + 1];
+        for (int[] nodes : reached)
+            for (int v : nodes)
+                bucketOffsets[v + 1]++;
+        for (int v = 0; v < nodeData.length; v++)
+            bucketOffsets[v + 1] += bucketOffsets[v];
+        int[] bucketTargets = new int[bucketOffsets[nodeData.length]];
+        double[] bucketCosts = new double[bucketTargets.length];
+        int[] fill = Arrays.copyOf(bucketOffsets, nodeData.length);
+        for (int j = 0; j < targets.length; j++)
+            for (int k = 0; k < reached[j].length; k++) {
+                int position = fill[reached[j][k]]++;
+                bucketTargets[position] = j;
+                bucketCosts[position] = reachedCosts[j][k];
+            }
+
+        // search forward from every origin, scanning the buckets it settles
+        double[][] costs = new double[sources.length][targets.length];
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            SearchWorkspace workspace = forwardWorkspaces.get();
+            double[] row = costs[i];
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+            for (int v : upwardSearch(sources[i], upOffsets, upTargets, upWeights, workspace)) {
+                double cost = workspace.getCost(v);
+                for (int b = bucketOffsets[v]; b < bucketOffsets[v + 1]; b++)
+                    if (cost + bucketCosts[b] < row[bucketTargets[b]])
+                        row[bucketTargets[b]] = cost + bucketCosts[b];
+            }
+        });
+        return costs;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from node over the provided edges until every
+     * node they lead to has been settled, leaving the costs in workspace.
+     *
+     * @return the settled nodes in the order they were settled
+     */
+    private int[] upwardSearch(int node, int[] offsets, int[] neighbors, double[] weights,
+            SearchWorkspace workspace) {
+        workspace.begin(nodeData.length);
+        IndexedMinHeap heap = workspace.getHeap(4);
+        workspace.reach(node, 0, -1);
+        heap.insert(node, 0);
+        int[] order = new int[16];
+        int settledCount = 0;
+        while (!heap.isEmpty()) {
+            node = heap.poll();
+            workspace.settle(node);
+            if (settledCount == order.length)
+                order = Arrays.copyOf(order, settledCount * 2);
+            order[settledCount++] = node;
+            double nodeCost = workspace.getCost(node);
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                int next = neighbors[e];
+                double newCost = nodeCost + weights[e];
+                if (!workspace.isSettled(next) && newCost < workspace.getCost(next)) {
+                    workspace.reach(next, newCost, node);
+                    heap.insertOrDecrease(next, newCost);
+                }
+            }
+        }
+        return Arrays.copyOf(order, settledCount);
+    }
+
+    /**
+     * Returns the indexes of the nodes along the path found by the most recent
+     * computePath on this thread, with every shortcut replaced by the original
+     * edges it stands for. When weights is not null, the weight of each of
+     * those edges is added to it in order.
+     */
+    protected List<Integer> unpackPath(int meetingNode, List<Double> weights) {
+        SearchWorkspace forward = forwardWorkspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        // the nodes and edges of the upward path from start to the meeting
+        // node, then of the path from the meeting node down to end; an edge
+        // is named by its index e in the up arrays, or by ~e in the down arrays
+        LinkedList<Integer> hierarchyPath = new LinkedList<>();
+        LinkedList<Integer> hierarchyEdges = new LinkedList<>();
+        int node = meetingNode;
+        hierarchyPath.add(node);
+        for (; forward.getParent(node) != -1; node = forward.getParent(node)) {
+            hierarchyPath.addFirst(forward.getParent(node));
+            hierarchyEdges.addFirst(forward.getParentEdge(node));
+        }
+        for (node = meetingNode; backward.getParent(node) != -1; node = backward.getParent(node)) {
+            hierarchyPath.addLast(backward.getParent(node));
+            hierarchyEdges.addLast(~backward.getParentEdge(node));
+        }
+
+        LinkedList<Integer> path = new LinkedList<>();
+        path.add(hierarchyPath.getFirst());
+        int[] stack = new int[3 * 64];
+        Iterator<Integer> nodes = hierarchyPath.iterator();
+        int previous = nodes.next();
+        for (int edge : hierarchyEdges) {
+            int next = nodes.next();
+            stack = unpackEdge(previous, next, edge, path, weights, stack);
+            previous = next;
+        }
+        return path;
+    }
+
+    /**
+     * Appends the nodes after from along the original path of the edge from
+     * from to to (named edge, as in unpackPath) to path, and their weights to
+     * weights unless it is null. The stack of edges still to unpack is passed
+     * in and returned so it can be reused.
+     */
+    private int[] unpackEdge(int from, int to, int edge, List<Integer> path, List<Double> weights,
+            int[] stack) {
+        int size = 0;
+        stack[size++] = from;
+        stack[size++] = to;
+        stack[size++] = edge;
+        while (size > 0) {
+            int e = stack[--size];
+            int b = stack[--size];
+            int a = stack[--size];
+            int m = e >= 0 ? upMiddles[e] : downMiddles[~e];
+            if (m == -1) {
+                path.add(b);
+                if (weights != null)
+                    weights.add(e >= 0 ? upWeights[e] : downWeights[~e]);
+                continue;
+            }
+            if (size + 6 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            // the bypassed node ranks below both ends, so the edge a->m is
+            // stored at m for backward searches and m->b at m for forward ones;
+            // push the second half first so that the first half is unpacked first
+            stack[size++] = m;
+            stack[size++] = b;
+            stack[size++] = upEdge(m, b);
+            stack[size++] = a;
+            stack[size++] = m;
+            stack[size++] = ~downEdge(a, m);
+        }
+        return stack;
+    }
+
+    // index of the cheapest upward edge from a to b, which is stored at a
+    private int upEdge(int a, int b) {
+        int best = -1;
+        for (int e = upOffsets[a]; e < upOffsets[a + 1]; e++)
+            if (upTargets[e] == b && (best == -1 || upWeights[e] < upWeights[best]))
+                best = e;
+        return best;
+    }
+
+    // index of the cheapest downward edge from a to b, which is stored at b
+    private int downEdge(int a, int b) {
+        int best = -1;
+        for (int e = downOffsets[b]; e < downOffsets[b + 1]; e++)
+            if (downSources[e] == a && (best == -1 || downWeights[e] < downWeights[best]))
+                best = e;
+        return best;
+    }
+
+    /**
+     * Growable per-node lists of edges, compiled into CSR arrays once
+     * preprocessing is complete.
+     */
+    protected static class EdgeLists {
+        protected int[][] neighbor;
+        protected double[][] weight;
+        protected int[][] middle;
+        protected int[] size;
+
+        protected EdgeLists(int indexCount) {
+            neighbor = new int[indexCount][];
+            weight = new double[indexCount][];
+            middle = new int[indexCount][];
+            size = new int[indexCount];
+        }
+
+        // finds the position of the edge at node leading to other, or -1
+        protected int find(int node, int other) {
+            for (int i = 0; i < size[node]; i++)
+                if (neighbor[node][i] == other)
+                    return i;
+            return -1;
+        }
+
+        // adds an edge at node, or lowers the weight of an existing one
+        protected void add(int node, int other, double edgeWeight, int edgeMiddle) {
+            int i = find(node, other);
+            if (i >= 0) {
+                if (edgeWeight < weight[node][i]) {
+                    weight[node][i] = edgeWeight;
+                    middle[node][i] = edgeMiddle;
+                }
+                return;
+            }
+            if (neighbor[node] == null) {
+                neighbor[node] = new int[4];
+                weight[node] = new double[4];
+                middle[node] = new int[4];
+            } else if (size[node] == neighbor[node].length) {
+                int capacity = size[node] * 2;
+                neighbor[node] = Arrays.copyOf(neighbor[node], capacity);
+                weight[node] = Arrays.copyOf(weight[node], capacity);
+                middle[node] = Arrays.copyOf(middle[node], capacity);
+            }
+            neighbor[node][size[node]] = other;
+            weight[node][size[node]] = edgeWeight;
+            middle[node][size[node]] = edgeMiddle;
+            size[node]++;
+        }
+
+        // removes the edge at node leading to other, if there is one
+        protected void remove(int node, int other) {
+            int i = find(node, other);
+            if (i < 0)
+                return;
+            int last = --size[node];
+            neighbor[node][i] = neighbor[node][last];
+            weight[node][i] = weight[node][last];
+            middle[node][i] = middle[node][last];
+        }
+
+        protected int[] offsets() {
+            int[] offsets = new int[size.length + 1];
+            for (int v = 0; v < size.length; v++)
+                offsets[v + 1] = offsets[v] + size[v];
+            return offsets;
+        }
+
+        protected int[] neighbors() {
+            int[] all = new int[offsets()[size.length]];
+            for (int v = 0, e = 0; v < size.length; e += size[v], v++)
+                if (size[v] > 0)
+                    System.arraycopy(neighbor[v], 0, all, e, size[v]);
+            return all;
+        }
+
+        protected double[] weights() {
+            double[] all = new double[offsets()[size.length]];
+            for (int v = 0, e = 0; v < size.length; e += size[v], v++)
+                if (size[v] > 0)
+                    System.arraycopy(weight[v], 0, all, e, size[v]);
+            return all;
+        }
+
+        protected int[] middles() {
+            int[] all = new int[offsets()[size.length]];
+            for (int v = 0, e = 0; v < size.length; e += size[v], v++)
+                if (size[v] > 0)
+                    System.arraycopy(middle[v], 0, all, e, size[v]);
+            return all;
+        }
+    }
+
+    /**
+     * Holds the graph that remains while nodes are being contracted, and
+     * performs the contraction.
+     */
+    private static class Contractor {
+        private final FrozenGraph<?> graph;
+        private final ForkJoinPool pool;
+        private final int indexCount;
+        // edges between nodes that have not been contracted yet
+        private final EdgeLists out;
+        private final EdgeLists in;
+        // edges recorded for the finished hierarchy
+        private final EdgeLists up;
+        private final EdgeLists down;
+        private final boolean[] contracted;
+        // nodes being contracted in the current round, which witness searches avoid
+        private final boolean[] inRound;
+        private final int[] contractedNeighbors;
+        private final double[] priority;
+        private final int[] rank;
+        private final ThreadLocal<SearchWorkspace> witnessWorkspaces =
+                ThreadLocal.withInitial(SearchWorkspace::new);
+
+        Contractor(FrozenGraph<?> graph, ForkJoinPool pool) {
+            this.graph = graph;
+            this.pool = pool;
+            this.indexCount = graph.getIndexCount();
+            out = new EdgeLists(indexCount);
+            in = new EdgeLists(indexCount);
+            up = new EdgeLists(indexCount);
+            down = new EdgeLists(indexCount);
+            contracted = new boolean[indexCount];
+            inRound = new boolean[indexCount];
+            contractedNeighbors = new int[indexCount];
+            priority = new double[indexCount];
+            rank = new int[indexCount];
+            for (int u = 0; u < indexCount; u++)
+                for (int e = graph.edgesBegin(u); e < graph.edgesEnd(u); e++) {
+                    int w = graph.target(e);
+                    if (w == u)
+                        continue; // a loop is never part of a shortest path
+                    out.add(u, w, graph.weight(e), -1);
+                    in.add(w, u, graph.weight(e), -1);
+                }
+        }
+
+        <T> ContractionHierarchy<T> contract() {
+            // unused indexes are treated as contracted from the start; pending
+            // lists the nodes that are not, and is compacted after each round
+            int[] pending = new int[indexCount];
+            int remaining = 0;
+            for (int v = 0; v < indexCount; v++) {
+                contracted[v] = graph.nodeData[v] == null;
+                if (!contracted[v])
+                    pending[remaining++] = v;
+            }
+            inParallel(Arrays.copyOf(pending, remaining), v -> priority[v] = computePriority(v));
+
+            // reused by every round; only entries of the round's nodes are set
+            double[][] shortcuts = new double[indexCount][];
+            boolean[] touched = new boolean[indexCount];
+            int[] changed = new int[indexCount];
+            int nextRank = 0;
+            int shortcutCount = 0;
+            while (remaining > 0) {
+                // contract every node whose priority is lower than all of its
+                // neighbors; no two of these nodes are adjacent
+                int[] candidates = Arrays.copyOf(pending, remaining);
+                int[] round = onPool(() -> Arrays.stream(candidates).parallel()
+                        .filter(this::isLocalMinimum).toArray());
+                for (int v : round)
+                    inRound[v] = true;
+                inParallel(round, v -> shortcuts[v] = findShortcuts(v));
+
+                int changedCount = 0;
+                for (int v : round) {
+                    rank[v] = nextRank++;
+                    // the edges remaining at v lead to higher ranked nodes
+                    for (int i = 0; i < out.size[v]; i++) {
+                        int w = out.neighbor[v][i];
+                        up.add(v, w, out.weight[v][i], out.middle[v][i]);
+                        in.remove(w, v);
+                        contractedNeighbors[w]++;
+                        if (!touched[w]) {
+                            touched[w] = true;
+                            changed[changedCount++] = w;
+                        }
+                    }
+                    for (int i = 0; i < in.size[v]; i++) {
+                        int u = in.neighbor[v][i];
+                        down.add(v, u, in.weight[v][i], in.middle[v][i]);
+                        out.remove(u, v);
+                        contractedNeighbors[u]++;
+                        if (!touched[u]) {
+                            touched[u] = true;
+                            changed[changedCount++] = u;
+                        }
+                    }
+                    contracted[v] = true;
+                    inRound[v] = false;
+                }
+                for (int v : round) {
+                    for (int s = 0; s < shortcuts[v].length; s += 3) {
+                        int u = (int) shortcuts[v][s];
+                        int w = (int) shortcuts[v][s + 1];
+                        out.add(u, w, shortcuts[v][s + 2], v);
+                        in.add(w, u, shortcuts[v][s + 2], v);
+                        shortcutCount++;
+                    }
+                    shortcuts[v] = null;
+                }
+                // the neighbors of a round are never in it, so none of them is contracted
+                int[] neighbors = Arrays.copyOf(changed, changedCount);
+                for (int v : neighbors)
+                    touched[v] = false;
+                inParallel(neighbors, v -> priority[v] = computePriority(v));
+
+                int kept = 0;
+                for (int i = 0; i < remaining; i++)
+                    if (!contracted[pending[i]])
+                        pending[kept++] = pending[i];
+                remaining = kept;
+            }
+            return new ContractionHierarchy<>(graph.nodeData.clone(), rank, up, down, shortcutCount,
+                    graph.getVersion(), edgeChecksum(graph));
+        }
+
+        // runs an action for each node on the pool's threads
+        private void inParallel(int[] nodes, java.util.function.IntConsumer action) {
+            onPool(() -> {
+                Arrays.stream(nodes).parallel().forEach(action);
+                return null;
+            });
+        }
+
+        // runs a task on the pool, so that parallel streams inside it use the
+        // pool's threads rather than the common pool
+        private <R> R onPool(java.util.concurrent.Callable<R> task) {
+            try {
+                return pool.submit(task).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("contraction interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("contraction failed", e.getCause());
+            }
+        }
+
+        // orders nodes by priority, breaking ties by index
+        private boolean before(int a, int b) {
+            return priority[a] < priority[b] || (priority[a] == priority[b] && a < b);
+        }
+
+        private boolean isLocalMinimum(int v) {
+            for (int i = 0; i < out.size[v]; i++)
+                if (!before(v, out.neighbor[v][i]))
+                    return false;
+            for (int i = 0; i < in.size[v]; i++)
+                if (!before(v, in.neighbor[v][i]))
+                    return false;
+            return true;
+        }
+
+        // the edge difference of contracting v, plus the number of its
+        // neighbors already contracted so that contraction spreads evenly
+        private double computePriority(int v) {
+            int shortcuts = findShortcuts(v).length / 3;
+            return shortcuts - out.size[v] - in.size[v] + contractedNeighbors[v];
+        }
+
+        /**
+         * Finds the shortcuts needed to contract v: for each pair of edges u->v
+         * and v->w, a shortcut u->w is needed unless a witness search from u
+         * that avoids v finds a path to w that is no more expensive.
+         *
+         * @return triples of (u, w, weight) packed into one array
+         */
+        private double[] findShortcuts(int v) {
+            double[] found = new double[0];
+            int count = 0;
+            double maxOut = 0;
+            for (int j = 0; j < out.size[v]; j++)
+                maxOut = Math.max(maxOut, out.weight[v][j]);
+            for (int i = 0; i < in.size[v]; i++) {
+                int u = in.neighbor[v][i];
+                double toV = in.weight[v][i];
+                SearchWorkspace witness = witnessSearch(u, v, toV + maxOut);
+                for (int j = 0; j < out.size[v]; j++) {
+                    int w = out.neighbor[v][j];
+                    double viaV = toV + out.weight[v][j];
+                    if (w == u || witness.getCost(w) <= viaV)
+                        continue;
+                    if (count + 3 > found.length)
+                        found = Arrays.copyOf(found, Math.max(6, found.length * 2));
+                    found[count++] = u;
+                    found[count++] = w;
+                    found[count++] = viaV;
+                }
+            }
+            return Arrays.copyOf(found, count);
+        }
+
+        // searches from u among uncontracted nodes, avoiding v and the nodes
+        // of the current round, up to a cost of maxCost
+        private SearchWorkspace witnessSearch(int u, int v, double maxCost) {
+            SearchWorkspace workspace = witnessWorkspaces.get();
+            workspace.begin(indexCount);
+            IndexedMinHeap heap = workspace.getHeap(4);
+            workspace.reach(u, 0, -1);
+            heap.insert(u, 0);
+            while (!heap.isEmpty() && heap.peekPriority() <= maxCost
+                    && workspace.getSettledCount() < WITNESS_SETTLE_LIMIT) {
+                int node = heap.poll();
+                workspace.settle(node);
+                double nodeCost = workspace.getCost(node);
+                for (int i = 0; i < out.size[node]; i++) {
+                    int next = out.neighbor[node][i];
+                    if (next == v || inRound[next])
+                        continue;
+                    double newCost = nodeCost + out.weight[node][i];
+                    if (!workspace.isSettled(next) && newCost < workspace.getCost(next)) {
+                        workspace.reach(next, newCost, node);
+                        heap.insertOrDecrease(next, newCost);
+                    }
+                }
+            }
+            return workspace;
+        }
+    }
+
+}
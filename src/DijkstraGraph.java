@@ -7,11 +7,15 @@
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
 
 /**
  * This class extends the BaseGraph data structure with additional methods for
@@ -30,7 +34,9 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * field. The total cost of this path is stored in its cost field. And the
      * predecessor SearchNode within this path is referened by the predecessor
      * field (this field is null within the SearchNode containing the starting
-     * node in its node field).
+     * node in its node field). The edge from the predecessor's node to this
+     * node is kept in the edge field, so the weight of each edge along a path
+     * can be read without looking the edge up again.
      *
      * SearchNodes are Comparable and are sorted by cost so that the lowest cost
      * SearchNode has the highest priority within a java.util.PriorityQueue.
@@ -39,11 +45,17 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         public Node node;
         public double cost;
         public SearchNode predecessor;
+        public Edge edge;
 
         public SearchNode(Node node, double cost, SearchNode predecessor) {
+            this(node, cost, predecessor, null);
+        }
+
+        public SearchNode(Node node, double cost, SearchNode predecessor, Edge edge) {
             this.node = node;
             this.cost = cost;
             this.predecessor = predecessor;
+            this.edge = edge;
         }
 
         public int compareTo(SearchNode other) {
@@ -55,11 +67,672 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         }
     }
 
+    /**
+     * A FrozenSearchNode plays the role of a SearchNode while searching a
+     * FrozenGraph: it holds the index of the last node in one path and the
+     * total cost of that path. Predecessors are tracked in a separate array.
+     */
+    protected static class FrozenSearchNode implements Comparable<FrozenSearchNode> {
+        public int index;
+        public double cost;
+
+        public FrozenSearchNode(int index, double cost) {
+            this.index = index;
+            this.cost = cost;
+        }
+
+        public int compareTo(FrozenSearchNode other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
+    /**
+     * The representation that shortestPathData and shortestPathCost search.
+     * LINKED searches the Node and Edge objects of this graph directly.
+     * FROZEN searches a FrozenGraph compiled from this graph, which is
+     * recompiled whenever this graph has changed since the last search.
+     * BIDIRECTIONAL searches that FrozenGraph forward from the start node over
+     * the edges leaving each node and backward from the end node over the
+     * edges entering each node, until the two searches meet.
+     * ALT searches that FrozenGraph with A*, using lower bounds computed from
+     * the distance tables of a set of Landmarks as its heuristic.
+     * CONTRACTION_HIERARCHY answers queries with a ContractionHierarchy built
+     * from this graph, which is rebuilt after this graph is modified.
+     */
+    public enum SearchMode {
+        LINKED, FROZEN, BIDIRECTIONAL, ALT, CONTRACTION_HIERARCHY
+    }
+
+    protected SearchMode searchMode = SearchMode.LINKED;
+
+    // the number of times a setting that can change search results, such as
+    // the search mode or the precision of weights, has been changed
+    protected int settingsCount = 0;
+
+    // arity of the IndexedMinHeap used by searches, or LAZY_QUEUE to use a
+    // java.util.PriorityQueue that may hold several entries for each node
+    public static final int LAZY_QUEUE = 0;
+    protected int heapArity = LAZY_QUEUE;
+    // arity used by searches that always need an indexed heap, when heapArity
+    // is LAZY_QUEUE
+    protected static final int DEFAULT_HEAP_ARITY = 4;
+
+    // the most recent snapshot returned by freeze(), or null
+    protected FrozenGraph<NodeType> frozen = null;
+    // whether that snapshot stores its weights as floats
+    protected boolean singlePrecisionWeights = false;
+
+    // landmarks used by ALT searches, recomputed from landmarkCount and
+    // landmarkSelection whenever they are older than the frozen graph
+    protected Landmarks landmarks = null;
+    protected int landmarkCount = 8;
+    protected Landmarks.Selection landmarkSelection = Landmarks.Selection.AVOID;
+
+    // contraction hierarchy used by CONTRACTION_HIERARCHY searches, and the
+    // modCount of this graph it corresponds to
+    protected ContractionHierarchy<NodeType> contractionHierarchy = null;
+    protected int contractionHierarchyVersion = -1;
+    // the number of nodes settled by the most recent CONTRACTION_HIERARCHY
+    // query on each thread, kept here so that getLastSettledCount never has
+    // to look up, or rebuild, the hierarchy that query used
+    protected final ThreadLocal<int[]> hierarchySettledCounts =
+            ThreadLocal.withInitial(() -> new int[1]);
+
+    // search state reused by successive searches on the same thread
+    protected final ThreadLocal<SearchWorkspace> workspaces =
+            ThreadLocal.withInitial(SearchWorkspace::new);
+    // search state for the backward half of bidirectional searches
+    protected final ThreadLocal<SearchWorkspace> backwardWorkspaces =
+            ThreadLocal.withInitial(SearchWorkspace::new);
+
+    // the graph a read-only DijkstraGraph is served from, or null for a graph
+    // of linked nodes and edges that can be modified
+    protected final FrozenGraph<NodeType> storage;
+
     /**
      * Constructor that sets the map that the graph uses.
      */
     public DijkstraGraph() {
-        super(new PlaceholderMap<>());
+        super(new OpenAddressingMap<>());
+        storage = null;
+    }
+
+    private DijkstraGraph(FrozenGraph<NodeType> storage) {
+        super(new OpenAddressingMap<>(0));
+        this.storage = storage;
+        frozen = storage;
+        modCount = storage.getVersion();
+        searchMode = SearchMode.FROZEN;
+    }
+
+    /**
+     * Creates a read-only graph that searches a frozen graph, such as an
+     * OffHeapFrozenGraph, without building any linked nodes or edges. Every
+     * search mode except LINKED is supported, and every method that would
+     * modify the graph throws UnsupportedOperationException.
+     *
+     * @param storage the graph to serve
+     * @return a read-only graph with the nodes and edges of storage
+     */
+    public static <T> DijkstraGraph<T, Double> readOnly(FrozenGraph<T> storage) {
+        return new DijkstraGraph<>(storage);
+    }
+
+    /**
+     * Check whether this graph is a read-only graph created by readOnly.
+     *
+     * @return true if this graph cannot be modified
+     */
+    public boolean isReadOnly() {
+        return storage != null;
+    }
+
+    // throws when this graph is read-only
+    private void checkWritable() {
+        if (storage != null)
+            throw new UnsupportedOperationException("this graph is read-only");
+    }
+
+    @Override
+    public boolean insertNode(NodeType data) {
+        checkWritable();
+        return super.insertNode(data);
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        checkWritable();
+        return super.removeNode(data);
+    }
+
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        checkWritable();
+        return super.insertEdge(pred, succ, weight);
+    }
+
+    @Override
+    public boolean insertEdgeById(int predId, int succId, EdgeType weight) {
+        checkWritable();
+        return super.insertEdgeById(predId, succId, weight);
+    }
+
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        checkWritable();
+        return super.removeEdge(pred, succ);
+    }
+
+    @Override
+    public boolean containsNode(NodeType data) {
+        if (storage == null)
+            return super.containsNode(data);
+        return storage.indexOf(data) >= 0;
+    }
+
+    @Override
+    public int getNodeId(NodeType data) {
+        if (storage == null)
+            return super.getNodeId(data);
+        return storage.indexOf(data);
+    }
+
+    @Override
+    public NodeType getNodeData(int id) {
+        if (storage == null)
+            return super.getNodeData(id);
+        return storage.getData(id);
+    }
+
+    @Override
+    public boolean containsNodeId(int id) {
+        if (storage == null)
+            return super.containsNodeId(id);
+        return id >= 0 && id < storage.getIndexCount() && storage.nodeData[id] != null;
+    }
+
+    @Override
+    public int getNodeIdCount() {
+        if (storage == null)
+            return super.getNodeIdCount();
+        return storage.getIndexCount();
+    }
+
+    @Override
+    public int getNodeCount() {
+        if (storage == null)
+            return super.getNodeCount();
+        return storage.getNodeCount();
+    }
+
+    @Override
+    public int getEdgeCount() {
+        if (storage == null)
+            return super.getEdgeCount();
+        return storage.getEdgeCount();
+    }
+
+    @Override
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        if (storage == null)
+            return super.containsEdge(pred, succ);
+        int predIndex = storage.indexOf(pred);
+        int succIndex = storage.indexOf(succ);
+        return predIndex >= 0 && succIndex >= 0 && storage.findEdge(predIndex, succIndex) >= 0;
+    }
+
+    @Override
+    public EdgeType getEdge(NodeType pred, NodeType succ) {
+        if (storage == null)
+            return super.getEdge(pred, succ);
+        return getEdgeById(storage.indexOf(pred), storage.indexOf(succ));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public EdgeType getEdgeById(int predId, int succId) {
+        if (storage == null)
+            return super.getEdgeById(predId, succId);
+        int edge = containsNodeId(predId) && containsNodeId(succId) ? storage.findEdge(predId, succId) : -1;
+        if (edge < 0)
+            throw new NoSuchElementException("No edge from id " + predId + " to id " + succId);
+        // readOnly only creates graphs whose EdgeType is Double
+        return (EdgeType) Double.valueOf(storage.weight(edge));
+    }
+
+    /**
+     * Set the representation used by shortestPathData and shortestPathCost.
+     *
+     * @param searchMode the representation to search
+     */
+    public void setSearchMode(SearchMode searchMode) {
+        if (searchMode == null)
+            throw new NullPointerException("searchMode must not be null");
+        if (searchMode == SearchMode.LINKED && storage != null)
+            throw new UnsupportedOperationException("read-only graphs have no linked nodes to search");
+        // another mode may choose a different path of the same cost
+        if (searchMode != this.searchMode)
+            settingsCount++;
+        this.searchMode = searchMode;
+    }
+
+    /**
+     * Return the representation used by shortestPathData and shortestPathCost.
+     *
+     * @return the current search mode
+     */
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    /**
+     * Set the priority queue used by searches. With LAZY_QUEUE every relaxed
+     * edge adds an entry to a java.util.PriorityQueue and stale entries are
+     * skipped when polled. With an arity of 2 or more, an IndexedMinHeap of
+     * that arity holds at most one entry per node and lowers its priority in
+     * place, so the queue never grows beyond the number of nodes.
+     *
+     * @param heapArity LAZY_QUEUE, or the arity of the indexed heap
+     * @throws IllegalArgumentException if heapArity is 1 or negative
+     */
+    public void setHeapArity(int heapArity) {
+        if (heapArity != LAZY_QUEUE && heapArity < 2)
+            throw new IllegalArgumentException("heap arity must be at least 2");
+        // another queue may break ties between paths of the same cost differently
+        if (heapArity != this.heapArity)
+            settingsCount++;
+        this.heapArity = heapArity;
+    }
+
+    /**
+     * Return the priority queue used by searches.
+     *
+     * @return LAZY_QUEUE, or the arity of the indexed heap
+     */
+    public int getHeapArity() {
+        return heapArity;
+    }
+
+    /**
+     * Returns a version of the results that searches of this graph return.
+     * The version grows whenever the graph is modified, like the
+     * modification count, and also whenever a setting is changed that can
+     * change the cost or path a search returns, such as the search mode, the
+     * heap arity or the precision of weights. Results cached for one version
+     * are only valid while the version stays the same.
+     *
+     * @return the version of this graph's search results
+     */
+    public int getResultVersion() {
+        // both counts only grow, so their sum grows whenever either does
+        return modCount + settingsCount;
+    }
+
+    /**
+     * Returns a FrozenGraph snapshot of this graph. The snapshot is cached and
+     * only recompiled after this graph has been modified.
+     *
+     * @return a FrozenGraph holding the current contents of this graph
+     */
+    @Override
+    public synchronized FrozenGraph<NodeType> freeze() {
+        if (storage != null)
+            return storage;
+        if (frozen == null || frozen.getVersion() != modCount)
+            frozen = super.freeze(singlePrecisionWeights);
+        return frozen;
+    }
+
+    /**
+     * Choose whether the frozen graph searched by every mode other than
+     * LINKED stores its edge weights as floats, which halves the memory they
+     * use but rounds each weight to single precision, so that path costs may
+     * differ slightly from those of the LINKED mode. Landmarks and contraction
+     * hierarchies are recomputed for the new weights.
+     *
+     * @param singlePrecision true to store weights as floats, or false to
+     *                        store them as doubles
+     */
+    public synchronized void setSinglePrecisionWeights(boolean singlePrecision) {
+        if (singlePrecision == singlePrecisionWeights)
+            return;
+        checkWritable();
+        singlePrecisionWeights = singlePrecision;
+        settingsCount++;
+        frozen = null;
+        landmarks = null;
+        contractionHierarchy = null;
+    }
+
+    /**
+     * Check whether frozen graphs store their edge weights as floats.
+     *
+     * @return true if weights are rounded to single precision
+     */
+    public boolean hasSinglePrecisionWeights() {
+        return singlePrecisionWeights;
+    }
+
+    /**
+     * Chooses landmarks for the ALT search mode and computes their distance
+     * tables. This preprocessing runs two complete searches of the graph for
+     * every landmark, and is repeated with the same settings by the first ALT
+     * search after this graph is modified.
+     *
+     * @param count     the number of landmarks to choose
+     * @param selection how to choose the landmarks
+     * @return the chosen landmarks
+     * @throws IllegalArgumentException if count is not positive
+     */
+    public synchronized Landmarks prepareLandmarks(int count, Landmarks.Selection selection) {
+        if (count < 1)
+            throw new IllegalArgumentException("at least one landmark is required");
+        landmarkCount = count;
+        landmarkSelection = selection;
+        landmarks = Landmarks.select(freeze(), count, selection);
+        return landmarks;
+    }
+
+    /**
+     * Returns the landmarks for searching the current frozen graph, computing
+     * them when they are missing or out of date.
+     */
+    protected synchronized Landmarks currentLandmarks(FrozenGraph<NodeType> graph) {
+        if (landmarks == null || landmarks.getVersion() != graph.getVersion())
+            landmarks = Landmarks.select(graph, landmarkCount, landmarkSelection);
+        return landmarks;
+    }
+
+    /**
+     * Builds a contraction hierarchy from this graph for the
+     * CONTRACTION_HIERARCHY search mode.
+     *
+     * @param parallelism the number of threads to preprocess the graph with
+     * @return the contraction hierarchy of this graph
+     */
+    public synchronized ContractionHierarchy<NodeType> prepareContractionHierarchy(int parallelism) {
+        contractionHierarchy = ContractionHierarchy.build(freeze(), parallelism);
+        contractionHierarchyVersion = modCount;
+        return contractionHierarchy;
+    }
+
+    /**
+     * Uses a previously built contraction hierarchy, such as one loaded with
+     * ContractionHierarchy.load, for the CONTRACTION_HIERARCHY search mode.
+     *
+     * @param hierarchy a contraction hierarchy built from a graph with the same
+     *                  nodes at the same indexes, and the same edges, as this
+     *                  graph
+     * @throws IllegalArgumentException if hierarchy was built from a graph
+     *                                  whose nodes, edges or weights differ
+     *                                  from this graph's
+     */
+    public synchronized void setContractionHierarchy(ContractionHierarchy<NodeType> hierarchy) {
+        if (!hierarchy.matches(freeze()))
+            throw new IllegalArgumentException("contraction hierarchy does not match this graph");
+        contractionHierarchy = hierarchy;
+        contractionHierarchyVersion = modCount;
+    }
+
+    /**
+     * Returns the contraction hierarchy of this graph, building it when it is
+     * missing or out of date.
+     */
+    protected synchronized ContractionHierarchy<NodeType> currentContractionHierarchy() {
+        if (contractionHierarchy == null || contractionHierarchyVersion != modCount)
+            prepareContractionHierarchy(Runtime.getRuntime().availableProcessors());
+        return contractionHierarchy;
+    }
+
+    /**
+     * This helper method runs A* search over a FrozenGraph. Nodes are taken
+     * from the heap in order of the cost of the path to them plus a lower bound
+     * on the cost from them to end, computed from landmark distances. Because
+     * that bound never overestimates and satisfies the triangle inequality, a
+     * node's path is final when it leaves the heap, as in Dijkstra's
+     * algorithm, but far fewer nodes are settled before reaching end. When it
+     * returns, the calling thread's workspace holds the search state just as
+     * after computeFrozenPath.
+     *
+     * @param graph     the frozen graph to search
+     * @param landmarks landmarks computed from graph
+     * @param start     index of the starting node
+     * @param end       index of the destination node
+     * @return the workspace holding the state of this search
+     */
+    protected SearchWorkspace computeAltPath(FrozenGraph<NodeType> graph, Landmarks landmarks,
+            int start, int end) {
+        SearchWorkspace workspace = workspaces.get();
+        workspace.begin(graph.getIndexCount());
+        IndexedMinHeap heap = workspace.getHeap(heapArity == LAZY_QUEUE ? DEFAULT_HEAP_ARITY : heapArity);
+        workspace.reach(start, 0, -1);
+        heap.insert(start, landmarks.lowerBound(start, end));
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            workspace.settle(node);
+            if (node == end)
+                break;
+
+            // relax the edges leaving the current node
+            double nodeCost = workspace.getCost(node);
+            for (int e = graph.edgesBegin(node); e < graph.edgesEnd(node); e++) {
+                int next = graph.target(e);
+                double newCost = nodeCost + graph.weight(e);
+                if (!workspace.isSettled(next) && newCost < workspace.getCost(next)) {
+                    double bound = landmarks.lowerBound(next, end);
+                    // the landmarks can prove that end is unreachable from next
+                    if (bound == Double.POSITIVE_INFINITY)
+                        continue;
+                    workspace.reach(next, newCost, node, e);
+                    heap.insertOrDecrease(next, newCost + bound);
+                }
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * This helper method runs Dijkstra's algorithm over a FrozenGraph, using
+     * the search state of the calling thread's workspace. When it returns, the
+     * workspace holds the cost and predecessor index of every settled node (the
+     * predecessor of the start node is -1). The search stops as soon as the
+     * end node is settled.
+     *
+     * @param graph the frozen graph to search
+     * @param start index of the starting node
+     * @param end   index of the destination node
+     * @return the workspace holding the state of this search
+     */
+    protected SearchWorkspace computeFrozenPath(FrozenGraph<NodeType> graph, int start, int end) {
+        SearchWorkspace workspace = workspaces.get();
+        workspace.begin(graph.getIndexCount());
+        workspace.reach(start, 0, -1);
+        if (heapArity != LAZY_QUEUE) {
+            computeIndexedFrozenPath(graph, start, end, workspace, workspace.getHeap(heapArity));
+            return workspace;
+        }
+
+        PriorityQueue<FrozenSearchNode> pathQueue = new PriorityQueue<>();
+        pathQueue.add(new FrozenSearchNode(start, 0));
+        while (!pathQueue.isEmpty()) {
+            FrozenSearchNode current = pathQueue.poll();
+            int node = current.index;
+            // skip entries made stale by a cheaper path found later
+            if (workspace.isSettled(node))
+                continue;
+            workspace.settle(node);
+            if (node == end)
+                break;
+
+            // relax the edges leaving the current node
+            for (int e = graph.edgesBegin(node); e < graph.edgesEnd(node); e++) {
+                int next = graph.target(e);
+                double newCost = current.cost + graph.weight(e);
+                if (!workspace.isSettled(next) && newCost < workspace.getCost(next)) {
+                    workspace.reach(next, newCost, node, e);
+                    pathQueue.add(new FrozenSearchNode(next, newCost));
+                }
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * Does the same as computeFrozenPath, but using an IndexedMinHeap in place
+     * of the lazy PriorityQueue, so that no objects are allocated.
+     */
+    private void computeIndexedFrozenPath(FrozenGraph<NodeType> graph, int start, int end,
+            SearchWorkspace workspace, IndexedMinHeap heap) {
+        heap.insert(start, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            workspace.settle(node);
+            if (node == end)
+                return;
+
+            // relax the edges leaving the current node
+            double nodeCost = workspace.getCost(node);
+            for (int e = graph.edgesBegin(node); e < graph.edgesEnd(node); e++) {
+                int next = graph.target(e);
+                double newCost = nodeCost + graph.weight(e);
+                if (!workspace.isSettled(next) && newCost < workspace.getCost(next)) {
+                    workspace.reach(next, newCost, node, e);
+                    heap.insertOrDecrease(next, newCost);
+                }
+            }
+        }
+    }
+
+    /**
+     * This helper method runs a bidirectional version of Dijkstra's algorithm
+     * over a FrozenGraph. A forward search from start follows the edges leaving
+     * each node while a backward search from end follows the edges entering
+     * each node, and each step advances whichever search has the cheaper node
+     * at the front of its heap. Whenever an edge joins a node reached by one
+     * search to a node reached by the other, the cost of the path through that
+     * edge is a candidate for the shortest path. Once the sum of the cheapest
+     * costs in both heaps is no less than the best candidate, no path that
+     * remains to be found can be cheaper, and the search stops.
+     *
+     * When it returns, the workspaces of the calling thread hold the forward
+     * and backward search state, and the shortest path consists of the forward
+     * predecessors of the returned meeting node followed by its backward
+     * predecessors (which lead toward end). The parent edges of the backward
+     * workspace are indexes of graph's reverse edges.
+     *
+     * @param graph the frozen graph to search
+     * @param start index of the starting node
+     * @param end   index of the destination node
+     * @return the index of a node on the shortest path that was reached by both
+     *         searches, or -1 if end cannot be reached from start
+     */
+    protected int computeBidirectionalPath(FrozenGraph<NodeType> graph, int start, int end) {
+        int arity = heapArity == LAZY_QUEUE ? DEFAULT_HEAP_ARITY : heapArity;
+        SearchWorkspace forward = workspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        forward.begin(graph.getIndexCount());
+        backward.begin(graph.getIndexCount());
+        IndexedMinHeap forwardHeap = forward.getHeap(arity);
+        IndexedMinHeap backwardHeap = backward.getHeap(arity);
+        forward.reach(start, 0, -1);
+        backward.reach(end, 0, -1);
+        forwardHeap.insert(start, 0);
+        backwardHeap.insert(end, 0);
+
+        // the cheapest path found so far passes through meetingNode
+        double bestCost = start == end ? 0 : Double.POSITIVE_INFINITY;
+        int meetingNode = start == end ? start : -1;
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()
+                && forwardHeap.peekPriority() + backwardHeap.peekPriority() < bestCost) {
+            if (forwardHeap.peekPriority() <= backwardHeap.peekPriority()) {
+                // advance the forward search over the edges leaving its node
+                int node = forwardHeap.poll();
+                forward.settle(node);
+                double nodeCost = forward.getCost(node);
+                for (int e = graph.edgesBegin(node); e < graph.edgesEnd(node); e++) {
+                    int next = graph.target(e);
+                    double newCost = nodeCost + graph.weight(e);
+                    if (!forward.isSettled(next) && newCost < forward.getCost(next)) {
+                        forward.reach(next, newCost, node, e);
+                        forwardHeap.insertOrDecrease(next, newCost);
+                    }
+                    if (newCost + backward.getCost(next) < bestCost) {
+                        bestCost = newCost + backward.getCost(next);
+                        meetingNode = next;
+                    }
+                }
+            } else {
+                // advance the backward search over the edges entering its node
+                int node = backwardHeap.poll();
+                backward.settle(node);
+                double nodeCost = backward.getCost(node);
+                for (int e = graph.reverseEdgesBegin(node); e < graph.reverseEdgesEnd(node); e++) {
+                    int previous = graph.source(e);
+                    double newCost = nodeCost + graph.reverseWeight(e);
+                    if (!backward.isSettled(previous) && newCost < backward.getCost(previous)) {
+                        backward.reach(previous, newCost, node, e);
+                        backwardHeap.insertOrDecrease(previous, newCost);
+                    }
+                    if (newCost + forward.getCost(previous) < bestCost) {
+                        bestCost = newCost + forward.getCost(previous);
+                        meetingNode = previous;
+                    }
+                }
+            }
+        }
+        return meetingNode;
+    }
+
+    /**
+     * Returns the data of the nodes along the path found by the most recent
+     * call to computeBidirectionalPath on this thread.
+     */
+    private List<NodeType> bidirectionalPathData(FrozenGraph<NodeType> graph, int meetingNode) {
+        SearchWorkspace forward = workspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        LinkedList<NodeType> pathData = new LinkedList<>();
+        for (int node = meetingNode; node != -1; node = forward.getParent(node))
+            pathData.addFirst(graph.getData(node));
+        for (int node = backward.getParent(meetingNode); node != -1; node = backward.getParent(node))
+            pathData.addLast(graph.getData(node));
+        return pathData;
+    }
+
+    /**
+     * Runs computeAltPath in ALT mode, or computeFrozenPath otherwise.
+     */
+    private SearchWorkspace computeUnidirectionalPath(FrozenGraph<NodeType> graph, int start, int end) {
+        if (searchMode == SearchMode.ALT)
+            return computeAltPath(graph, currentLandmarks(graph), start, end);
+        return computeFrozenPath(graph, start, end);
+    }
+
+    /**
+     * Finds the id of a node's data within this graph.
+     *
+     * @return the id of the node containing data
+     * @throws NoSuchElementException when data does not correspond to a graph
+     *                                node
+     */
+    private int nodeIdOf(NodeType data) {
+        int id = getNodeId(data);
+        if (id < 0)
+            throw new NoSuchElementException("That key is not in the graph");
+        return id;
+    }
+
+    /**
+     * Finds the index of a node's data within graph.
+     *
+     * @return the index of the node containing data
+     * @throws NoSuchElementException when data does not correspond to a graph
+     *                                node
+     */
+    private int frozenIndexOf(FrozenGraph<NodeType> graph, NodeType data) {
+        int index = graph.indexOf(data);
+        if (index < 0)
+            throw new NoSuchElementException("That key is not in the graph");
+        return index;
     }
 
     /**
@@ -79,21 +752,28 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      */
     protected SearchNode computeShortestPath(NodeType start, NodeType end) {
         // implement in step 5.3
-        Node startNode = nodes.get(start);
-        Node endNode = nodes.get(end);
+        return computeShortestPath(nodeById(nodeIdOf(start)), nodeById(nodeIdOf(end)));
+    }
 
-        // Check if start and end nodes exist in the graph
-        if (startNode == null || endNode == null) {
-            throw new NoSuchElementException("That key is not in the graph");
-        }
+    /**
+     * Does the same as computeShortestPath, starting from node objects that
+     * were already looked up, so the search itself never hashes or compares
+     * node data: visited nodes are marked by id in the calling thread's
+     * workspace.
+     */
+    protected SearchNode computeShortestPath(Node startNode, Node endNode) {
+        if (heapArity != LAZY_QUEUE)
+            return computeIndexedShortestPath(startNode, endNode);
 
-        // Initialize the PlaceholderMap to keep track of visited nodes
-        PlaceholderMap<NodeType, SearchNode> visitedNodes = new PlaceholderMap<>();
+        // Mark visited nodes by id in this thread's workspace, which also
+        // counts them for getLastSettledCount
+        SearchWorkspace workspace = workspaces.get();
+        workspace.begin(nodeList.size());
 
         // Initialize the PriorityQueue to keep track of the nodes to visit
         PriorityQueue<SearchNode> pathQueue = new PriorityQueue<>();
         // Add the start node to the PriorityQueue
-        pathQueue.add(new SearchNode(nodes.get(start), 0, null));
+        pathQueue.add(new SearchNode(startNode, 0, null));
 
         while (!pathQueue.isEmpty()) {
             SearchNode currentPath = pathQueue.poll();
@@ -104,24 +784,69 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
                 return currentPath;
             }
 
-            // Check if the current node has not been visited, then add it to visitedNodes
-            if (!visitedNodes.containsKey(currentNode.data)) {
-                visitedNodes.put(currentNode.data, currentPath);
+            // Check if the current node has not been visited, then mark it as visited
+            if (!workspace.isSettled(currentNode.index)) {
+                workspace.settle(currentNode.index);
 
                 // Iterate through the edges leaving the current node
                 for (Edge edge : currentNode.edgesLeaving) {
                     Node nextNode = edge.successor;
-                    double newCost = currentPath.cost + edge.data.doubleValue();
+                    double newCost = currentPath.cost + edge.weight;
 
                     // Check if the next node has not been visited, then add it to the PathQueue
-                    if (!visitedNodes.containsKey(nextNode.data)) {
-                        pathQueue.add(new SearchNode(nextNode, newCost, currentPath));
+                    if (!workspace.isSettled(nextNode.index)) {
+                        pathQueue.add(new SearchNode(nextNode, newCost, currentPath, edge));
                     }
                 }
             }
         }
         
-        throw new NoSuchElementException("No path from " + start.toString() + " to " + end.toString());
+        throw new NoSuchElementException("No path from " + startNode.data.toString() + " to "
+                + endNode.data.toString());
+    }
+
+    /**
+     * Does the same as computeShortestPath, but using an IndexedMinHeap keyed
+     * by node index in place of the lazy PriorityQueue. SearchNodes are only
+     * created for the nodes along the shortest path that is found.
+     */
+    @SuppressWarnings("unchecked")
+    private SearchNode computeIndexedShortestPath(Node startNode, Node endNode) {
+        SearchWorkspace workspace = workspaces.get();
+        workspace.begin(nodeList.size());
+        workspace.reachByLink(startNode.index, 0, -1, null);
+
+        IndexedMinHeap heap = workspace.getHeap(heapArity);
+        heap.insert(startNode.index, 0);
+        while (!heap.isEmpty()) {
+            Node currentNode = nodeList.get(heap.poll());
+            workspace.settle(currentNode.index);
+            if (currentNode == endNode) {
+                // link SearchNodes along the path, ordered from start to end
+                LinkedList<Node> pathNodes = new LinkedList<>();
+                for (int index = endNode.index; index != -1; index = workspace.getParent(index))
+                    pathNodes.addFirst(nodeList.get(index));
+                SearchNode path = null;
+                for (Node node : pathNodes)
+                    path = new SearchNode(node, workspace.getCost(node.index), path,
+                            (Edge) workspace.getParentLink(node.index));
+                return path;
+            }
+
+            // relax the edges leaving the current node
+            double currentCost = workspace.getCost(currentNode.index);
+            for (Edge edge : currentNode.edgesLeaving) {
+                int next = edge.successor.index;
+                double newCost = currentCost + edge.weight;
+                if (!workspace.isSettled(next) && newCost < workspace.getCost(next)) {
+                    workspace.reachByLink(next, newCost, currentNode.index, edge);
+                    heap.insertOrDecrease(next, newCost);
+                }
+            }
+        }
+
+        throw new NoSuchElementException("No path from " + startNode.data.toString() + " to "
+                + endNode.data.toString());
     }
 
     /**
@@ -137,10 +862,53 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * @return list of data item from node along this shortest path
      */
     public List<NodeType> shortestPathData(NodeType start, NodeType end) {
-        // implement in step 5.4
+        return shortestPathDataById(nodeIdOf(start), nodeIdOf(end));
+    }
+
+    /**
+     * Does the same as shortestPathData, for the nodes with the provided ids.
+     * Node data is only touched to build the returned list.
+     *
+     * @param startId the id of the starting node for the path
+     * @param endId   the id of the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when no node has startId or endId
+     */
+    public List<NodeType> shortestPathDataById(int startId, int endId) {
+        NodeType startData = getNodeData(startId);
+        NodeType endData = getNodeData(endId);
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY) {
+            ContractionHierarchy<NodeType> hierarchy = currentContractionHierarchy();
+            try {
+                return hierarchy.shortestPathDataByIndex(startId, endId);
+            } finally {
+                hierarchySettledCounts.get()[0] = hierarchy.getSettledCount();
+            }
+        }
+        if (searchMode == SearchMode.BIDIRECTIONAL) {
+            FrozenGraph<NodeType> graph = freeze();
+            int meetingNode = computeBidirectionalPath(graph, startId, endId);
+            if (meetingNode == -1)
+                throw new NoSuchElementException("No path from " + startData.toString() + " to "
+                        + endData.toString());
+            return bidirectionalPathData(graph, meetingNode);
+        }
+        if (searchMode == SearchMode.FROZEN || searchMode == SearchMode.ALT) {
+            FrozenGraph<NodeType> graph = freeze();
+            SearchWorkspace workspace = computeUnidirectionalPath(graph, startId, endId);
+            if (!workspace.isSettled(endId))
+                throw new NoSuchElementException("No path from " + startData.toString() + " to "
+                        + endData.toString());
+            // follow the parent indexes back from the end node
+            LinkedList<NodeType> pathData = new LinkedList<>();
+            for (int node = endId; node != -1; node = workspace.getParent(node))
+                pathData.addFirst(graph.getData(node));
+            return pathData;
+        }
 
         // Use the computeShortestPath method to find the shortest path
-        SearchNode shortestPath = computeShortestPath(start, end);
+        SearchNode shortestPath = computeShortestPath(nodeById(startId), nodeById(endId));
 
         if (shortestPath == null) {
             // If no path is found, throw an exception
@@ -159,7 +927,7 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         }
 
         return pathData;
-	}
+    }
 
     /**
      * Returns the cost of the path (sum over edge weights) of the shortest
@@ -172,8 +940,235 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * @return the cost of the shortest path between these nodes
      */
     public double shortestPathCost(NodeType start, NodeType end) {
+        return shortestPathCostById(nodeIdOf(start), nodeIdOf(end));
+    }
+
+    /**
+     * Does the same as shortestPathCost, for the nodes with the provided ids.
+     *
+     * @param startId the id of the starting node for the path
+     * @param endId   the id of the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when no node has startId or endId
+     */
+    public double shortestPathCostById(int startId, int endId) {
+        NodeType startData = getNodeData(startId);
+        NodeType endData = getNodeData(endId);
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY) {
+            ContractionHierarchy<NodeType> hierarchy = currentContractionHierarchy();
+            try {
+                return hierarchy.shortestPathCostByIndex(startId, endId);
+            } finally {
+                hierarchySettledCounts.get()[0] = hierarchy.getSettledCount();
+            }
+        }
+        if (searchMode == SearchMode.BIDIRECTIONAL) {
+            int meetingNode = computeBidirectionalPath(freeze(), startId, endId);
+            if (meetingNode == -1)
+                throw new NoSuchElementException("No path from " + startData.toString() + " to "
+                        + endData.toString());
+            return workspaces.get().getCost(meetingNode) + backwardWorkspaces.get().getCost(meetingNode);
+        }
+        if (searchMode == SearchMode.FROZEN || searchMode == SearchMode.ALT) {
+            SearchWorkspace workspace = computeUnidirectionalPath(freeze(), startId, endId);
+            if (!workspace.isSettled(endId))
+                throw new NoSuchElementException("No path from " + startData.toString() + " to "
+                        + endData.toString());
+            return workspace.getCost(endId);
+        }
         // implement in step 5.4
-        return computeShortestPath(start, end).cost;
+        return computeShortestPath(nodeById(startId), nodeById(endId)).cost;
+    }
+
+    /**
+     * Returns the shortest route from the node containing start to the node
+     * containing end, found with a single search in the current search mode.
+     * Besides the nodes along the route, the route holds the weight of each of
+     * its edges, its total cost, and the number of nodes the search settled.
+     *
+     * @param start the data item in the starting node for the route
+     * @param end   the data item in the destination node for the route
+     * @return the shortest route from start to end
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    public Route<NodeType> shortestRoute(NodeType start, NodeType end) {
+        int startId = nodeIdOf(start);
+        int endId = nodeIdOf(end);
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY) {
+            ContractionHierarchy<NodeType> hierarchy = currentContractionHierarchy();
+            try {
+                return hierarchy.shortestRouteByIndex(startId, endId);
+            } finally {
+                hierarchySettledCounts.get()[0] = hierarchy.getSettledCount();
+            }
+        }
+        // read the weight of each edge from the state of the search that
+        // found it, walking back from the end node
+        LinkedList<NodeType> path = new LinkedList<>();
+        LinkedList<Double> travelTimes = new LinkedList<>();
+        double totalCost;
+        if (searchMode == SearchMode.LINKED) {
+            SearchNode shortestPath = computeShortestPath(nodeById(startId), nodeById(endId));
+            totalCost = shortestPath.cost;
+            for (SearchNode step = shortestPath; step != null; step = step.predecessor) {
+                path.addFirst(step.node.data);
+                if (step.edge != null)
+                    travelTimes.addFirst(step.edge.weight);
+            }
+            return new Route<>(path, travelTimes, totalCost, getLastSettledCount());
+        }
+
+        FrozenGraph<NodeType> graph = freeze();
+        SearchWorkspace forward;
+        int meetingNode;
+        if (searchMode == SearchMode.BIDIRECTIONAL) {
+            meetingNode = computeBidirectionalPath(graph, startId, endId);
+            forward = workspaces.get();
+        } else {
+            forward = computeUnidirectionalPath(graph, startId, endId);
+            meetingNode = forward.isSettled(endId) ? endId : -1;
+        }
+        if (meetingNode == -1)
+            throw new NoSuchElementException("No path from " + start.toString() + " to " + end.toString());
+        // the forward search's parents lead back from the meeting node to start
+        for (int node = meetingNode; forward.getParent(node) != -1; node = forward.getParent(node)) {
+            path.addFirst(graph.getData(node));
+            travelTimes.addFirst(graph.weight(forward.getParentEdge(node)));
+        }
+        path.addFirst(graph.getData(startId));
+        totalCost = forward.getCost(meetingNode);
+        if (searchMode == SearchMode.BIDIRECTIONAL) {
+            // and the backward search's parents lead on from it to end, over
+            // reverse edges
+            SearchWorkspace backward = backwardWorkspaces.get();
+            for (int node = meetingNode; backward.getParent(node) != -1; node = backward.getParent(node)) {
+                path.addLast(graph.getData(backward.getParent(node)));
+                travelTimes.addLast(graph.reverseWeight(backward.getParentEdge(node)));
+            }
+            totalCost += backward.getCost(meetingNode);
+        }
+        return new Route<>(path, travelTimes, totalCost, getLastSettledCount());
+    }
+
+    /**
+     * Returns the number of nodes settled by the most recent call to
+     * shortestPathData, shortestPathCost or shortestRoute on the calling
+     * thread.
+     *
+     * @return the number of settled nodes, counting both directions of
+     *         bidirectional searches
+     */
+    public int getLastSettledCount() {
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY)
+            return hierarchySettledCounts.get()[0];
+        if (searchMode == SearchMode.BIDIRECTIONAL)
+            return workspaces.get().getSettledCount() + backwardWorkspaces.get().getSettledCount();
+        return workspaces.get().getSettledCount();
+    }
+
+    /**
+     * Runs one search from the node containing source to every node that can
+     * be reached from it, and returns the resulting tree of shortest paths.
+     * The path to any node, its cost, and the weight of each of its edges can
+     * then be read from the tree without searching again, so many destinations
+     * are answered for the price of a single search.
+     *
+     * @param source the data item in the node every path starts at
+     * @return the tree of shortest paths from source
+     * @throws NoSuchElementException when source does not correspond to a
+     *                                graph node
+     */
+    public ShortestPathTree<NodeType> shortestPathTree(NodeType source) {
+        return shortestPathTree(source, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Runs one search from the node containing source to every node whose
+     * shortest path from it costs no more than costBound, and returns the
+     * resulting tree of shortest paths. Nodes beyond the bound are not reached
+     * by the tree, and the search stops as soon as none remain within it.
+     *
+     * @param source    the data item in the node every path starts at
+     * @param costBound the maximum cost of the paths in the tree
+     * @return the tree of shortest paths from source within costBound
+     * @throws NoSuchElementException when source does not correspond to a
+     *                                graph node
+     * @throws IllegalArgumentException if costBound is negative or NaN
+     */
+    public ShortestPathTree<NodeType> shortestPathTree(NodeType source, double costBound) {
+        if (!(costBound >= 0))
+            throw new IllegalArgumentException("cost bound must not be negative");
+        FrozenGraph<NodeType> graph = freeze();
+        int sourceIndex = frozenIndexOf(graph, source);
+        SearchWorkspace workspace = workspaces.get();
+        workspace.begin(graph.getIndexCount());
+        IndexedMinHeap heap = workspace.getHeap(heapArity == LAZY_QUEUE ? DEFAULT_HEAP_ARITY : heapArity);
+        return ShortestPathTree.search(graph, sourceIndex, costBound, heap);
+    }
+
+    /**
+     * Computes the cost of the shortest path from every origin to every
+     * destination. In CONTRACTION_HIERARCHY mode this uses the bucket-based
+     * many-to-many algorithm of the contraction hierarchy. Otherwise one search
+     * is run from each origin, in parallel on the common ForkJoinPool, and
+     * each search stops once all of the destinations have been settled.
+     *
+     * @param origins      the data items of the nodes paths start at
+     * @param destinations the data items of the nodes paths end at
+     * @param keepPaths    whether the matrix should be able to return the path
+     *                     behind each entry, which in modes other than
+     *                     CONTRACTION_HIERARCHY keeps one shortest path tree
+     *                     per origin in memory
+     * @return the matrix of shortest path costs from origins to destinations
+     * @throws NoSuchElementException when an origin or destination does not
+     *                                correspond to a graph node
+     */
+    public DistanceMatrix<NodeType> distanceMatrix(List<NodeType> origins, List<NodeType> destinations,
+            boolean keepPaths) {
+        origins = new ArrayList<>(origins);
+        destinations = new ArrayList<>(destinations);
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY) {
+            ContractionHierarchy<NodeType> hierarchy = currentContractionHierarchy();
+            return new DistanceMatrix<>(origins, destinations,
+                    hierarchy.distanceMatrix(origins, destinations), null, keepPaths ? hierarchy : null);
+        }
+
+        FrozenGraph<NodeType> graph = freeze();
+        int[] sources = new int[origins.size()];
+        int[] targets = new int[destinations.size()];
+        for (int i = 0; i < sources.length; i++)
+            sources[i] = frozenIndexOf(graph, origins.get(i));
+        // mark the destinations, counting each distinct node once
+        boolean[] isTarget = new boolean[graph.getIndexCount()];
+        int targetCount = 0;
+        for (int j = 0; j < targets.length; j++) {
+            targets[j] = frozenIndexOf(graph, destinations.get(j));
+            if (!isTarget[targets[j]]) {
+                isTarget[targets[j]] = true;
+                targetCount++;
+            }
+        }
+
+        int distinctTargets = targetCount;
+        double[][] costs = new double[sources.length][targets.length];
+        List<ShortestPathTree<NodeType>> trees = new ArrayList<>();
+        for (int i = 0; i < sources.length; i++)
+            trees.add(null);
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            SearchWorkspace workspace = workspaces.get();
+            workspace.begin(graph.getIndexCount());
+            IndexedMinHeap heap = workspace.getHeap(heapArity == LAZY_QUEUE ? DEFAULT_HEAP_ARITY : heapArity);
+            ShortestPathTree<NodeType> tree = ShortestPathTree.search(graph, sources[i],
+                    Double.POSITIVE_INFINITY, isTarget, distinctTargets, heap);
+            for (int j = 0; j < targets.length; j++)
+                costs[i][j] = tree.costAtIndex(targets[j]);
+            if (keepPaths)
+                trees.set(i, tree);
+        });
+        return new DistanceMatrix<>(origins, destinations, costs, keepPaths ? trees : null, null);
     }
 
 
@@ -276,4 +1271,896 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
 
         Assertions.assertThrows(NoSuchElementException.class, () -> graph.computeShortestPath("B", "A"));
     }
+
+    /*
+     * Searching the frozen CSR snapshot must give the same paths and costs as
+     * searching the linked nodes, and the snapshot must be recompiled after the
+     * graph is modified.
+     */
+    @Test
+    public void testFrozenSearchMatchesLinked() {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("C");
+        graph.insertNode("D");
+        graph.insertNode("E");
+        graph.insertNode("F");
+        graph.insertNode("G");
+        graph.insertNode("H");
+
+        graph.insertEdge("A", "B", 4);
+        graph.insertEdge("A", "C", 2);
+        graph.insertEdge("A", "E", 15);
+        graph.insertEdge("B", "D", 1);
+        graph.insertEdge("B", "E", 10);
+        graph.insertEdge("C", "D", 5);
+        graph.insertEdge("D", "E", 3);
+        graph.insertEdge("D", "F", 0);
+        graph.insertEdge("F", "D", 2);
+        graph.insertEdge("F", "H", 4);
+        graph.insertEdge("G", "H", 4);
+
+        FrozenGraph<String> frozen = graph.freeze();
+        Assertions.assertEquals(8, frozen.getNodeCount());
+        Assertions.assertEquals(11, frozen.getEdgeCount());
+        Assertions.assertSame(frozen, graph.freeze());
+
+        graph.setSearchMode(SearchMode.FROZEN);
+        Assertions.assertEquals(8, graph.shortestPathCost("A", "E"));
+        Assertions.assertEquals("[A, B, D, E]", graph.shortestPathData("A", "E").toString());
+        Assertions.assertEquals("[A, B, D, F]", graph.shortestPathData("A", "F").toString());
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathData("B", "A"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost("A", "Z"));
+
+        // removing D and reusing its index must invalidate the snapshot
+        graph.removeNode("D");
+        graph.insertNode("I");
+        graph.insertEdge("A", "I", 1);
+        graph.insertEdge("I", "E", 1);
+        Assertions.assertNotSame(frozen, graph.freeze());
+        Assertions.assertEquals(2, graph.shortestPathCost("A", "E"));
+        Assertions.assertEquals("[A, I, E]", graph.shortestPathData("A", "E").toString());
+        graph.setSearchMode(SearchMode.LINKED);
+        Assertions.assertEquals("[A, I, E]", graph.shortestPathData("A", "E").toString());
+    }
+
+    /*
+     * Every pair of locations on the campus map must have the same shortest
+     * path cost in both search modes.
+     */
+    @Test
+    public void testFrozenSearchOnCampus() throws java.io.IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        new Backend(graph).loadGraphData("src/campus.dot");
+        FrozenGraph<String> frozen = graph.freeze();
+        Assertions.assertEquals(graph.getEdgeCount(), frozen.getEdgeCount());
+        for (int i = 0; i < frozen.getIndexCount(); i += 7)
+            for (int j = 0; j < frozen.getIndexCount(); j += 5) {
+                String start = frozen.getData(i);
+                String end = frozen.getData(j);
+                graph.setSearchMode(SearchMode.LINKED);
+                double expectedCost;
+                try {
+                    expectedCost = graph.shortestPathCost(start, end);
+                } catch (NoSuchElementException e) {
+                    graph.setSearchMode(SearchMode.FROZEN);
+                    Assertions.assertThrows(NoSuchElementException.class,
+                            () -> graph.shortestPathCost(start, end));
+                    continue;
+                }
+                graph.setSearchMode(SearchMode.FROZEN);
+                Assertions.assertEquals(expectedCost, graph.shortestPathCost(start, end), 1e-9);
+                List<String> path = graph.shortestPathData(start, end);
+                Assertions.assertEquals(start, path.get(0));
+                Assertions.assertEquals(end, path.get(path.size() - 1));
+            }
+    }
+
+    /*
+     * The indexed heap must return keys in priority order after any mix of
+     * inserts, decreaseKeys and polls, for several arities.
+     */
+    @Test
+    public void testIndexedMinHeap() {
+        java.util.Random random = new java.util.Random(400);
+        for (int arity = 2; arity <= 8; arity *= 2) {
+            IndexedMinHeap heap = new IndexedMinHeap(1000, arity);
+            double[] priority = new double[1000];
+            for (int key = 0; key < 1000; key++) {
+                priority[key] = random.nextDouble() * 100;
+                heap.insert(key, priority[key]);
+            }
+            for (int key = 0; key < 1000; key += 3) {
+                priority[key] /= 2;
+                heap.decreaseKey(key, priority[key]);
+            }
+            Assertions.assertEquals(1000, heap.size());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> heap.insert(5, 1.0));
+            double last = Double.NEGATIVE_INFINITY;
+            while (!heap.isEmpty()) {
+                double top = heap.peekPriority();
+                int key = heap.poll();
+                Assertions.assertEquals(priority[key], top);
+                Assertions.assertTrue(top >= last);
+                Assertions.assertFalse(heap.contains(key));
+                last = top;
+            }
+        }
+    }
+
+    /*
+     * Creates a graph with random positive edge weights on nodeCount nodes
+     * named by their number.
+     */
+    protected static DijkstraGraph<Integer, Double> randomGraph(long seed, int nodeCount,
+            int edgeCount) {
+        java.util.Random random = new java.util.Random(seed);
+        DijkstraGraph<Integer, Double> graph = new DijkstraGraph<>();
+        for (int i = 0; i < nodeCount; i++)
+            graph.insertNode(i);
+        for (int i = 0; i < edgeCount; i++)
+            graph.insertEdge(random.nextInt(nodeCount), random.nextInt(nodeCount),
+                    1 + random.nextInt(1000) / 10.0);
+        return graph;
+    }
+
+    /*
+     * Searches using the indexed heap must find paths of the same cost as the
+     * lazy PriorityQueue, in both search modes, on campus.dot and on large
+     * random graphs.
+     */
+    @Test
+    public void testIndexedHeapMatchesLazyQueue() throws java.io.IOException {
+        DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+        new Backend(campus).loadGraphData("src/campus.dot");
+        FrozenGraph<String> campusNodes = campus.freeze();
+        for (int i = 0; i < campusNodes.getIndexCount(); i += 3)
+            for (int j = 0; j < campusNodes.getIndexCount(); j += 4)
+                assertSameCosts(campus, campusNodes.getData(i), campusNodes.getData(j));
+
+        for (long seed = 1; seed <= 3; seed++) {
+            DijkstraGraph<Integer, Double> graph = randomGraph(seed, 5000, 20000);
+            java.util.Random random = new java.util.Random(seed);
+            for (int i = 0; i < 50; i++)
+                assertSameCosts(graph, random.nextInt(5000), random.nextInt(5000));
+        }
+    }
+
+    /*
+     * Checks that every search mode and queue finds the same shortest path cost
+     * from start to end as the linked search with the lazy queue, or that they
+     * all find no path.
+     */
+    protected static <T> void assertSameCosts(DijkstraGraph<T, ?> graph, T start, T end) {
+        graph.setSearchMode(SearchMode.LINKED);
+        graph.setHeapArity(LAZY_QUEUE);
+        double expected;
+        try {
+            expected = graph.shortestPathCost(start, end);
+        } catch (NoSuchElementException e) {
+            expected = Double.POSITIVE_INFINITY;
+        }
+        for (SearchMode mode : SearchMode.values())
+            for (int arity : new int[] { LAZY_QUEUE, 2, 4, 8 }) {
+                // contraction hierarchies are only practical on road-like
+                // graphs, so they are checked by assertSameHierarchyCost
+                if (mode == SearchMode.CONTRACTION_HIERARCHY)
+                    continue;
+                graph.setSearchMode(mode);
+                graph.setHeapArity(arity);
+                if (expected == Double.POSITIVE_INFINITY) {
+                    Assertions.assertThrows(NoSuchElementException.class,
+                            () -> graph.shortestPathData(start, end));
+                } else {
+                    Assertions.assertEquals(expected, graph.shortestPathCost(start, end), 1e-9);
+                    List<T> path = graph.shortestPathData(start, end);
+                    Assertions.assertEquals(start, path.get(0));
+                    Assertions.assertEquals(end, path.get(path.size() - 1));
+                }
+            }
+        graph.setSearchMode(SearchMode.LINKED);
+        graph.setHeapArity(LAZY_QUEUE);
+    }
+
+    /*
+     * Checks that the CONTRACTION_HIERARCHY search mode finds the same shortest
+     * path cost from start to end as Dijkstra's algorithm, and a path made of
+     * edges of the original graph with that cost.
+     */
+    protected static <T> void assertSameHierarchyCost(DijkstraGraph<T, ?> graph, T start, T end) {
+        graph.setSearchMode(SearchMode.FROZEN);
+        double expected;
+        try {
+            expected = graph.shortestPathCost(start, end);
+        } catch (NoSuchElementException e) {
+            expected = Double.POSITIVE_INFINITY;
+        }
+        graph.setSearchMode(SearchMode.CONTRACTION_HIERARCHY);
+        if (expected == Double.POSITIVE_INFINITY) {
+            Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathData(start, end));
+        } else {
+            Assertions.assertEquals(expected, graph.shortestPathCost(start, end), 1e-9);
+            List<T> path = graph.shortestPathData(start, end);
+            Assertions.assertEquals(start, path.get(0));
+            Assertions.assertEquals(end, path.get(path.size() - 1));
+            double pathCost = 0;
+            for (int k = 0; k + 1 < path.size(); k++)
+                pathCost += graph.getEdge(path.get(k), path.get(k + 1)).doubleValue();
+            Assertions.assertEquals(expected, pathCost, 1e-9);
+        }
+        graph.setSearchMode(SearchMode.LINKED);
+    }
+
+    /*
+     * Creates a side x side grid of nodes named by their number, with random
+     * weights on the edges between horizontal and vertical neighbors in both
+     * directions, resembling a road network.
+     */
+    protected static DijkstraGraph<Integer, Double> gridGraph(long seed, int side) {
+        return gridGraph(seed, side, node -> node);
+    }
+
+    /*
+     * Creates the same grid as gridGraph(seed, side), with each node named by
+     * applying name to its number.
+     */
+    protected static <T> DijkstraGraph<T, Double> gridGraph(long seed, int side,
+            java.util.function.IntFunction<T> name) {
+        java.util.Random random = new java.util.Random(seed);
+        DijkstraGraph<T, Double> grid = new DijkstraGraph<>();
+        List<T> nodes = new ArrayList<>(side * side);
+        for (int i = 0; i < side * side; i++) {
+            nodes.add(name.apply(i));
+            grid.insertNode(nodes.get(i));
+        }
+        for (int row = 0; row < side; row++)
+            for (int col = 0; col < side; col++) {
+                int node = row * side + col;
+                if (col + 1 < side) {
+                    grid.insertEdge(nodes.get(node), nodes.get(node + 1), 1 + random.nextInt(10) / 2.0);
+                    grid.insertEdge(nodes.get(node + 1), nodes.get(node), 1 + random.nextInt(10) / 2.0);
+                }
+                if (row + 1 < side) {
+                    grid.insertEdge(nodes.get(node), nodes.get(node + side), 1 + random.nextInt(10) / 2.0);
+                    grid.insertEdge(nodes.get(node + side), nodes.get(node), 1 + random.nextInt(10) / 2.0);
+                }
+            }
+        return grid;
+    }
+
+    /*
+     * Once the frozen graph and the thread's workspace have been created, a
+     * query through the public API with the indexed heap must not allocate
+     * anything on the heap apart from the list it returns.
+     */
+    @Test
+    public void testSteadyStateSearchDoesNotAllocate() {
+        // every node of a grid can reach every other, so no query throws
+        DijkstraGraph<Integer, Double> graph = gridGraph(7, 70);
+        int nodes = 70 * 70;
+        graph.setSearchMode(SearchMode.FROZEN);
+        graph.setHeapArity(4);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Integer[] keys = new Integer[nodes];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = i;
+
+        // warm up the snapshot, the workspace and the JIT
+        double total = 0;
+        long pathNodes = 0;
+        for (int i = 0; i < 2000; i++) {
+            total += graph.shortestPathCost(keys[i % nodes], keys[(i * 31) % nodes]);
+            pathNodes += graph.shortestPathData(keys[i % nodes], keys[(i * 31) % nodes]).size();
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 2000; i++)
+            total += graph.shortestPathCost(keys[i % nodes], keys[(i * 31) % nodes]);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        Assertions.assertTrue(total > 0);
+        // allow for a few bytes of measurement overhead, but nothing per query
+        Assertions.assertTrue(allocated < 2000, "2000 cost queries allocated " + allocated + " bytes");
+
+        pathNodes = 0;
+        before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 2000; i++)
+            pathNodes += graph.shortestPathData(keys[i % nodes], keys[(i * 31) % nodes]).size();
+        allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        // each returned LinkedList takes at most 32 bytes for itself and 32
+        // for each node, while the searches relax many more edges than that
+        long listBytes = 2000 * 32 + 32 * pathNodes;
+        Assertions.assertTrue(allocated < listBytes + 2000,
+                "2000 path queries allocated " + allocated + " bytes for lists of " + listBytes + " bytes");
+    }
+
+    /*
+     * On a long query across a grid, the bidirectional search must find the
+     * same cost and path length as the one-sided search while settling fewer
+     * nodes.
+     */
+    @Test
+    public void testBidirectionalSettlesFewerNodes() {
+        int side = 60;
+        DijkstraGraph<Integer, Double> graph = gridGraph(4, side);
+        Integer start = side * (side / 2);
+        Integer end = start + side - 1;
+
+        graph.setSearchMode(SearchMode.FROZEN);
+        graph.setHeapArity(4);
+        double expected = graph.shortestPathCost(start, end);
+        int oneSided = graph.workspaces.get().getSettledCount();
+
+        graph.setSearchMode(SearchMode.BIDIRECTIONAL);
+        Assertions.assertEquals(expected, graph.shortestPathCost(start, end), 1e-9);
+        int bidirectional = graph.workspaces.get().getSettledCount()
+                + graph.backwardWorkspaces.get().getSettledCount();
+        Assertions.assertTrue(bidirectional < oneSided,
+                "bidirectional settled " + bidirectional + " of one-sided " + oneSided);
+
+        List<Integer> path = graph.shortestPathData(start, end);
+        Assertions.assertEquals(start, path.get(0));
+        Assertions.assertEquals(end, path.get(path.size() - 1));
+        double pathCost = 0;
+        for (int i = 0; i + 1 < path.size(); i++)
+            pathCost += graph.getEdge(path.get(i), path.get(i + 1));
+        Assertions.assertEquals(expected, pathCost, 1e-9);
+        Assertions.assertEquals("[" + start + "]", graph.shortestPathData(start, start).toString());
+    }
+
+    /*
+     * ALT searches with either landmark selection must find the same costs as
+     * Dijkstra's algorithm on campus.dot and on random graphs.
+     */
+    @Test
+    public void testAltMatchesDijkstra() throws java.io.IOException {
+        DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+        new Backend(campus).loadGraphData("src/campus.dot");
+        DijkstraGraph<Integer, Double> random = randomGraph(11, 3000, 12000);
+        for (Landmarks.Selection selection : Landmarks.Selection.values()) {
+            Landmarks chosen = campus.prepareLandmarks(4, selection);
+            Assertions.assertEquals(4, chosen.getCount());
+            FrozenGraph<String> campusNodes = campus.freeze();
+            for (int i = 0; i < campusNodes.getIndexCount(); i += 5)
+                for (int j = 0; j < campusNodes.getIndexCount(); j += 3)
+                    assertSameCosts(campus, campusNodes.getData(i), campusNodes.getData(j));
+
+            random.prepareLandmarks(6, selection);
+            for (int i = 0; i < 100; i++)
+                assertSameCosts(random, (i * 37) % 3000, (i * 101 + 5) % 3000);
+        }
+        // modifying the graph must recompute the landmarks before searching
+        Landmarks before = random.landmarks;
+        random.insertEdge(0, 2999, 0.5);
+        random.setSearchMode(SearchMode.ALT);
+        Assertions.assertEquals(0.5, random.shortestPathCost(0, 2999));
+        Assertions.assertNotSame(before, random.landmarks);
+    }
+
+    /*
+     * Reports how many nodes plain Dijkstra and ALT settle, and how long their
+     * searches take, on campus.dot and on a synthetic grid.
+     */
+    @Test
+    public void testAltBenchmark() throws java.io.IOException {
+        DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+        new Backend(campus).loadGraphData("src/campus.dot");
+        FrozenGraph<String> campusNodes = campus.freeze();
+        String[] campusKeys = new String[campusNodes.getIndexCount()];
+        for (int i = 0; i < campusKeys.length; i++)
+            campusKeys[i] = campusNodes.getData(i);
+        benchmarkAlt("campus.dot", campus, campusKeys);
+
+        int side = 150;
+        DijkstraGraph<Integer, Double> grid = gridGraph(5, side);
+        Integer[] gridKeys = new Integer[side * side];
+        for (int i = 0; i < gridKeys.length; i++)
+            gridKeys[i] = i;
+        benchmarkAlt(side + "x" + side + " grid", grid, gridKeys);
+    }
+
+    /*
+     * Runs the same random queries in FROZEN and ALT mode, checks that they
+     * agree, and prints the average settled node count and latency of each.
+     */
+    private static <T> void benchmarkAlt(String name, DijkstraGraph<T, Double> graph, T[] keys) {
+        graph.setHeapArity(4);
+        graph.prepareLandmarks(8, Landmarks.Selection.AVOID);
+        java.util.Random random = new java.util.Random(17);
+        int queries = 500;
+        int[] starts = new int[queries];
+        int[] ends = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = random.nextInt(keys.length);
+            ends[i] = random.nextInt(keys.length);
+        }
+        long[] settled = new long[2];
+        long[] nanos = new long[2];
+        double[] checksum = new double[2];
+        SearchMode[] modes = { SearchMode.FROZEN, SearchMode.ALT };
+        for (int round = 0; round < 2; round++) // the first round warms up the JIT
+            for (int m = 0; m < modes.length; m++) {
+                graph.setSearchMode(modes[m]);
+                settled[m] = 0;
+                checksum[m] = 0;
+                long begin = System.nanoTime();
+                for (int i = 0; i < queries; i++) {
+                    try {
+                        checksum[m] += graph.shortestPathCost(keys[starts[i]], keys[ends[i]]);
+                    } catch (NoSuchElementException e) {
+                        // unreachable pairs still count toward latency and settled nodes
+                    }
+                    settled[m] += graph.workspaces.get().getSettledCount();
+                }
+                nanos[m] = System.nanoTime() - begin;
+            }
+        Assertions.assertEquals(checksum[0], checksum[1], 1e-6);
+        Assertions.assertTrue(settled[1] <= settled[0]);
+        System.out.printf("%s: Dijkstra settled %d nodes in %.1f us per query, "
+                + "ALT settled %d nodes in %.1f us per query%n", name,
+                settled[0] / queries, nanos[0] / 1000.0 / queries,
+                settled[1] / queries, nanos[1] / 1000.0 / queries);
+        graph.setSearchMode(SearchMode.LINKED);
+        graph.setHeapArity(LAZY_QUEUE);
+    }
+
+    /*
+     * Contraction hierarchies built sequentially and in parallel must find the
+     * same costs as Dijkstra's algorithm, return paths made of original edges,
+     * and survive being saved and loaded.
+     */
+    @Test
+    public void testContractionHierarchyMatchesDijkstra() throws java.io.IOException {
+        DijkstraGraph<Integer, Double> grid = gridGraph(41, 40);
+        for (int parallelism : new int[] { 1, 4 }) {
+            ContractionHierarchy<Integer> hierarchy = grid.prepareContractionHierarchy(parallelism);
+            Assertions.assertTrue(hierarchy.getShortcutCount() > 0);
+            for (int i = 0; i < 200; i++)
+                assertSameHierarchyCost(grid, (i * 37) % 1600, (i * 101 + 5) % 1600);
+        }
+        // modifying the graph must rebuild the hierarchy before searching
+        ContractionHierarchy<Integer> before = grid.contractionHierarchy;
+        grid.insertEdge(0, 1599, 0.5);
+        assertSameHierarchyCost(grid, 0, 1599);
+        Assertions.assertNotSame(before, grid.contractionHierarchy);
+        // reading the settled count of a query must not rebuild the hierarchy,
+        // even after the graph changed again
+        grid.setSearchMode(SearchMode.CONTRACTION_HIERARCHY);
+        Route<Integer> route = grid.shortestRoute(0, 1599);
+        Assertions.assertTrue(route.getSettledNodes() > 0);
+        Assertions.assertEquals(route.getSettledNodes(), grid.getLastSettledCount());
+        ContractionHierarchy<Integer> queried = grid.contractionHierarchy;
+        grid.insertEdge(1599, 0, 0.5);
+        Assertions.assertEquals(route.getSettledNodes(), grid.getLastSettledCount());
+        Assertions.assertSame(queried, grid.contractionHierarchy);
+        grid.setSearchMode(SearchMode.LINKED);
+
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("campus", ".ch");
+        try {
+            DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+            new Backend(campus).loadGraphData("src/campus.dot");
+            campus.prepareContractionHierarchy(2).save(file);
+
+            DijkstraGraph<String, Double> reloaded = new DijkstraGraph<>();
+            new Backend(reloaded).loadGraphData("src/campus.dot");
+            reloaded.setContractionHierarchy(ContractionHierarchy.load(file));
+            FrozenGraph<String> campusNodes = campus.freeze();
+            for (int i = 0; i < campusNodes.getIndexCount(); i += 2)
+                for (int j = 0; j < campusNodes.getIndexCount(); j += 2)
+                    assertSameHierarchyCost(reloaded, campusNodes.getData(i), campusNodes.getData(j));
+
+            // a hierarchy of a different graph must be rejected
+            DijkstraGraph<String, Double> other = new DijkstraGraph<>();
+            other.insertNode("A");
+            ContractionHierarchy<String> otherHierarchy = other.prepareContractionHierarchy(1);
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> campus.setContractionHierarchy(otherHierarchy));
+
+            // so must the hierarchy of the same locations with one edge's
+            // weight changed, even though its nodes all match
+            DijkstraGraph<String, Double> changed = new DijkstraGraph<>();
+            new Backend(changed).loadGraphData("src/campus.dot");
+            // the source of any entering edge has a leaving edge to change
+            int edge = campusNodes.edgesBegin(campusNodes.source(0));
+            String from = campusNodes.getData(campusNodes.source(0));
+            String to = campusNodes.getData(campusNodes.target(edge));
+            changed.insertEdge(from, to, changed.getEdge(from, to) + 1);
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> changed.setContractionHierarchy(ContractionHierarchy.load(file)));
+        } finally {
+            java.nio.file.Files.delete(file);
+        }
+    }
+
+    /*
+     * A shortest path tree must agree with separate searches for the cost,
+     * path, and edge weights to every destination, and a cost bound must leave
+     * out exactly the nodes whose paths cost more than it.
+     */
+    @Test
+    public void testShortestPathTreeMatchesSearches() {
+        DijkstraGraph<Integer, Double> graph = randomGraph(7, 300, 1200);
+        ShortestPathTree<Integer> tree = graph.shortestPathTree(0);
+        Assertions.assertEquals(0, (int) tree.getSource());
+        for (int node = 0; node < 300; node++) {
+            double cost;
+            try {
+                cost = graph.shortestPathCost(0, node);
+            } catch (NoSuchElementException e) {
+                Assertions.assertFalse(tree.reaches(node));
+                final int unreached = node;
+                Assertions.assertThrows(NoSuchElementException.class, () -> tree.pathTo(unreached));
+                continue;
+            }
+            Assertions.assertEquals(cost, tree.costTo(node), 1e-9);
+            List<Integer> path = tree.pathTo(node);
+            List<Double> times = tree.travelTimesTo(node);
+            Assertions.assertEquals(0, (int) path.get(0));
+            Assertions.assertEquals(node, (int) path.get(path.size() - 1));
+            Assertions.assertEquals(path.size() - 1, times.size());
+            double total = 0;
+            for (int i = 0; i < times.size(); i++) {
+                Assertions.assertEquals(graph.getEdge(path.get(i), path.get(i + 1)), times.get(i));
+                total += times.get(i);
+            }
+            Assertions.assertEquals(cost, total, 1e-9);
+        }
+
+        // bound the search by the median cost of the reached nodes
+        double[] costs = new double[300];
+        int reached = 0;
+        for (int node = 0; node < 300; node++)
+            if (tree.reaches(node))
+                costs[reached++] = tree.costTo(node);
+        Arrays.sort(costs, 0, reached);
+        double bound = costs[reached / 2];
+        ShortestPathTree<Integer> bounded = graph.shortestPathTree(0, bound);
+        Assertions.assertTrue(bounded.getSettledCount() < tree.getSettledCount());
+        for (int node = 0; node < 300; node++) {
+            boolean within = tree.reaches(node) && tree.costTo(node) <= bound;
+            Assertions.assertEquals(within, bounded.reaches(node));
+            if (within)
+                Assertions.assertEquals(tree.costTo(node), bounded.costTo(node), 1e-9);
+        }
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathTree(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> graph.shortestPathTree(0, -1));
+    }
+
+    /*
+     * Distance matrices must match separate searches, both from one search per
+     * origin and from the buckets of a contraction hierarchy, and must return
+     * the path behind each entry when paths are kept.
+     */
+    @Test
+    public void testDistanceMatrixMatchesSearches() {
+        DijkstraGraph<Integer, Double> graph = randomGraph(11, 400, 1000);
+        List<Integer> origins = Arrays.asList(0, 17, 33, 250, 399, 17);
+        List<Integer> destinations = Arrays.asList(5, 0, 120, 121, 300, 17, 399, 5);
+        DistanceMatrix<Integer> matrix = graph.distanceMatrix(origins, destinations, true);
+        DistanceMatrix<Integer> costsOnly = graph.distanceMatrix(origins, destinations, false);
+        Assertions.assertFalse(costsOnly.hasPaths());
+        for (int i = 0; i < origins.size(); i++)
+            for (int j = 0; j < destinations.size(); j++) {
+                double expected;
+                try {
+                    expected = graph.shortestPathCost(origins.get(i), destinations.get(j));
+                } catch (NoSuchElementException e) {
+                    expected = Double.POSITIVE_INFINITY;
+                }
+                Assertions.assertEquals(expected, matrix.getCost(i, j), 1e-9);
+                Assertions.assertEquals(expected, costsOnly.getCost(i, j), 1e-9);
+                if (expected == Double.POSITIVE_INFINITY)
+                    continue;
+                List<Integer> path = matrix.getPath(i, j);
+                double total = 0;
+                for (int k = 0; k + 1 < path.size(); k++)
+                    total += graph.getEdge(path.get(k), path.get(k + 1));
+                Assertions.assertEquals(expected, total, 1e-9);
+                final int row = i, column = j;
+                Assertions.assertThrows(IllegalStateException.class, () -> costsOnly.getPath(row, column));
+            }
+
+        DijkstraGraph<Integer, Double> grid = gridGraph(5, 30);
+        List<Integer> gridOrigins = Arrays.asList(0, 45, 450, 899);
+        List<Integer> gridDestinations = Arrays.asList(899, 1, 600, 0, 310);
+        double[][] expected = grid.distanceMatrix(gridOrigins, gridDestinations, false).getCosts();
+        grid.setSearchMode(SearchMode.CONTRACTION_HIERARCHY);
+        DistanceMatrix<Integer> buckets = grid.distanceMatrix(gridOrigins, gridDestinations, true);
+        for (int i = 0; i < gridOrigins.size(); i++)
+            for (int j = 0; j < gridDestinations.size(); j++) {
+                Assertions.assertEquals(expected[i][j], buckets.getCost(i, j), 1e-9);
+                List<Integer> path = buckets.getPath(i, j);
+                Assertions.assertEquals(gridDestinations.get(j), path.get(path.size() - 1));
+                // routes carry the weight of every edge, from trees and from the hierarchy alike
+                Route<Integer> route = buckets.getRoute(i, j);
+                Assertions.assertEquals(path, route.getNodes());
+                Assertions.assertEquals(expected[i][j], route.getTotalCost(), 1e-9);
+                for (int k = 0; k + 1 < path.size(); k++)
+                    Assertions.assertEquals(grid.getEdge(path.get(k), path.get(k + 1)), route.getTravelTimes().get(k));
+            }
+        grid.setSearchMode(SearchMode.FROZEN);
+        DistanceMatrix<Integer> trees = grid.distanceMatrix(gridOrigins, gridDestinations, true);
+        Assertions.assertEquals(grid.shortestRoute(45, 600).getTravelTimes(), trees.getRoute(1, 2).getTravelTimes());
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> grid.distanceMatrix(Arrays.asList(-1), gridDestinations, false));
+    }
+
+    /*
+     * A route must hold the same nodes and cost as separate searches in every
+     * search mode and with either queue, with the weight of each edge along it,
+     * read from the search rather than looked up, and the number of nodes its
+     * search settled.
+     */
+    @Test
+    public void testShortestRouteMatchesSearches() {
+        DijkstraGraph<Integer, Double> grid = gridGraph(17, 20);
+        for (int arity : new int[] { LAZY_QUEUE, 4 }) {
+            for (SearchMode mode : SearchMode.values()) {
+                grid.setSearchMode(mode);
+                grid.setHeapArity(arity);
+                for (int i = 0; i < 20; i++) {
+                    int start = (i * 31) % 400, end = (i * 97 + 11) % 400;
+                    Route<Integer> route = grid.shortestRoute(start, end);
+                    Assertions.assertEquals(grid.shortestPathData(start, end), route.getNodes());
+                    Assertions.assertEquals(grid.shortestPathCost(start, end), route.getTotalCost(), 1e-9);
+                    Assertions.assertEquals(route.getNodes().size() - 1, route.getTravelTimes().size());
+                    for (int k = 0; k < route.getTravelTimes().size(); k++)
+                        Assertions.assertEquals(
+                                grid.getEdge(route.getNodes().get(k), route.getNodes().get(k + 1)),
+                                route.getTravelTimes().get(k));
+                    Assertions.assertTrue(route.getSettledNodes() > 0);
+                }
+            }
+        }
+        Route<Integer> first = grid.shortestRoute(0, 210);
+        Route<Integer> both = first.append(grid.shortestRoute(210, 399));
+        Assertions.assertEquals(0, (int) both.getNodes().get(0));
+        Assertions.assertEquals(399, (int) both.getNodes().get(both.getNodes().size() - 1));
+        Assertions.assertTrue(first.append(Route.empty(0)).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.append(first));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.getNodes().add(5));
+    }
+
+    /*
+     * Node ids must be dense, be reused after a node is removed, and give the
+     * same edges and shortest paths as the node data in every search mode.
+     */
+    @Test
+    public void testNodeIdVariants() throws java.io.IOException {
+        DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+        new Backend(campus).loadGraphData("src/campus.dot");
+        Assertions.assertEquals(campus.getNodeCount(), campus.getNodeIdCount());
+        int union = campus.getNodeId("Union South");
+        int sciences = campus.getNodeId("Atmospheric, Oceanic and Space Sciences");
+        Assertions.assertEquals("Union South", campus.getNodeData(union));
+        Assertions.assertEquals(-1, campus.getNodeId("Nowhere"));
+        Assertions.assertEquals(campus.getEdge("Union South", "Atmospheric, Oceanic and Space Sciences"),
+                campus.getEdgeById(union, sciences));
+        for (SearchMode mode : SearchMode.values()) {
+            campus.setSearchMode(mode);
+            for (int end = 0; end < campus.getNodeIdCount(); end += 7) {
+                String endData = campus.getNodeData(end);
+                Assertions.assertEquals(campus.shortestPathData("Union South", endData),
+                        campus.shortestPathDataById(union, end));
+                Assertions.assertEquals(campus.shortestPathCost("Union South", endData),
+                        campus.shortestPathCostById(union, end), 1e-9);
+            }
+        }
+        Assertions.assertThrows(NoSuchElementException.class, () -> campus.shortestPathDataById(union, -1));
+        Assertions.assertThrows(NoSuchElementException.class, () -> campus.getNodeData(campus.getNodeIdCount()));
+
+        // a removed node's id is given to the next inserted node
+        campus.setSearchMode(SearchMode.LINKED);
+        campus.removeNode("Union South");
+        Assertions.assertFalse(campus.containsNodeId(union));
+        Assertions.assertFalse(campus.insertEdgeById(union, sciences, 1.0));
+        campus.insertNode("New Union South");
+        Assertions.assertEquals(union, campus.getNodeId("New Union South"));
+        Assertions.assertTrue(campus.insertEdgeById(union, sciences, 5.0));
+        Assertions.assertEquals(5.0, (double) campus.getEdge("New Union South", "Atmospheric, Oceanic and Space Sciences"));
+        Assertions.assertEquals(5.0, campus.shortestPathCostById(union, sciences));
+    }
+
+    /*
+     * With the edge index on, inserting, updating, finding and removing edges
+     * and nodes must leave the graph exactly as it is with the index off, and
+     * each edge must record where it is in its nodes' edge lists.
+     */
+    @Test
+    public void testEdgeIndexMatchesEdgeLists() {
+        java.util.Random random = new java.util.Random(21);
+        DijkstraGraph<Integer, Double> indexed = new DijkstraGraph<>();
+        DijkstraGraph<Integer, Double> plain = new DijkstraGraph<>();
+        indexed.setEdgeIndexEnabled(true);
+        for (int i = 0; i < 50; i++) {
+            indexed.insertNode(i);
+            plain.insertNode(i);
+        }
+        for (int step = 0; step < 5000; step++) {
+            int pred = random.nextInt(52), succ = random.nextInt(52);
+            double weight = random.nextInt(100);
+            switch (random.nextInt(6)) {
+            case 0:
+                Assertions.assertEquals(plain.removeEdge(pred, succ), indexed.removeEdge(pred, succ));
+                break;
+            case 1:
+                Assertions.assertEquals(plain.removeNode(pred), indexed.removeNode(pred));
+                Assertions.assertEquals(plain.insertNode(succ), indexed.insertNode(succ));
+                break;
+            default:
+                Assertions.assertEquals(plain.insertEdge(pred, succ, weight),
+                        indexed.insertEdge(pred, succ, weight));
+            }
+            Assertions.assertEquals(plain.containsEdge(pred, succ), indexed.containsEdge(pred, succ));
+        }
+        for (int pred = 0; pred < 52; pred++)
+            for (int succ = 0; succ < 52; succ++) {
+                Assertions.assertEquals(plain.containsEdge(pred, succ), indexed.containsEdge(pred, succ));
+                if (plain.containsEdge(pred, succ))
+                    Assertions.assertEquals(plain.getEdge(pred, succ), indexed.getEdge(pred, succ));
+            }
+        // every edge knows its position in both of its nodes' edge lists, so
+        // that removing it takes constant time
+        for (var node : indexed.nodeList)
+            if (node != null) {
+                for (int i = 0; i < node.edgesLeaving.size(); i++)
+                    Assertions.assertEquals(i, node.edgesLeaving.get(i).leavingIndex);
+                for (int i = 0; i < node.edgesEntering.size(); i++)
+                    Assertions.assertEquals(i, node.edgesEntering.get(i).enteringIndex);
+            }
+        // missing nodes are reported without an exception from insertEdge
+        Assertions.assertFalse(indexed.insertEdge(-1, 0, 1.0));
+        final int missing = -1;
+        Assertions.assertThrows(NoSuchElementException.class, () -> indexed.getEdge(missing, 0));
+        indexed.setEdgeIndexEnabled(false);
+        Assertions.assertFalse(indexed.isEdgeIndexEnabled());
+    }
+
+    /*
+     * Edges store their data as a primitive weight and box it again when
+     * asked for it, keeping data that a weight cannot hold as it was given,
+     * and frozen graphs with single precision weights find paths whose costs
+     * match the double precision ones to within float rounding.
+     */
+    @Test
+    public void testPrimitiveAndSinglePrecisionWeights() {
+        DijkstraGraph<Integer, Double> grid = gridGraph(13, 25);
+        grid.insertEdge(0, 1, 0.1);
+        Assertions.assertEquals(0.1, grid.getEdgeHelper(0, 1).weight);
+        Assertions.assertEquals(0.1, grid.shortestPathCost(0, 1));
+        Assertions.assertEquals(Double.valueOf(0.1), grid.getEdge(0, 1));
+        Assertions.assertFalse(grid.getEdgeHelper(0, 1) instanceof BaseGraph.ExactEdge);
+
+        DijkstraGraph<String, Number> mixed = new DijkstraGraph<>();
+        mixed.insertNode("a");
+        mixed.insertNode("b");
+        mixed.insertEdge("a", "b", 7);
+        Assertions.assertEquals(Integer.valueOf(7), mixed.getEdge("a", "b"));
+        // a Long too large for a double, and data of another class, are kept
+        mixed.insertEdge("a", "b", (1L << 60) + 1);
+        Assertions.assertEquals(Long.valueOf((1L << 60) + 1), mixed.getEdge("a", "b"));
+        Assertions.assertEquals((double) (1L << 60), mixed.getEdgeHelper("a", "b").weight);
+        mixed.insertEdge("b", "a", new java.math.BigDecimal("2.5"));
+        Assertions.assertEquals(new java.math.BigDecimal("2.5"), mixed.getEdge("b", "a"));
+        Assertions.assertEquals(2.5, mixed.shortestPathCost("b", "a"));
+        // replacing an edge to keep its data does not add another edge
+        Assertions.assertEquals(2, mixed.getEdgeCount());
+        Assertions.assertEquals(java.util.List.of("a", "b"), mixed.shortestPathData("a", "b"));
+        double[] costs = new double[40];
+        grid.setSearchMode(SearchMode.FROZEN);
+        for (int i = 0; i < costs.length; i++)
+            costs[i] = grid.shortestPathCost(i * 13, 624 - i * 7);
+        Assertions.assertFalse(grid.freeze().hasSinglePrecisionWeights());
+
+        grid.setSinglePrecisionWeights(true);
+        Assertions.assertTrue(grid.freeze().hasSinglePrecisionWeights());
+        Assertions.assertEquals((float) 0.1, grid.freeze().weight(grid.freeze().findEdge(0, 1)));
+        for (SearchMode mode : new SearchMode[] { SearchMode.FROZEN, SearchMode.BIDIRECTIONAL,
+                SearchMode.ALT, SearchMode.CONTRACTION_HIERARCHY }) {
+            grid.setSearchMode(mode);
+            for (int i = 0; i < costs.length; i++)
+                Assertions.assertEquals(costs[i], grid.shortestPathCost(i * 13, 624 - i * 7), 1e-4);
+        }
+        grid.setSinglePrecisionWeights(false);
+        grid.setSearchMode(SearchMode.FROZEN);
+        Assertions.assertEquals(costs[3], grid.shortestPathCost(39, 603));
+    }
+
+    /*
+     * A read-only graph served from an off-heap copy of the frozen graph finds
+     * the same paths as the graph it was copied from in every search mode,
+     * answers node and edge queries from the copy, and rejects modifications.
+     */
+    @Test
+    public void testOffHeapReadOnlyGraphMatchesFrozen() {
+        DijkstraGraph<Integer, Double> grid = gridGraph(26, 17);
+        grid.setSearchMode(SearchMode.FROZEN);
+        OffHeapFrozenGraph<Integer> offHeap = OffHeapFrozenGraph.copyOf(grid.freeze());
+        DijkstraGraph<Integer, Double> served = DijkstraGraph.readOnly(offHeap);
+        Assertions.assertTrue(served.isReadOnly());
+        Assertions.assertSame(offHeap, served.freeze());
+        Assertions.assertEquals(grid.getNodeCount(), served.getNodeCount());
+        Assertions.assertEquals(grid.getEdgeCount(), served.getEdgeCount());
+        Assertions.assertEquals(grid.getEdge(0, 1), served.getEdge(0, 1));
+        Assertions.assertTrue(served.containsEdge(0, 17));
+        Assertions.assertFalse(served.containsEdge(0, 18));
+        Assertions.assertEquals(grid.getNodeId(200), served.getNodeId(200));
+        Assertions.assertThrows(NoSuchElementException.class, () -> served.getEdge(0, 18));
+
+        for (SearchMode mode : new SearchMode[] { SearchMode.FROZEN, SearchMode.BIDIRECTIONAL,
+                SearchMode.ALT, SearchMode.CONTRACTION_HIERARCHY }) {
+            grid.setSearchMode(mode);
+            served.setSearchMode(mode);
+            for (int i = 0; i < 30; i++) {
+                int start = (i * 31) % 289;
+                int end = (i * 47 + 11) % 289;
+                Assertions.assertEquals(grid.shortestPathData(start, end), served.shortestPathData(start, end));
+                Assertions.assertEquals(grid.shortestPathCost(start, end), served.shortestPathCost(start, end));
+            }
+            Assertions.assertEquals(grid.shortestRoute(3, 280).getTravelTimes(),
+                    served.shortestRoute(3, 280).getTravelTimes());
+        }
+        Assertions.assertEquals(grid.shortestPathTree(5).costTo(250), served.shortestPathTree(5).costTo(250));
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> served.insertNode(1000));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> served.insertEdge(0, 18, 1.0));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> served.removeEdge(0, 1));
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> served.setSearchMode(SearchMode.LINKED));
+        Assertions.assertThrows(NoSuchElementException.class, () -> served.shortestPathCost(0, 1000));
+    }
+
+    /*
+     * Every search mode that settles nodes one at a time must report its
+     * progress to the thread's SearchMonitor every MONITOR_INTERVAL settled
+     * nodes, and stop with the monitor's CancellationException. The grid is
+     * large enough that even ALT settles more than MONITOR_INTERVAL nodes
+     * between opposite corners.
+     */
+    @Test
+    public void testSearchMonitorReportsProgressAndCancels() {
+        DijkstraGraph<Integer, Double> grid = gridGraph(27, 100);
+        int last = 100 * 100 - 1;
+        for (SearchMode mode : new SearchMode[] { SearchMode.LINKED, SearchMode.FROZEN,
+                SearchMode.BIDIRECTIONAL, SearchMode.ALT }) {
+            grid.setSearchMode(mode);
+            List<Integer> expected = grid.shortestPathData(0, last);
+
+            // a monitor that only watches sees the search grow without changing it
+            List<Integer> reports = new ArrayList<>();
+            SearchWorkspace.setMonitor(reports::add);
+            try {
+                Assertions.assertEquals(expected, grid.shortestPathData(0, last));
+            } finally {
+                SearchWorkspace.setMonitor(null);
+            }
+            Assertions.assertFalse(reports.isEmpty(), mode.toString());
+            for (int settled : reports)
+                Assertions.assertEquals(0, settled % SearchWorkspace.MONITOR_INTERVAL);
+
+            // a cancelled search throws, and leaves the next search unharmed
+            SearchWorkspace.setMonitor(settled -> {
+                throw new CancellationException();
+            });
+            try {
+                Assertions.assertThrows(CancellationException.class, () -> grid.shortestPathData(0, last));
+            } finally {
+                SearchWorkspace.setMonitor(null);
+            }
+            Assertions.assertEquals(expected, grid.shortestPathData(0, last));
+        }
+
+        // shortest path trees settle every node and report as they go
+        SearchWorkspace.setMonitor(settled -> {
+            throw new CancellationException();
+        });
+        try {
+            Assertions.assertThrows(CancellationException.class, () -> grid.shortestPathTree(0));
+        } finally {
+            SearchWorkspace.setMonitor(null);
+        }
+        Assertions.assertEquals(grid.shortestPathCost(0, last), grid.shortestPathTree(0).costTo(last));
+    }
 }
@@ -0,0 +1,151 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The costs of the shortest paths from each of a list of origin nodes to each
+ * of a list of destination nodes, stored as a dense table of doubles. Row i
+ * holds the costs from the i-th origin, and column j the costs to the j-th
+ * destination. Pairs without a path have an infinite cost.
+ *
+ * When paths were kept while computing the matrix, the path behind any entry
+ * can also be retrieved.
+ */
+public class DistanceMatrix<NodeType> {
+
+    protected final List<NodeType> origins;
+    protected final List<NodeType> destinations;
+    protected final double[][] costs;
+    // the shortest path tree of each origin, or null when paths come from
+    // the hierarchy or were not kept
+    protected final List<ShortestPathTree<NodeType>> trees;
+    // the hierarchy the matrix was computed with, or null
+    protected final ContractionHierarchy<NodeType> hierarchy;
+
+    /**
+     * Constructor for DistanceMatrix, used by DijkstraGraph.distanceMatrix.
+     *
+     * @param origins      the origin of each row
+     * @param destinations the destination of each column
+     * @param costs        the cost of each entry
+     * @param trees        the shortest path tree of each origin, or null
+     * @param hierarchy    the hierarchy to unpack paths from, or null
+     */
+    protected DistanceMatrix(List<NodeType> origins, List<NodeType> destinations, double[][] costs,
+            List<ShortestPathTree<NodeType>> trees, ContractionHierarchy<NodeType> hierarchy) {
+        this.origins = origins;
+        this.destinations = destinations;
+        this.costs = costs;
+        this.trees = trees;
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Return the origin of each row.
+     *
+     * @return the list of origins
+     */
+    public List<NodeType> getOrigins() {
+        return origins;
+    }
+
+    /**
+     * Return the destination of each column.
+     *
+     * @return the list of destinations
+     */
+    public List<NodeType> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * Returns the cost of the shortest path from one origin to one
+     * destination.
+     *
+     * @param origin      the row of the origin
+     * @param destination the column of the destination
+     * @return the cost of that path, or Double.POSITIVE_INFINITY if there is
+     *         no such path
+     */
+    public double getCost(int origin, int destination) {
+        return costs[origin][destination];
+    }
+
+    /**
+     * Return the whole table of costs. The arrays are shared with this matrix
+     * and should not be modified.
+     *
+     * @return costs[i][j] is the cost from origin i to destination j
+     */
+    public double[][] getCosts() {
+        return costs;
+    }
+
+    /**
+     * Returns the number of nodes settled by the searches that computed this
+     * matrix, which is only known when their shortest path trees were kept.
+     *
+     * @return the number of settled nodes, or 0 if the trees were not kept
+     */
+    public int getSettledCount() {
+        int settled = 0;
+        if (trees != null)
+            for (ShortestPathTree<NodeType> tree : trees)
+                settled += tree.getSettledCount();
+        return settled;
+    }
+
+    /**
+     * Check whether the paths behind the entries of this matrix can be
+     * retrieved with getPath.
+     *
+     * @return true if paths are available
+     */
+    public boolean hasPaths() {
+        return trees != null || hierarchy != null;
+    }
+
+    /**
+     * Returns the data of the nodes along the shortest path from one origin
+     * to one destination.
+     *
+     * @param origin      the row of the origin
+     * @param destination the column of the destination
+     * @return list of data items from nodes along that path
+     * @throws NoSuchElementException when there is no such path
+     * @throws IllegalStateException if paths were not kept for this matrix
+     */
+    public List<NodeType> getPath(int origin, int destination) {
+        if (costs[origin][destination] == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("No path from " + origins.get(origin).toString() + " to "
+                    + destinations.get(destination).toString());
+        if (trees != null)
+            return trees.get(origin).pathTo(destinations.get(destination));
+        if (hierarchy != null)
+            return hierarchy.shortestPathData(origins.get(origin), destinations.get(destination));
+        throw new IllegalStateException("paths were not kept for this matrix");
+    }
+
+    /**
+     * Returns the shortest route from one origin to one destination, with the
+     * weight of each edge along it read from the search that found it. The
+     * route's settled nodes are those settled by the search from its origin,
+     * or by the hierarchy query that unpacked it.
+     *
+     * @param origin      the row of the origin
+     * @param destination the column of the destination
+     * @return the shortest route from that origin to that destination
+     * @throws NoSuchElementException when there is no such path
+     * @throws IllegalStateException if paths were not kept for this matrix
+     */
+    public Route<NodeType> getRoute(int origin, int destination) {
+        if (costs[origin][destination] == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("No path from " + origins.get(origin).toString() + " to "
+                    + destinations.get(destination).toString());
+        if (trees != null)
+            return trees.get(origin).routeTo(destinations.get(destination));
+        if (hierarchy != null)
+            return hierarchy.shortestRoute(origins.get(origin), destinations.get(destination));
+        throw new IllegalStateException("paths were not kept for this matrix");
+    }
+
+}
@@ -0,0 +1,647 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single-pass streaming parser for graphs in the DOT language. The parser
+ * reads raw bytes straight from an InputStream, without regular expressions
+ * and without building a String for each line, and hands every edge that has
+ * a numeric weight attribute to an EdgeHandler.
+ *
+ * The parser accepts the parts of DOT that describe nodes and edges: quoted,
+ * alphanumeric and numeric ids, edge chains such as "A" -> "B" -> "C",
+ * attribute lists in brackets, comments, and statements that end with a
+ * semicolon or wherever the next statement begins, so that a statement may
+ * span several lines. Weights must be unsigned decimals, since a shortest path
+ * search cannot use negative, infinite or NaN edge weights. Graph headers,
+ * subgraph keywords and graph and node attribute statements are skipped. An
+ * edge attribute statement such as edge [seconds=5] sets the weight of the
+ * edges after it, up to the end of the enclosing braces, that have no weight
+ * of their own. Edges to or from subgraphs, ports and other syntax the parser
+ * does not support are rejected rather than silently dropped. Each distinct
+ * node name is decoded into a String only once, so that every edge at a node
+ * passes the same String instance to the handler.
+ *
+ * A parser can also read one chunk of a larger file, as ParallelDotLoader
+ * does. The chunk must start where a statement can, but may end anywhere: the
+ * statement, comment or quoted id the chunk ends in is not reported, and
+ * getResumeOffset tells where parsing has to continue.
+ */
+public class DotParser {
+
+    /**
+     * Receives the nodes and edges read by a DotParser.
+     */
+    public interface EdgeHandler {
+        /**
+         * Called for a node statement that declares a node without an edge.
+         *
+         * @param name the name of the node
+         */
+        default void node(String name) {
+        }
+
+        /**
+         * Called for each edge that has the weight attribute.
+         *
+         * @param source the name of the edge's start node
+         * @param target the name of the edge's end node
+         * @param weight the value of the edge's weight attribute
+         */
+        void edge(String source, String target, double weight);
+    }
+
+    protected static final int BUFFER_SIZE = 1 << 16;
+    // the largest mantissa whose product or quotient with an exact power of
+    // ten is still correctly rounded
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+            1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    // kinds of token
+    private static final int END = 0;
+    private static final int ID = 1; // quoted, alphanumeric or numeric id
+    private static final int EDGE_OP = 2; // -> or --
+    private static final int OPEN_BRACKET = 3;
+    private static final int CLOSE_BRACKET = 4;
+    private static final int EQUALS = 5;
+    private static final int SEPARATOR = 6; // ;
+    private static final int OPEN_BRACE = 7;
+    private static final int CLOSE_BRACE = 8;
+    private static final int OTHER = 9; // commas and anything unknown
+
+    protected final byte[] weightAttribute;
+    protected final EdgeHandler handler;
+
+    private InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private long bytesRead = 0;
+    private int edgeCount = 0;
+
+    // the file offset of the stream's first byte, whether the stream is a
+    // chunk that may end inside a statement, whether it did end inside a
+    // comment or quoted id, the offset of the current token, and the offset
+    // to continue from after the most recent call to parse
+    private long offset = 0;
+    private boolean partial = false;
+    private boolean truncated = false;
+    private long tokenStart = 0;
+    private long resumeOffset = 0;
+
+    // the weight from edge attribute statements of each enclosing pair of
+    // braces, or NaN where none applies, innermost at depth
+    private double[] scopeWeights = new double[16];
+    private int depth = 0;
+
+    // the bytes of the current id, unescaped, and whether it was quoted
+    private byte[] token = new byte[256];
+    private int tokenLength = 0;
+    private boolean tokenQuoted = false;
+    // the byte of the last OTHER token
+    private int otherByte = 0;
+
+    // distinct names by the hash of their bytes: names[i] decodes nameBytes[i]
+    private byte[][] nameBytes = new byte[1024][];
+    private String[] names = new String[1024];
+    private int[] nameHashes = new int[1024];
+    private int nameCount = 0;
+
+    /**
+     * Creates a parser that reports edges weighted by the provided attribute.
+     *
+     * @param weightAttribute the name of the attribute holding edge weights,
+     *                        such as seconds
+     * @param handler         receives the nodes and edges that are read
+     */
+    public DotParser(String weightAttribute, EdgeHandler handler) {
+        this.weightAttribute = weightAttribute.getBytes(StandardCharsets.UTF_8);
+        this.handler = handler;
+    }
+
+    /**
+     * Reads a whole DOT graph from a stream, calling the handler for each
+     * node and edge. The stream is not closed.
+     *
+     * @param in the stream to read from
+     * @return the number of edges passed to the handler
+     * @throws IOException              if the stream cannot be read
+     * @throws IllegalArgumentException if a weight attribute is not an
+     *                                  unsigned decimal number, or the graph
+     *                                  uses syntax this parser does not
+     *                                  support
+     */
+    public int parse(InputStream in) throws IOException {
+        return parse(in, 0, null, false);
+    }
+
+    /**
+     * Reads a DOT graph, or a chunk of one, from a stream, calling the handler
+     * for each node and edge. The stream is not closed.
+     *
+     * @param in        the stream to read from
+     * @param offset    the offset in the file of the stream's first byte
+     * @param enclosing the edge weights of the braces enclosing the start of
+     *                  the stream, as returned by getScopeWeights, or null at
+     *                  the start of a file
+     * @param partial   true if the stream may end inside a statement, which
+     *                  is then left for the next call to parse
+     * @return the number of edges passed to the handler
+     * @throws IOException              if the stream cannot be read
+     * @throws IllegalArgumentException if a weight attribute is not an
+     *                                  unsigned decimal number, or the graph
+     *                                  uses syntax this parser does not
+     *                                  support
+     */
+    protected int parse(InputStream in, long offset, double[] enclosing, boolean partial)
+            throws IOException {
+        this.in = in;
+        this.offset = offset;
+        this.partial = partial;
+        truncated = false;
+        position = 0;
+        limit = 0;
+        bytesRead = 0;
+        edgeCount = 0;
+        if (enclosing == null) {
+            depth = 0;
+            scopeWeights[0] = Double.NaN;
+        } else {
+            depth = enclosing.length - 1;
+            scopeWeights = java.util.Arrays.copyOf(enclosing, Math.max(16, 2 * enclosing.length));
+        }
+        List<String> chain = new ArrayList<>();
+        int kind = nextToken();
+        while (kind != END) {
+            if (kind == SEPARATOR) {
+                kind = nextToken();
+                continue;
+            }
+            if (kind == OPEN_BRACE || kind == CLOSE_BRACE) {
+                if (kind == OPEN_BRACE)
+                    openScope();
+                else
+                    closeScope();
+                kind = nextToken();
+                continue;
+            }
+            if (kind != ID)
+                throw new IllegalArgumentException("unexpected " + describe(kind) + " at the start of a statement");
+            // a statement starting with an id: a node, an edge chain, an
+            // assignment, or a keyword
+            long statementStart = tokenStart;
+            boolean keyword = !tokenQuoted && isKeyword();
+            boolean edgeDefaults = keyword && tokenEqualsIgnoreCase("edge");
+            boolean named = keyword && !edgeDefaults && !tokenEqualsIgnoreCase("node");
+            chain.clear();
+            chain.add(keyword ? null : tokenString());
+            kind = nextToken();
+            // the name of a graph or subgraph, as in digraph campus {, unless
+            // it is the next keyword, as in strict digraph
+            if (named && kind == ID && (tokenQuoted || !isKeyword()))
+                kind = nextToken();
+            while (kind == EDGE_OP) {
+                kind = nextToken();
+                if (kind != ID) {
+                    if (kind == END && partial)
+                        break;
+                    throw new IllegalArgumentException("unexpected " + describe(kind)
+                            + " after an edge operator; edges to subgraphs are not supported");
+                }
+                chain.add(tokenString());
+                kind = nextToken();
+            }
+            boolean assignment = kind == EQUALS;
+            if (assignment) {
+                // a graph attribute such as rankdir=LR
+                kind = nextToken();
+                if (kind == ID)
+                    kind = nextToken();
+                else if (kind != END || !partial)
+                    throw new IllegalArgumentException("an attribute assignment is missing its value");
+            }
+            double weight = Double.NaN;
+            while (kind == OPEN_BRACKET) {
+                double listWeight = parseAttributes();
+                if (!Double.isNaN(listWeight))
+                    weight = listWeight;
+                kind = nextToken();
+            }
+            if (kind == END && partial) {
+                // the statement may go on in the next chunk
+                resumeOffset = statementStart;
+                return edgeCount;
+            }
+            if (keyword) {
+                if (edgeDefaults && !Double.isNaN(weight))
+                    scopeWeights[depth] = weight;
+                continue;
+            }
+            if (assignment)
+                continue;
+            if (Double.isNaN(weight))
+                weight = scopeWeights[depth];
+            if (chain.size() == 1)
+                handler.node(chain.get(0));
+            else if (!Double.isNaN(weight))
+                for (int i = 1; i < chain.size(); i++) {
+                    handler.edge(chain.get(i - 1), chain.get(i), weight);
+                    edgeCount++;
+                }
+        }
+        resumeOffset = truncated ? tokenStart : offset + bytesRead;
+        return edgeCount;
+    }
+
+    /**
+     * Returns the number of bytes read by the most recent call to parse.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the file offset that the most recent call to parse stopped
+     * at: the start of the statement, comment or quoted id a partial stream
+     * ended inside, or else the end of the stream.
+     *
+     * @return the offset of the first byte not parsed
+     */
+    protected long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    /**
+     * Returns the edge weights set by edge attribute statements in the braces
+     * that were open where the most recent call to parse stopped, outermost
+     * first, with NaN where no weight was set.
+     *
+     * @return the weights for parsing the rest of the file
+     */
+    protected double[] getScopeWeights() {
+        return java.util.Arrays.copyOf(scopeWeights, depth + 1);
+    }
+
+    /**
+     * Returns the number of distinct node names read so far.
+     *
+     * @return the number of names decoded
+     */
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    // reads the attributes up to the closing bracket, returning the value of
+    // the weight attribute, or NaN if the list does not have it
+    private double parseAttributes() throws IOException {
+        double weight = Double.NaN;
+        int kind = nextToken();
+        while (kind != CLOSE_BRACKET && kind != END) {
+            if (kind != ID) {
+                kind = nextToken();
+                continue;
+            }
+            boolean isWeight = tokenEquals(weightAttribute);
+            kind = nextToken();
+            if (kind != EQUALS)
+                continue;
+            kind = nextToken();
+            if (kind != ID) {
+                // a weight such as +5 starts with a byte that is not part of an id
+                if (isWeight && (kind != END || !partial))
+                    throw new IllegalArgumentException("unexpected " + describe(kind) + " as a weight");
+                continue;
+            }
+            if (isWeight)
+                weight = parseNumber();
+            kind = nextToken();
+        }
+        return weight;
+    }
+
+    // enters a pair of braces, which inherits the enclosing edge weight
+    private void openScope() {
+        if (++depth == scopeWeights.length)
+            scopeWeights = java.util.Arrays.copyOf(scopeWeights, depth * 2);
+        scopeWeights[depth] = scopeWeights[depth - 1];
+    }
+
+    // leaves a pair of braces, discarding its edge weight; a stray closing
+    // brace only clears the outermost weight
+    private void closeScope() {
+        if (depth > 0)
+            depth--;
+        else
+            scopeWeights[0] = Double.NaN;
+    }
+
+    private String describe(int kind) {
+        switch (kind) {
+            case END:
+                return "end of input";
+            case EDGE_OP:
+                return "edge operator";
+            case OPEN_BRACKET:
+                return "'['";
+            case CLOSE_BRACKET:
+                return "']'";
+            case EQUALS:
+                return "'='";
+            case SEPARATOR:
+                return "';'";
+            case OPEN_BRACE:
+                return "'{'";
+            case CLOSE_BRACE:
+                return "'}'";
+            default:
+                return "'" + (char) otherByte + "'";
+        }
+    }
+
+    /**
+     * Reads the next token, skipping white space, line breaks and comments.
+     */
+    private int nextToken() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n')
+                continue;
+            if (c == -1)
+                return END;
+            tokenStart = offset + bytesRead - limit + position - 1;
+            switch (c) {
+                case ';':
+                    return SEPARATOR;
+                case '{':
+                    return OPEN_BRACE;
+                case '}':
+                    return CLOSE_BRACE;
+                case '[':
+                    return OPEN_BRACKET;
+                case ']':
+                    return CLOSE_BRACKET;
+                case '=':
+                    return EQUALS;
+                case '#':
+                    skipLine();
+                    continue;
+                case '"':
+                    readQuoted();
+                    return truncated ? END : ID;
+                case '/': {
+                    int next = peek();
+                    if (next == '/') {
+                        skipLine();
+                        continue;
+                    }
+                    if (next == '*') {
+                        read();
+                        skipBlockComment();
+                        if (truncated)
+                            return END;
+                        continue;
+                    }
+                    otherByte = c;
+                    return OTHER;
+                }
+                case '-': {
+                    int next = peek();
+                    if (next == '>' || next == '-') {
+                        read();
+                        return EDGE_OP;
+                    }
+                    readUnquoted(c);
+                    return ID;
+                }
+                default:
+                    if (isIdByte(c) || c == '.') {
+                        readUnquoted(c);
+                        return ID;
+                    }
+                    otherByte = c;
+                    return OTHER;
+            }
+        }
+    }
+
+    // reads a quoted id whose opening quote was read, handling \" escapes
+    private void readQuoted() throws IOException {
+        tokenLength = 0;
+        tokenQuoted = true;
+        int c;
+        while ((c = read()) != '"') {
+            if (c == -1) {
+                if (!partial)
+                    throw new IllegalArgumentException("unterminated quoted id");
+                truncated = true;
+                return;
+            }
+            if (c == '\\') {
+                int next = read();
+                if (next == '"') {
+                    c = next;
+                } else if (next == '\n') {
+                    continue; // a line continuation
+                } else {
+                    append(c);
+                    c = next;
+                }
+            }
+            append(c);
+        }
+    }
+
+    // reads an alphanumeric or numeric id starting with first
+    private void readUnquoted(int first) throws IOException {
+        tokenLength = 0;
+        tokenQuoted = false;
+        append(first);
+        int c;
+        while ((c = peek()) != -1 && (isIdByte(c) || c == '.' || (c == '-' && isExponent()))) {
+            append(c);
+            read();
+        }
+    }
+
+    // true if the last byte of the current id starts an exponent, so that a
+    // following '-' belongs to a number such as 1e-3 rather than an edge
+    private boolean isExponent() {
+        byte last = token[tokenLength - 1];
+        byte first = token[0] == '-' && tokenLength > 1 ? token[1] : token[0];
+        return (last == 'e' || last == 'E') && (first >= '0' && first <= '9' || first == '.');
+    }
+
+    private static boolean isIdByte(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'
+                || c >= 0x80;
+    }
+
+    private boolean isKeyword() {
+        return tokenEqualsIgnoreCase("graph") || tokenEqualsIgnoreCase("node")
+                || tokenEqualsIgnoreCase("edge") || tokenEqualsIgnoreCase("digraph")
+                || tokenEqualsIgnoreCase("subgraph") || tokenEqualsIgnoreCase("strict");
+    }
+
+    private void append(int c) {
+        if (tokenLength == token.length)
+            token = java.util.Arrays.copyOf(token, token.length * 2);
+        token[tokenLength++] = (byte) c;
+    }
+
+    private boolean tokenEquals(byte[] other) {
+        return java.util.Arrays.equals(token, 0, tokenLength, other, 0, other.length);
+    }
+
+    private boolean tokenEqualsIgnoreCase(String keyword) {
+        if (tokenLength != keyword.length())
+            return false;
+        for (int i = 0; i < tokenLength; i++)
+            if ((token[i] | 0x20) != keyword.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the String for the current id, decoding it only the first time
+     * these bytes are read.
+     */
+    private String tokenString() {
+        int hash = 1;
+        for (int i = 0; i < tokenLength; i++)
+            hash = 31 * hash + token[i];
+        hash ^= hash >>> 16;
+        int mask = names.length - 1;
+        int slot = hash & mask;
+        while (names[slot] != null) {
+            if (nameHashes[slot] == hash && tokenEquals(nameBytes[slot]))
+                return names[slot];
+            slot = (slot + 1) & mask;
+        }
+        String name = new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+        names[slot] = name;
+        nameBytes[slot] = java.util.Arrays.copyOf(token, tokenLength);
+        nameHashes[slot] = hash;
+        if (++nameCount > names.length / 2)
+            growNames();
+        return name;
+    }
+
+    private void growNames() {
+        byte[][] oldBytes = nameBytes;
+        String[] oldNames = names;
+        int[] oldHashes = nameHashes;
+        nameBytes = new byte[oldNames.length * 2][];
+        names = new String[oldNames.length * 2];
+        nameHashes = new int[oldNames.length * 2];
+        int mask = names.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] == null)
+                continue;
+            int slot = oldHashes[i] & mask;
+            while (names[slot] != null)
+                slot = (slot + 1) & mask;
+            names[slot] = oldNames[i];
+            nameBytes[slot] = oldBytes[i];
+            nameHashes[slot] = oldHashes[i];
+        }
+    }
+
+    /**
+     * Converts the current id to a weight. Like the pattern Backend matched
+     * edges with before, only unsigned decimals such as 12, 0.5 or .5 are
+     * accepted; signs, exponents, type suffixes, NaN, Infinity and values too
+     * large to be finite are rejected. Decimals with at most 15 or so
+     * significant digits are computed exactly from their digits and a power
+     * of ten; longer ones fall back to Double.parseDouble so that every weight
+     * is rounded exactly as before.
+     */
+    private double parseNumber() {
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+        boolean exact = true;
+        for (int i = 0; i < tokenLength; i++) {
+            byte c = token[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    exact = false;
+                    continue;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint)
+                    exponent--;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                throw invalidWeight("is not an unsigned decimal number");
+            }
+        }
+        if (digits == 0)
+            throw invalidWeight("is not an unsigned decimal number");
+        if (!exact || -exponent >= POWERS_OF_TEN.length)
+            return parseSlowly();
+        double value = mantissa;
+        if (exponent < 0)
+            value /= POWERS_OF_TEN[-exponent];
+        return value;
+    }
+
+    private double parseSlowly() {
+        double value = Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+        if (Double.isInfinite(value))
+            throw invalidWeight("is too large");
+        return value;
+    }
+
+    private IllegalArgumentException invalidWeight(String problem) {
+        return new IllegalArgumentException(
+                "weight " + new String(token, 0, tokenLength, StandardCharsets.UTF_8) + " " + problem);
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '\n')
+            ;
+    }
+
+    private void skipBlockComment() throws IOException {
+        int c;
+        int previous = 0;
+        while ((c = read()) != -1) {
+            if (previous == '*' && c == '/')
+                return;
+            previous = c;
+        }
+        truncated = partial;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0)
+            return false;
+        position = 0;
+        limit = n;
+        bytesRead += n;
+        return true;
+    }
+
+}
@@ -1,11 +1,20 @@
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javafx.application.Application;
+import javafx.concurrent.Task;
+import javafx.geometry.Side;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
@@ -26,11 +35,28 @@ public class Frontend extends Application implements FrontendInterface {
     Label path2 = new Label("Results List (with travel times):\n\t");
     Label aboutText = new Label("shortestpath");
 
+    // The most locations suggested below a location field at once
+    static final int MAX_SUGGESTIONS = 8;
+
+    // Spins while a search runs, filling up as the search settles nodes
+    ProgressIndicator searchProgress = new ProgressIndicator();
+
     boolean showTravelTimes = false;
     boolean useViaLocation = false;
 
+    // The search whose route will be displayed, or null when no search is running
+    Task<Route<String>> currentSearch = null;
+
     private static Backend back;
 
+    // Searches run one at a time on a background thread, so the GUI keeps responding during long
+    // searches; a daemon thread does not keep the application running after the window closes
+    private static final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "route-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public static void setBackend(Backend back) {
         Frontend.back = back;
     }
@@ -69,6 +95,7 @@ public class Frontend extends Application implements FrontendInterface {
         srcField.setLayoutX(150);
         srcField.setLayoutY(16);
         parent.getChildren().add(srcField);
+        attachLocationSuggestions(srcField);
 
         Label dstLabel = new Label("Path End Selector: ");
         dstLabel.setId("dstLabelId");
@@ -81,6 +108,7 @@ public class Frontend extends Application implements FrontendInterface {
         dstField.setLayoutX(150);
         dstField.setLayoutY(48);
         parent.getChildren().add(dstField);
+        attachLocationSuggestions(dstField);
 
         find = new Button("Submit/Find Button");
         find.setId("findId");
@@ -93,6 +121,13 @@ public class Frontend extends Application implements FrontendInterface {
         reset.setLayoutX(350);
         reset.setLayoutY(80);
         parent.getChildren().add(reset);
+
+        searchProgress.setId("searchProgressId");
+        searchProgress.setLayoutX(420);
+        searchProgress.setLayoutY(78);
+        searchProgress.setPrefSize(28, 28);
+        searchProgress.setVisible(false);
+        parent.getChildren().add(searchProgress);
     }
 
     @Override
@@ -110,65 +145,16 @@ public class Frontend extends Application implements FrontendInterface {
 
         // Click action for the find button
         find.setOnAction(e -> {
-            // If check useViaLocation is false, find shortest path without via location
-            if (useViaLocation == false) {
-                String startLocation = srcField.getText();
-                String endLocation = dstField.getText();
-
-                path = back.findShortestPath(startLocation, endLocation);
-                times = back.getTravelTimesOnPath(startLocation, endLocation);
-                
-                System.out.println("Path: " + path);
-                System.out.println("Times: " + times);
-
-                // Display path in GUI
-                path1.setText("Results List: \n\t" + String.join("\n\t", path));
-
-                // If check showTravelTimes is true, display travel times
-                if (showTravelTimes) {
-                    path2.setText("Results List (with travel times):\n\t");
-                    for (int i = 0; i < path.size(); i++) {
-                        path2.setText(path2.getText() + path.get(i) + "\n\t");
-                        if (i < path.size() - 1) {
-                            path2.setText(path2.getText() + " -(" + times.get(i) + "sec)->");
-                        }
-                    }
-                    // Display total time in GUI
-                    path2.setText(path2.getText() + "\n\tTotal time: " + times.stream().mapToDouble(Double::doubleValue).sum() + "sec");
-                }
-            }
+            String startLocation = srcField.getText();
+            String endLocation = dstField.getText();
             // If check useViaLocation is true, find shortest path with via location
-            else {
-                String startLocation = srcField.getText();
-                String endLocation = dstField.getText();
-                String viaLocation = viaField.getText();
-
-                path = back.findShortestPathVia(startLocation, viaLocation, endLocation);
-                times = back.getTravelTimesOnPathVia(startLocation, viaLocation, endLocation);
-                
-                System.out.println("Path: " + path);
-                System.out.println("Times: " + times);
-
-                // Display path in GUI
-                path1.setText("Results List: \n\t" + String.join("\n\t", path));
-
-                // If check showTravelTimes is true, display travel times
-                if (showTravelTimes) {
-                    path2.setText("Results List (with travel times):\n\t");
-                    for (int i = 0; i < path.size(); i++) {
-                        path2.setText(path2.getText() + path.get(i) + "\n\t");
-                        if (i < path.size() - 1) {
-                            path2.setText(path2.getText() + " -(" + times.get(i) + "sec)->");
-                        }
-                    }
-                    // Display total time in GUI
-                    path2.setText(path2.getText() + "\n\tTotal time: " + times.stream().mapToDouble(Double::doubleValue).sum() + "sec");
-                }
-            }
+            String viaLocation = useViaLocation ? viaField.getText() : null;
+            startSearch(startLocation, viaLocation, endLocation);
         });
 
         // Click action for the reset button to clear results
         reset.setOnAction(e -> {
+            cancelSearch(); // Stop a search that would overwrite the cleared results
             srcField.clear(); // Clear the start location
             dstField.clear(); // Clear the end location
             viaField.clear(); // Clear the via location
@@ -177,6 +163,198 @@ public class Frontend extends Application implements FrontendInterface {
         });
     }
 
+    /**
+     * Suggests the locations whose names start with a field's text below the field while the user
+     * types, and fills in the suggestion the user picks.
+     * @param field the text field a location name is typed into
+     */
+    void attachLocationSuggestions(TextField field) {
+        ContextMenu suggestions = new ContextMenu();
+        field.textProperty().addListener((observable, oldText, newText) -> {
+            // Only suggest while the user is typing, not when the text is set or cleared by the GUI
+            List<String> matches = back == null || !field.isFocused() || newText == null || newText.isEmpty()
+                    ? List.of() : back.suggestLocations(newText, MAX_SUGGESTIONS);
+            // Nothing is left to suggest once a whole location name has been typed
+            if (matches.isEmpty() || matches.contains(newText)) {
+                suggestions.hide();
+                return;
+            }
+            List<MenuItem> items = new LinkedList<>();
+            for (String location : matches) {
+                MenuItem item = new MenuItem(location);
+                item.setMnemonicParsing(false);
+                item.setOnAction(e -> {
+                    field.setText(location);
+                    field.positionCaret(location.length());
+                });
+                items.add(item);
+            }
+            suggestions.getItems().setAll(items);
+            if (!suggestions.isShowing())
+                suggestions.show(field, Side.BOTTOM, 0, 0);
+        });
+        // Hide the suggestions when the user moves on to another control
+        field.focusedProperty().addListener((observable, wasFocused, isFocused) -> {
+            if (!isFocused)
+                suggestions.hide();
+        });
+    }
+
+    /**
+     * Starts searching for a route on the background thread, cancelling the search still running
+     * for an earlier click, and displays the route on the JavaFX thread once it is found.
+     * @param startLocation the start location of the route
+     * @param viaLocation a location the route should lead through, or null for none
+     * @param endLocation the end location of the route
+     */
+    void startSearch(String startLocation, String viaLocation, String endLocation) {
+        cancelSearch();
+        DijkstraGraph<String, Double> graph = back == null ? null : back.graph;
+        int nodeCount = graph == null ? 1 : Math.max(1, graph.getNodeCount());
+        // Searches only report every SearchWorkspace.MONITOR_INTERVAL settled nodes, and contraction
+        // hierarchy queries, which App uses, settle fewer nodes than that and finish in well under a
+        // millisecond, so the progress indicator is only shown for the other search modes
+        boolean showProgress = graph != null
+                && graph.getSearchMode() != DijkstraGraph.SearchMode.CONTRACTION_HIERARCHY;
+        Task<Route<String>> search = new Task<Route<String>>() {
+            @Override
+            protected Route<String> call() {
+                if (back == null)
+                    throw new IllegalStateException("no map data is loaded");
+                // Report the settled nodes as progress, and stop soon after the task is cancelled.
+                // A superseded contraction hierarchy query runs to the end before its result is
+                // ignored
+                SearchWorkspace.setMonitor(settled -> {
+                    if (isCancelled())
+                        throw new CancellationException();
+                    updateProgress(Math.min(settled, nodeCount), nodeCount);
+                });
+                try {
+                    // Search between the locations the typed names most likely mean, so typos do
+                    // not lead to empty results
+                    String start = resolveLocation(startLocation);
+                    String end = resolveLocation(endLocation);
+                    if (viaLocation == null)
+                        return back.findRoute(start, end);
+                    // Find the path and its travel times with a single search per leg
+                    return back.findRouteVia(start, resolveLocation(viaLocation), end);
+                } finally {
+                    SearchWorkspace.setMonitor(null);
+                }
+            }
+        };
+        // These handlers run on the JavaFX thread, and ignore searches that were superseded
+        search.setOnSucceeded(e -> {
+            if (search == currentSearch) {
+                finishSearch();
+                showRoute(search.getValue());
+            }
+        });
+        search.setOnFailed(e -> {
+            if (search == currentSearch) {
+                finishSearch();
+                path1.setText("Results List: \n\tSearch failed: " + search.getException().getMessage());
+            }
+        });
+        currentSearch = search;
+        if (showProgress) {
+            searchProgress.progressProperty().bind(search.progressProperty());
+            searchProgress.setVisible(true);
+        }
+        searchExecutor.execute(search);
+    }
+
+    /**
+     * Returns the location that a typed name most likely means, or the name itself if no location
+     * is close to it.
+     * @param name the name typed for a location
+     * @return the location to search for
+     */
+    static String resolveLocation(String name) {
+        String location = back.resolveLocation(name);
+        return location == null ? name : location;
+    }
+
+    /**
+     * Cancels the running search, if there is one, so that its route is never displayed.
+     */
+    void cancelSearch() {
+        if (currentSearch != null) {
+            currentSearch.cancel();
+            finishSearch();
+        }
+    }
+
+    /**
+     * Returns true while a search started from the GUI has not been displayed or cancelled.
+     * @return whether a search is running
+     */
+    boolean isSearching() {
+        return currentSearch != null;
+    }
+
+    // hides the progress of the current search once it has finished or been cancelled
+    private void finishSearch() {
+        currentSearch = null;
+        searchProgress.progressProperty().unbind();
+        searchProgress.setVisible(false);
+    }
+
+    /**
+     * Displays a route in the result labels, with its travel times if they are shown.
+     * @param route the route to display
+     */
+    void showRoute(Route<String> route) {
+        path = route.getNodes();
+        times = route.getTravelTimes();
+
+        // Display path in GUI, setting each label's text once so that long routes are laid out once
+        path1.setText(formatPath(path));
+
+        // If check showTravelTimes is true, display travel times
+        if (showTravelTimes) {
+            path2.setText(formatTravelTimes(path, times));
+        }
+    }
+
+    /**
+     * Formats the locations along a path for the results list, one per line.
+     * @param path the locations along the path
+     * @return the text of the results list
+     */
+    static String formatPath(List<String> path) {
+        StringBuilder text = new StringBuilder("Results List: \n\t");
+        // Iterate instead of indexing, since path may be a linked list
+        Iterator<String> locations = path.iterator();
+        while (locations.hasNext()) {
+            text.append(locations.next());
+            if (locations.hasNext())
+                text.append("\n\t");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Formats the locations along a path with the travel time of each step between them, followed
+     * by the total travel time.
+     * @param path the locations along the path
+     * @param times the travel time of each step, one fewer than the locations
+     * @return the text of the results list with travel times
+     */
+    static String formatTravelTimes(List<String> path, List<Double> times) {
+        StringBuilder text = new StringBuilder("Results List (with travel times):\n\t");
+        Iterator<Double> steps = times.iterator();
+        Iterator<String> locations = path.iterator();
+        while (locations.hasNext()) {
+            text.append(locations.next()).append("\n\t");
+            if (locations.hasNext())
+                text.append(" -(").append(steps.next()).append("sec)->");
+        }
+        // Display total time in GUI
+        text.append("\n\tTotal time: ").append(times.stream().mapToDouble(Double::doubleValue).sum()).append("sec");
+        return text.toString();
+    }
+
     @Override
     public void createAdditionalFeatureControls(Pane parent) {
         // Additional controls apart from the shortest path
@@ -213,6 +391,7 @@ public class Frontend extends Application implements FrontendInterface {
         viaField.setLayoutX(580);
         viaField.setLayoutY(16);
         parent.getChildren().add(viaField);
+        attachLocationSuggestions(viaField);
 
         // Checkbox to control display of Via location
         CheckBox viaBox = new CheckBox("Use Above Location in Path");
@@ -5,10 +5,18 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.testfx.framework.junit5.ApplicationTest;
+import org.testfx.util.WaitForAsyncUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javafx.scene.layout.Pane;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TextField;
 
 public class FrontendDeveloperTests extends ApplicationTest {
 
@@ -22,6 +30,17 @@ public class FrontendDeveloperTests extends ApplicationTest {
         ApplicationTest.launch(Frontend.class);
     }
 
+    /**
+     * Clicks the find button and waits until the search it starts in the background has finished
+     * and its results are displayed.
+     */
+    private void clickFindAndWait() throws TimeoutException {
+        clickOn("#findId");
+        ProgressIndicator progress = lookup("#searchProgressId").query();
+        WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, () -> !progress.isVisible());
+        WaitForAsyncUtils.waitForFxEvents();
+    }
+
     /**
      * This test method verifies the existence and correctness of buttons and labels
      * in the user interface.
@@ -174,7 +193,7 @@ public class FrontendDeveloperTests extends ApplicationTest {
      * results list is empty.
      */
     @Test
-    public void testShortestPathSelectionIntegration() {
+    public void testShortestPathSelectionIntegration() throws TimeoutException {
         Pane testPane = new Pane();
         Frontend frontend = new Frontend();
         frontend.createAllControls(testPane);
@@ -201,7 +220,7 @@ public class FrontendDeveloperTests extends ApplicationTest {
         // Print the shortest path (for debugging)
         System.out.println("Shortest path: " + shortestPath);
 
-        clickOn("#findId");
+        clickFindAndWait();
         assertEquals("Results List: \n\tUnion South\n\tAtmospheric, Oceanic and Space Sciences", path1.getText());
 
         clickOn("#resetId");
@@ -216,7 +235,7 @@ public class FrontendDeveloperTests extends ApplicationTest {
      * and travel times after finding the path and resetting the results.
      */
     @Test
-    public void testGetTravelTimesOnPathIntegration() {
+    public void testGetTravelTimesOnPathIntegration() throws TimeoutException {
         Pane testPane = new Pane();
         Frontend frontend = new Frontend();
         frontend.createAllControls(testPane);
@@ -246,7 +265,7 @@ public class FrontendDeveloperTests extends ApplicationTest {
 
         clickOn("#travelTimesBoxId");
 
-        clickOn("#findId");
+        clickFindAndWait();
         assertEquals("Results List: \n\tUnion South\n\tAtmospheric, Oceanic and Space Sciences", path1.getText());
         assertEquals(
                 "Results List (with travel times):\n\tUnion South\n\t -(182.20000000000002sec)->Atmospheric, Oceanic and Space Sciences\n\t"
@@ -315,4 +334,68 @@ public class FrontendDeveloperTests extends ApplicationTest {
                 +
                 "Oceanic and Space Sciences]", pathVia.toString());
     }
+
+    /**
+     * Test case to verify that a route with 10,000 hops is shown with each result label's text set
+     * once, from text built in one pass, so the labels are laid out once per route rather than once
+     * per hop.
+     */
+    @Test
+    public void testRenderLongRoute() {
+        Pane testPane = new Pane();
+        Frontend frontend = new Frontend();
+        frontend.createAllControls(testPane);
+        frontend.showTravelTimes = true;
+        int[] pathChanges = new int[1];
+        int[] timeChanges = new int[1];
+        frontend.path1.textProperty().addListener((observable, oldText, newText) -> pathChanges[0]++);
+        frontend.path2.textProperty().addListener((observable, oldText, newText) -> timeChanges[0]++);
+
+        showRoute(frontend, 10000);
+
+        assertEquals(1, pathChanges[0]);
+        assertEquals(1, timeChanges[0]);
+        String path1 = frontend.path1.getText();
+        String path2 = frontend.path2.getText();
+        assertTrue(path1.startsWith("Results List: \n\tLocation 0\n\tLocation 1\n\t"));
+        assertTrue(path1.endsWith("\n\tLocation 10000"));
+        assertEquals(10002, path1.split("\n").length);
+        assertTrue(path2.contains("Location 9999\n\t -(1.5sec)->Location 10000\n\t"));
+        assertTrue(path2.endsWith("\n\tTotal time: 15000.0sec"));
+    }
+
+    /**
+     * Shows a route through hops + 1 locations on the JavaFX thread, like the results of a search.
+     */
+    private void showRoute(Frontend frontend, int hops) {
+        List<String> nodes = new ArrayList<>();
+        List<Double> travelTimes = new ArrayList<>();
+        for (int i = 0; i <= hops; i++) {
+            nodes.add("Location " + i);
+            if (i > 0)
+                travelTimes.add(1.5);
+        }
+        Route<String> route = new Route<>(nodes, travelTimes, 1.5 * hops, 0);
+        interact(() -> frontend.showRoute(route));
+    }
+
+    /**
+     * Test case to verify that typing the start of a location name in a location field suggests
+     * the matching locations, ignoring case, and that clicking a suggestion fills in its name.
+     */
+    @Test
+    public void testLocationSuggestions() {
+        TextField srcField = lookup("#srcFieldId").query();
+
+        clickOn("#srcFieldId");
+        write("union so");
+        clickOn("Union South");
+        assertEquals("Union South", srcField.getText());
+
+        // A whole location name needs no suggestions, so the next field can be clicked directly
+        clickOn("#dstFieldId");
+        write("Atmospheric, Oceanic and Space Sciences");
+        TextField dstField = lookup("#dstFieldId").query();
+        assertEquals("Atmospheric, Oceanic and Space Sciences", dstField.getText());
+    }
 }
@@ -0,0 +1,269 @@
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable snapshot of a BaseGraph stored in compressed sparse row (CSR)
+ * form. Every node is identified by an int index, the edges leaving node v
+ * are stored at positions edgesBegin(v) through edgesEnd(v)-1 of the targets
+ * and weights arrays, and no per-node or per-edge objects are allocated.
+ * The edges entering each node are stored the same way in a second, reverse
+ * set of arrays, so that searches can also run backward from a node.
+ * Indexes that are not used by any node have no data and no edges.
+ *
+ * Edge weights are stored either as doubles or, to halve their memory, as
+ * floats; weight and reverseWeight return them as doubles either way.
+ */
+public class FrozenGraph<NodeType> {
+
+    // node data by index, null for unused indexes
+    protected final Object[] nodeData;
+    // the edges leaving node v are stored from offsets[v] to offsets[v+1]-1
+    protected final int[] offsets;
+    // index of the successor node and weight of each edge; exactly one of
+    // weights and floatWeights is used, and the other is null
+    protected final int[] targets;
+    protected final double[] weights;
+    protected final float[] floatWeights;
+    // the edges entering node v are stored from reverseOffsets[v] to
+    // reverseOffsets[v+1]-1, with the index of each edge's predecessor node
+    protected final int[] reverseOffsets;
+    protected final int[] sources;
+    protected final double[] reverseWeights;
+    protected final float[] floatReverseWeights;
+
+    protected final int nodeCount;
+    // modCount of the graph this snapshot was compiled from
+    protected final int version;
+
+    // node indexes can be retrieved from this map by their unique data
+    protected OpenAddressingMap<NodeType, Integer> indexes;
+
+    /**
+     * Constructor for FrozenGraph, used by BaseGraph.freeze().
+     *
+     * @param nodeData  the data of each node by index, null for unused indexes
+     * @param nodeCount the number of non-null entries in nodeData
+     * @param offsets   the start of each node's edges, plus the total edge count
+     * @param targets   the successor index of each edge
+     * @param weights   the weight of each edge
+     * @param reverseOffsets the start of each node's entering edges, plus the
+     *                       total edge count
+     * @param sources        the predecessor index of each entering edge
+     * @param reverseWeights the weight of each entering edge
+     * @param version   the modCount of the graph being frozen
+     */
+    protected FrozenGraph(Object[] nodeData, int nodeCount, int[] offsets,
+            int[] targets, double[] weights, int[] reverseOffsets, int[] sources,
+            double[] reverseWeights, int version) {
+        this(nodeData, nodeCount, offsets, targets, weights, null, reverseOffsets, sources,
+                reverseWeights, null, version);
+    }
+
+    /**
+     * Constructor for a FrozenGraph that stores its weights as floats, used by
+     * BaseGraph.freeze(true). The parameters are the same as those of the
+     * other constructor.
+     */
+    protected FrozenGraph(Object[] nodeData, int nodeCount, int[] offsets,
+            int[] targets, float[] weights, int[] reverseOffsets, int[] sources,
+            float[] reverseWeights, int version) {
+        this(nodeData, nodeCount, offsets, targets, null, weights, reverseOffsets, sources,
+                null, reverseWeights, version);
+    }
+
+    /**
+     * Constructor for subclasses that store their edges elsewhere and
+     * override every method that reads them.
+     *
+     * @param nodeData  the data of each node by index, null for unused indexes
+     * @param nodeCount the number of non-null entries in nodeData
+     * @param version   the modCount of the graph being frozen
+     */
+    protected FrozenGraph(Object[] nodeData, int nodeCount, int version) {
+        this(nodeData, nodeCount, null, null, null, null, null, null, null, null, version);
+    }
+
+    private FrozenGraph(Object[] nodeData, int nodeCount, int[] offsets, int[] targets,
+            double[] weights, float[] floatWeights, int[] reverseOffsets, int[] sources,
+            double[] reverseWeights, float[] floatReverseWeights, int version) {
+        this.nodeData = nodeData;
+        this.nodeCount = nodeCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.floatWeights = floatWeights;
+        this.reverseOffsets = reverseOffsets;
+        this.sources = sources;
+        this.reverseWeights = reverseWeights;
+        this.floatReverseWeights = floatReverseWeights;
+        this.version = version;
+        indexes = new OpenAddressingMap<>(nodeCount);
+        for (int i = 0; i < nodeData.length; i++)
+            if (nodeData[i] != null)
+                indexes.put(getData(i), i);
+    }
+
+    /**
+     * Return the index of the node containing the provided data.
+     *
+     * @param data the node contents to look for
+     * @return the index of that node, or -1 if no node contains data
+     */
+    public int indexOf(NodeType data) {
+        return indexes.getOrDefault(data, -1);
+    }
+
+    /**
+     * Return the data stored in the node with the provided index.
+     *
+     * @param index the index of the node
+     * @return the data stored in that node
+     * @throws NoSuchElementException if no node has that index
+     */
+    @SuppressWarnings("unchecked")
+    public NodeType getData(int index) {
+        if (index < 0 || index >= nodeData.length || nodeData[index] == null)
+            throw new NoSuchElementException("No node with index " + index);
+        return (NodeType) nodeData[index];
+    }
+
+    /**
+     * Return the number of node indexes, which is one more than the largest
+     * index in use. Arrays indexed by node should have this length.
+     *
+     * @return the number of node indexes
+     */
+    public int getIndexCount() {
+        return nodeData.length;
+    }
+
+    /**
+     * Return the number of nodes in this graph.
+     *
+     * @return the number of nodes in this graph
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Return the number of edges in this graph.
+     *
+     * @return the number of edges in this graph
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Return the modCount of the graph when this snapshot was taken.
+     *
+     * @return the version of the source graph
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the position of the first edge leaving a node.
+     *
+     * @param node the index of the node
+     * @return position of its first leaving edge
+     */
+    public int edgesBegin(int node) {
+        return offsets[node];
+    }
+
+    /**
+     * Return the position just after the last edge leaving a node.
+     *
+     * @param node the index of the node
+     * @return position after its last leaving edge
+     */
+    public int edgesEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    /**
+     * Return the index of the successor node of an edge.
+     *
+     * @param edge the position of the edge
+     * @return the index of the node that edge leads to
+     */
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * Return the weight of an edge.
+     *
+     * @param edge the position of the edge
+     * @return the weight of that edge
+     */
+    public double weight(int edge) {
+        return weights != null ? weights[edge] : floatWeights[edge];
+    }
+
+    /**
+     * Return the position of the first edge entering a node.
+     *
+     * @param node the index of the node
+     * @return position of its first entering edge
+     */
+    public int reverseEdgesBegin(int node) {
+        return reverseOffsets[node];
+    }
+
+    /**
+     * Return the position just after the last edge entering a node.
+     *
+     * @param node the index of the node
+     * @return position after its last entering edge
+     */
+    public int reverseEdgesEnd(int node) {
+        return reverseOffsets[node + 1];
+    }
+
+    /**
+     * Return the index of the predecessor node of an entering edge.
+     *
+     * @param edge the position of the entering edge
+     * @return the index of the node that edge leaves
+     */
+    public int source(int edge) {
+        return sources[edge];
+    }
+
+    /**
+     * Return the weight of an entering edge.
+     *
+     * @param edge the position of the entering edge
+     * @return the weight of that edge
+     */
+    public double reverseWeight(int edge) {
+        return reverseWeights != null ? reverseWeights[edge] : floatReverseWeights[edge];
+    }
+
+    /**
+     * Check whether this graph stores its edge weights as floats.
+     *
+     * @return true if weights are rounded to single precision
+     */
+    public boolean hasSinglePrecisionWeights() {
+        return weights == null;
+    }
+
+    /**
+     * Return the position of the edge from pred to succ.
+     *
+     * @param pred the index of the edge's predecessor node
+     * @param succ the index of the edge's successor node
+     * @return the position of that edge, or -1 if there is no such edge
+     */
+    public int findEdge(int pred, int succ) {
+        for (int e = offsets[pred]; e < offsets[pred + 1]; e++)
+            if (targets[e] == succ)
+                return e;
+        return -1;
+    }
+
+}
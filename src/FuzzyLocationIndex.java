@@ -0,0 +1,380 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable index that resolves loosely typed text, such as "helen white"
+ * or "memorial unoin", to the location names it most likely means. Text
+ * matches a name when every word of the text is within a few edits of some
+ * word of the name, where an edit inserts, deletes, replaces or swaps two
+ * neighboring characters. The last word of the text may also match the start
+ * of a name's word, so text can be resolved while it is still being typed.
+ *
+ * Names share most of their words, so the index resolves each word of the
+ * text against the much smaller vocabulary of distinct words first. It maps
+ * every bigram, two consecutive characters, of every word to the words
+ * containing it. An edit changes at most three bigrams of a word, so a word
+ * within k edits shares all but 3k of the typed word's bigrams, and only the
+ * words sharing that many are compared with it. The names to compare with
+ * the whole text are then the names containing a close word of the typed
+ * word whose close words are found in the fewest names.
+ */
+public class FuzzyLocationIndex {
+
+    // the names, and the ids of the words of each name in order
+    protected final String[] names;
+    protected final int[][] nameWords;
+    // the distinct words of all names, and for each word the ids of the names
+    // containing it in increasing order; element 0 of each list holds the
+    // number of ids that follow
+    protected final String[] vocabulary;
+    protected final int[][] wordNames;
+    // for each bigram, the ids of the words containing it, listed the same way
+    protected final LongHashMap<int[]> bigramWords;
+
+    /**
+     * Builds an index of names. Names are ranked in the order given when they
+     * match text equally well.
+     *
+     * @param names the names to index
+     */
+    public FuzzyLocationIndex(Collection<String> names) {
+        this.names = names.toArray(new String[0]);
+        this.nameWords = new int[this.names.length][];
+        // the ids of the words so far by their hashes, in an open addressing
+        // table holding id + 1, or 0 for an empty slot
+        int[] slots = new int[1024];
+        String[] words = new String[256];
+        int[][] postings = new int[256][];
+        int wordCount = 0;
+        for (int id = 0; id < this.names.length; id++) {
+            String[] split = wordsOf(this.names[id]);
+            nameWords[id] = new int[split.length];
+            for (int w = 0; w < split.length; w++) {
+                int mask = slots.length - 1;
+                int slot = slot(split[w], mask);
+                while (slots[slot] != 0 && !words[slots[slot] - 1].equals(split[w]))
+                    slot = (slot + 1) & mask;
+                int wordId = slots[slot] - 1;
+                if (wordId < 0) {
+                    wordId = wordCount++;
+                    if (wordId == words.length) {
+                        words = Arrays.copyOf(words, wordId * 2);
+                        postings = Arrays.copyOf(postings, wordId * 2);
+                    }
+                    words[wordId] = split[w];
+                    postings[wordId] = new int[] { 0, 0 };
+                    slots[slot] = wordId + 1;
+                    if (2 * wordCount > slots.length)
+                        slots = rehash(slots, words);
+                }
+                nameWords[id][w] = wordId;
+                postings[wordId] = append(postings[wordId], id);
+            }
+        }
+        this.vocabulary = Arrays.copyOf(words, wordCount);
+        this.wordNames = Arrays.copyOf(postings, wordCount);
+        this.bigramWords = new LongHashMap<>(1024);
+        for (int wordId = 0; wordId < vocabulary.length; wordId++) {
+            for (long bigram : bigramsOf(vocabulary[wordId], false)) {
+                int[] list = bigramWords.get(bigram);
+                int[] appended = append(list == null ? new int[] { 0 } : list, wordId);
+                if (appended != list)
+                    bigramWords.put(bigram, appended);
+            }
+        }
+    }
+
+    /**
+     * Returns the names that text most likely means, best match first. Names
+     * are ranked by the total number of edits between the words of text and
+     * the words they match, then by their number of words, so that a name
+     * with no words beyond those typed comes first.
+     *
+     * @param text  the loosely typed text
+     * @param limit the largest number of names to return
+     * @return up to limit names matching text, or an empty list if none do
+     */
+    public List<String> match(String text, int limit) {
+        String[] query = wordsOf(text);
+        if (query.length == 0 || limit <= 0)
+            return new ArrayList<>();
+
+        // find the close words of each typed word, and the typed word whose
+        // close words are in the fewest names
+        int[][][] close = new int[query.length][][];
+        int selective = -1;
+        long fewest = Long.MAX_VALUE;
+        for (int q = 0; q < query.length; q++) {
+            close[q] = closeWords(query[q], q == query.length - 1);
+            long count = 0;
+            for (int wordId : close[q][0])
+                count += wordNames[wordId][0];
+            if (count == 0)
+                return new ArrayList<>();
+            if (count < fewest) {
+                fewest = count;
+                selective = q;
+            }
+        }
+
+        // every matching name contains a close word of the selective word
+        int[] candidates = new int[(int) fewest];
+        int candidateCount = 0;
+        for (int wordId : close[selective][0]) {
+            int[] list = wordNames[wordId];
+            System.arraycopy(list, 1, candidates, candidateCount, list[0]);
+            candidateCount += list[0];
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+
+        List<int[]> matches = new ArrayList<>();
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates[i];
+            if (i > 0 && candidates[i - 1] == id)
+                continue;
+            int distance = distance(close, nameWords[id]);
+            if (distance >= 0)
+                matches.add(new int[] { distance, nameWords[id].length, id });
+        }
+
+        matches.sort(Comparator.<int[]>comparingInt(match -> match[0]).thenComparingInt(match -> match[1])
+                .thenComparingInt(match -> match[2]));
+        List<String> result = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++)
+            result.add(names[matches.get(i)[2]]);
+        return result;
+    }
+
+    /**
+     * Returns the name that text most likely means.
+     *
+     * @param text the loosely typed text
+     * @return the best matching name, or null if no name matches text
+     */
+    public String resolve(String text) {
+        List<String> best = match(text, 1);
+        return best.isEmpty() ? null : best.get(0);
+    }
+
+    /**
+     * Returns the number of indexed names.
+     *
+     * @return the number of names
+     */
+    public int getSize() {
+        return names.length;
+    }
+
+    /**
+     * Returns the number of distinct words in the indexed names.
+     *
+     * @return the number of words
+     */
+    public int getVocabularySize() {
+        return vocabulary.length;
+    }
+
+    /**
+     * Splits text into lower case words of letters and digits, dropping
+     * punctuation, so that "Helen C. White Hall" and "helen c white hall"
+     * have the same words.
+     */
+    protected static String[] wordsOf(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        String[] words = new String[4];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= lower.length(); ) {
+            int c = i < lower.length() ? lower.codePointAt(i) : ' ';
+            if (Character.isLetter(c) || isNumber(c)) {
+                if (start < 0)
+                    start = i;
+            } else if (start >= 0) {
+                if (count == words.length)
+                    words = Arrays.copyOf(words, count * 2);
+                words[count++] = lower.substring(start, i);
+                start = -1;
+            }
+            i += i < lower.length() ? Character.charCount(c) : 1;
+        }
+        return Arrays.copyOf(words, count);
+    }
+
+    // true for the code points of the Unicode number categories
+    private static boolean isNumber(int c) {
+        int type = Character.getType(c);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER
+                || type == Character.OTHER_NUMBER;
+    }
+
+    /**
+     * Returns the number of edits a word of the text may be away from a word
+     * of a matching name. Short words must match exactly, since one edit
+     * turns them into too many other words.
+     */
+    protected static int maxEdits(String word) {
+        if (word.length() <= 3)
+            return 0;
+        return word.length() <= 7 ? 1 : 2;
+    }
+
+    /**
+     * Finds the words of the vocabulary within maxEdits of a typed word, or
+     * starting with a word within maxEdits of it if prefix is true.
+     *
+     * @return the ids of the close words in increasing order, and the number
+     *         of edits to each of them
+     */
+    private int[][] closeWords(String word, boolean prefix) {
+        int bound = maxEdits(word);
+        long[] bigrams = bigramsOf(word, prefix);
+        // count the bigrams of word that each vocabulary word shares
+        int[] shared = new int[vocabulary.length];
+        int[] found = new int[64];
+        int foundCount = 0;
+        for (long bigram : bigrams) {
+            int[] list = bigramWords.get(bigram);
+            if (list == null)
+                continue;
+            for (int i = 1; i <= list[0]; i++) {
+                int wordId = list[i];
+                if (shared[wordId]++ == 0) {
+                    if (foundCount == found.length)
+                        found = Arrays.copyOf(found, foundCount * 2);
+                    found[foundCount++] = wordId;
+                }
+            }
+        }
+        // an edit changes at most three bigrams, so only the words sharing
+        // this many can be close enough
+        int needed = Math.max(1, bigrams.length - 3 * bound);
+        Arrays.sort(found, 0, foundCount);
+        int[] ids = new int[foundCount];
+        int[] distances = new int[foundCount];
+        int count = 0;
+        for (int i = 0; i < foundCount; i++) {
+            int wordId = found[i];
+            if (shared[wordId] < needed)
+                continue;
+            int distance = boundedDistance(word, vocabulary[wordId], bound, prefix);
+            if (distance <= bound) {
+                ids[count] = wordId;
+                distances[count++] = distance;
+            }
+        }
+        return new int[][] { Arrays.copyOf(ids, count), Arrays.copyOf(distances, count) };
+    }
+
+    /**
+     * Returns the total number of edits between each typed word and its
+     * closest word of a name, or -1 if some typed word has no close word in
+     * the name.
+     */
+    private static int distance(int[][][] close, int[] words) {
+        int total = 0;
+        for (int[][] typed : close) {
+            int best = Integer.MAX_VALUE;
+            for (int wordId : words) {
+                int at = Arrays.binarySearch(typed[0], wordId);
+                if (at >= 0)
+                    best = Math.min(best, typed[1][at]);
+            }
+            if (best == Integer.MAX_VALUE)
+                return -1;
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * Computes the optimal string alignment distance between a and b, the
+     * fewest insertions, deletions, replacements and swaps of neighboring
+     * characters that turn a into b, or into some prefix of b if prefix is
+     * true. Gives up as soon as the distance must exceed bound.
+     *
+     * @return the distance, or bound + 1 if it is more than bound
+     */
+    private static int boundedDistance(String a, String b, int bound, boolean prefix) {
+        int n = a.length();
+        int m = b.length();
+        if (!prefix && Math.abs(n - m) > bound)
+            return bound + 1;
+        // rows i - 2, i - 1 and i of the table of distances between prefixes
+        int[] before = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++)
+            previous[j] = j;
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    value = Math.min(value, before[j - 2] + 1);
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > bound)
+                return bound + 1;
+            int[] recycled = before;
+            before = previous;
+            previous = current;
+            current = recycled;
+        }
+        int distance = previous[m];
+        if (prefix)
+            for (int j = 0; j < m; j++)
+                distance = Math.min(distance, previous[j]);
+        return Math.min(distance, bound + 1);
+    }
+
+    // the distinct bigrams of a word padded with spaces, each packed into one
+    // non-negative key; a word being typed is padded only at its start, since
+    // it may be the start of a longer word
+    private static long[] bigramsOf(String word, boolean prefix) {
+        String padded = " " + word + (prefix ? "" : " ");
+        long[] bigrams = new long[padded.length() - 1];
+        for (int i = 0; i < bigrams.length; i++)
+            bigrams[i] = ((long) padded.charAt(i) << 16) | padded.charAt(i + 1);
+        return Arrays.stream(bigrams).distinct().toArray();
+    }
+
+    // the first slot to probe for a word in a table of mask + 1 slots
+    private static int slot(String word, int mask) {
+        int hash = word.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    // returns a table twice the size of slots holding the same word ids
+    private static int[] rehash(int[] slots, String[] words) {
+        int[] grown = new int[slots.length * 2];
+        int mask = grown.length - 1;
+        for (int entry : slots) {
+            if (entry == 0)
+                continue;
+            int slot = slot(words[entry - 1], mask);
+            while (grown[slot] != 0)
+                slot = (slot + 1) & mask;
+            grown[slot] = entry;
+        }
+        return grown;
+    }
+
+    // appends id to a list whose element 0 holds its number of ids, unless id
+    // is already its last id, and returns the list or its grown copy
+    private static int[] append(int[] list, int id) {
+        if (list[0] > 0 && list[list[0]] == id)
+            return list;
+        if (list[0] + 1 == list.length)
+            list = Arrays.copyOf(list, list.length * 2);
+        list[++list[0]] = id;
+        return list;
+    }
+
+}
@@ -0,0 +1,411 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes a binary snapshot of a graph of named locations, so that a
+ * graph can be restored without parsing its DOT file again. A snapshot holds
+ * the frozen graph of a DijkstraGraph (its node names and both CSR edge
+ * arrays) and, optionally, the landmark tables used by ALT searches. Reading
+ * a snapshot memory-maps the file, checks its checksum, copies each array
+ * with a single bulk read, and installs the frozen graph and landmarks into
+ * the DijkstraGraph it rebuilds, so that neither needs to be computed again.
+ * Mapping a snapshot instead serves it as a read-only graph whose edges stay
+ * in the mapped file, outside the Java heap.
+ *
+ * The format, with every number big-endian:
+ *
+ * <pre>
+ * int     MAGIC, FORMAT_VERSION, flags, indexCount, edgeCount, landmarkCount
+ * int     nameLength[indexCount]   UTF-8 byte length of each name, -1 for none
+ * byte    names[sum of lengths]
+ * int     offsets[indexCount + 1], targets[edgeCount]
+ * double  weights[edgeCount]
+ * int     reverseOffsets[indexCount + 1], sources[edgeCount]
+ * double  reverseWeights[edgeCount]
+ * int     landmarks[landmarkCount]                   when HAS_LANDMARKS is set
+ * double  fromLandmark[landmarkCount * indexCount]   likewise
+ * double  toLandmark[landmarkCount * indexCount]     likewise
+ * int     CRC32 of every byte before it
+ * </pre>
+ *
+ * A file whose checksum matches can still hold counts that were wrong when it
+ * was written, so every count, length and index is checked against the size
+ * of the file and the other counts before it is used, and a file that fails
+ * any check is rejected with an IOException like a file with a bad checksum.
+ */
+public class GraphSnapshot {
+
+    public static final int MAGIC = 0x44475348; // "DGSH"
+    public static final int FORMAT_VERSION = 1;
+    // flag set when the snapshot holds landmark tables
+    public static final int HAS_LANDMARKS = 1;
+
+    /**
+     * Writes a snapshot of a graph, including its landmarks if it has
+     * computed landmarks for its current contents.
+     *
+     * @param graph the graph to write
+     * @param file  the file to write to, which is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(DijkstraGraph<String, Double> graph, Path file) throws IOException {
+        FrozenGraph<String> frozen;
+        Landmarks landmarks;
+        synchronized (graph) {
+            frozen = graph.freeze();
+            landmarks = graph.landmarks != null && graph.landmarks.getVersion() == frozen.getVersion()
+                    ? graph.landmarks
+                    : null;
+        }
+        int indexCount = frozen.getIndexCount();
+        int edgeCount = frozen.getEdgeCount();
+        CRC32 checksum = new CRC32();
+        try (OutputStream fileOut = Files.newOutputStream(file);
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16),
+                        checksum);
+                DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(landmarks != null ? HAS_LANDMARKS : 0);
+            out.writeInt(indexCount);
+            out.writeInt(edgeCount);
+            out.writeInt(landmarks != null ? landmarks.getCount() : 0);
+
+            // the string table
+            byte[][] names = new byte[indexCount][];
+            for (int i = 0; i < indexCount; i++) {
+                String name = frozen.getData(i);
+                names[i] = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name == null ? -1 : names[i].length);
+            }
+            for (byte[] name : names)
+                if (name != null)
+                    out.write(name);
+
+            // the forward and reverse edges
+            for (int i = 0; i <= indexCount; i++)
+                out.writeInt(i < indexCount ? frozen.edgesBegin(i) : edgeCount);
+            for (int e = 0; e < edgeCount; e++)
+                out.writeInt(frozen.target(e));
+            for (int e = 0; e < edgeCount; e++)
+                out.writeDouble(frozen.weight(e));
+            for (int i = 0; i <= indexCount; i++)
+                out.writeInt(i < indexCount ? frozen.reverseEdgesBegin(i) : edgeCount);
+            for (int e = 0; e < edgeCount; e++)
+                out.writeInt(frozen.source(e));
+            for (int e = 0; e < edgeCount; e++)
+                out.writeDouble(frozen.reverseWeight(e));
+
+            if (landmarks != null) {
+                for (int k = 0; k < landmarks.getCount(); k++)
+                    out.writeInt(landmarks.getLandmark(k));
+                for (double cost : landmarks.fromLandmark)
+                    out.writeDouble(cost);
+                for (double cost : landmarks.toLandmark)
+                    out.writeDouble(cost);
+            }
+            out.flush();
+            // the checksum itself is written past the checked stream
+            new DataOutputStream(fileOut).writeInt((int) checksum.getValue());
+        }
+    }
+
+    /**
+     * Reads a snapshot into an empty graph. When the graph stores double
+     * precision weights, the snapshot's frozen graph and landmarks become the
+     * graph's own, so that searches can start without freezing the graph or
+     * selecting landmarks.
+     *
+     * @param file  the snapshot to read
+     * @param graph an empty graph to insert the snapshot's nodes and edges into
+     * @throws IOException              if the file cannot be read, is not a
+     *                                  snapshot of a supported version, or
+     *                                  does not match its checksum
+     * @throws IllegalArgumentException if graph is not empty
+     */
+    public static void read(Path file, DijkstraGraph<String, Double> graph) throws IOException {
+        if (graph.getNodeCount() != 0 || graph.getNodeIdCount() != 0)
+            throw new IllegalArgumentException("snapshots can only be read into an empty graph");
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 28)
+                throw new IOException(file + " is too short to be a graph snapshot");
+            if (size > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large to map");
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        // validate the checksum before trusting any count in the file
+        CRC32 checksum = new CRC32();
+        checksum.update(in.duplicate().limit(in.capacity() - 4));
+        if ((int) checksum.getValue() != in.getInt(in.capacity() - 4))
+            throw new IOException(file + " does not match its checksum");
+        if (in.getInt() != MAGIC)
+            throw new IOException(file + " is not a graph snapshot");
+        int formatVersion = in.getInt();
+        if (formatVersion != FORMAT_VERSION)
+            throw new IOException(file + " has unsupported snapshot version " + formatVersion);
+        int flags = in.getInt();
+        int indexCount = in.getInt();
+        int edgeCount = in.getInt();
+        int landmarkCount = in.getInt();
+        checkCounts(file, in.capacity(), flags, indexCount, edgeCount, landmarkCount);
+
+        // the string table
+        int[] nameLengths = ints(in, indexCount);
+        checkLayout(file, in.capacity(), flags, indexCount, edgeCount, landmarkCount, nameBytes(file, nameLengths));
+        String[] names = new String[indexCount];
+        int nodeCount = 0;
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < indexCount; i++) {
+            if (nameLengths[i] < 0)
+                continue;
+            if (bytes.length < nameLengths[i])
+                bytes = new byte[Math.max(nameLengths[i], bytes.length * 2)];
+            in.get(bytes, 0, nameLengths[i]);
+            names[i] = new String(bytes, 0, nameLengths[i], StandardCharsets.UTF_8);
+            nodeCount++;
+        }
+
+        int[] offsets = ints(in, indexCount + 1);
+        int[] targets = ints(in, edgeCount);
+        double[] weights = doubles(in, edgeCount);
+        int[] reverseOffsets = ints(in, indexCount + 1);
+        int[] sources = ints(in, edgeCount);
+        double[] reverseWeights = doubles(in, edgeCount);
+        checkEdges(file, i -> offsets[i], i -> targets[i], i -> weights[i], names, edgeCount);
+        checkEdges(file, i -> reverseOffsets[i], i -> sources[i], i -> reverseWeights[i], names, edgeCount);
+
+        // rebuild the graph, whose ids are the snapshot's indexes unless the
+        // snapshot has unused indexes
+        int[] ids = new int[indexCount];
+        for (int i = 0; i < indexCount; i++)
+            if (names[i] != null) {
+                if (!graph.insertNode(names[i]))
+                    throw new IOException(file + " names two locations " + names[i]);
+                ids[i] = graph.getNodeId(names[i]);
+            }
+        for (int i = 0; i < indexCount; i++)
+            for (int e = offsets[i]; e < offsets[i + 1]; e++)
+                graph.insertEdgeById(ids[i], ids[targets[e]], weights[e]);
+        if (nodeCount != indexCount || graph.hasSinglePrecisionWeights())
+            return; // the snapshot's arrays do not match what freeze() would build
+
+        synchronized (graph) {
+            FrozenGraph<String> frozen = new FrozenGraph<>(names, nodeCount, offsets, targets, weights,
+                    reverseOffsets, sources, reverseWeights, graph.modCount);
+            graph.frozen = frozen;
+            if ((flags & HAS_LANDMARKS) != 0) {
+                int[] landmarks = ints(in, landmarkCount);
+                checkLandmarks(file, landmarks, names);
+                double[] fromLandmark = doubles(in, landmarkCount * indexCount);
+                double[] toLandmark = doubles(in, landmarkCount * indexCount);
+                graph.landmarks = new Landmarks(landmarks, indexCount, fromLandmark, toLandmark,
+                        frozen.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Maps a snapshot as a read-only graph whose edge arrays stay in the
+     * mapped file, outside the Java heap. Only the node names, the map from
+     * names to indexes, and any landmark tables are copied onto the heap, so
+     * large graphs can be served with a small heap. Files of any size can be
+     * mapped, as long as the string table fits in a 2 GB buffer.
+     *
+     * @param file the snapshot to map
+     * @return a read-only graph served from the mapped file
+     * @throws IOException if the file cannot be read, is not a snapshot of a
+     *                     supported version, or does not match its checksum
+     */
+    public static DijkstraGraph<String, Double> map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 28)
+                throw new IOException(file + " is too short to be a graph snapshot");
+            // validate the checksum one window at a time
+            CRC32 checksum = new CRC32();
+            for (long position = 0; position < size - 4; position += 1 << 30)
+                checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(1 << 30, size - 4 - position)));
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            channel.read(trailer, size - 4);
+            if ((int) checksum.getValue() != trailer.getInt(0))
+                throw new IOException(file + " does not match its checksum");
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 24);
+            if (header.getInt() != MAGIC)
+                throw new IOException(file + " is not a graph snapshot");
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION)
+                throw new IOException(file + " has unsupported snapshot version " + formatVersion);
+            int flags = header.getInt();
+            int indexCount = header.getInt();
+            int edgeCount = header.getInt();
+            int landmarkCount = header.getInt();
+            checkCounts(file, size, flags, indexCount, edgeCount, landmarkCount);
+
+            // the string table
+            long position = 24;
+            ByteBuffer lengths = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * indexCount);
+            int[] nameLengths = ints(lengths, indexCount);
+            position += 4L * indexCount;
+            long nameBytes = nameBytes(file, nameLengths);
+            checkLayout(file, size, flags, indexCount, edgeCount, landmarkCount, nameBytes);
+            if (nameBytes > Integer.MAX_VALUE)
+                throw new IOException(file + " has a string table too large to map");
+            ByteBuffer nameTable = channel.map(FileChannel.MapMode.READ_ONLY, position, nameBytes);
+            position += nameBytes;
+            Object[] names = new Object[indexCount];
+            int nodeCount = 0;
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < indexCount; i++) {
+                if (nameLengths[i] < 0)
+                    continue;
+                if (bytes.length < nameLengths[i])
+                    bytes = new byte[Math.max(nameLengths[i], bytes.length * 2)];
+                nameTable.get(bytes, 0, nameLengths[i]);
+                names[i] = new String(bytes, 0, nameLengths[i], StandardCharsets.UTF_8);
+                nodeCount++;
+            }
+
+            // the edge arrays, mapped in place
+            ByteOrder order = ByteOrder.BIG_ENDIAN;
+            OffHeapFrozenGraph.IntSegments offsets = OffHeapFrozenGraph.IntSegments.map(channel, position,
+                    indexCount + 1, order);
+            position += 4L * (indexCount + 1);
+            OffHeapFrozenGraph.IntSegments targets = OffHeapFrozenGraph.IntSegments.map(channel, position,
+                    edgeCount, order);
+            position += 4L * edgeCount;
+            OffHeapFrozenGraph.DoubleSegments weights = OffHeapFrozenGraph.DoubleSegments.map(channel, position,
+                    edgeCount, order);
+            position += 8L * edgeCount;
+            OffHeapFrozenGraph.IntSegments reverseOffsets = OffHeapFrozenGraph.IntSegments.map(channel, position,
+                    indexCount + 1, order);
+            position += 4L * (indexCount + 1);
+            OffHeapFrozenGraph.IntSegments sources = OffHeapFrozenGraph.IntSegments.map(channel, position,
+                    edgeCount, order);
+            position += 4L * edgeCount;
+            OffHeapFrozenGraph.DoubleSegments reverseWeights = OffHeapFrozenGraph.DoubleSegments.map(channel,
+                    position, edgeCount, order);
+            position += 8L * edgeCount;
+            checkEdges(file, offsets::get, targets::get, weights::get, names, edgeCount);
+            checkEdges(file, reverseOffsets::get, sources::get, reverseWeights::get, names, edgeCount);
+            OffHeapFrozenGraph<String> storage = new OffHeapFrozenGraph<>(names, nodeCount, edgeCount, offsets,
+                    targets, weights, reverseOffsets, sources, reverseWeights, 0);
+            if (storage.indexes.getSize() != nodeCount)
+                throw new IOException(file + " names two locations the same");
+
+            DijkstraGraph<String, Double> graph = DijkstraGraph.readOnly(storage);
+            if ((flags & HAS_LANDMARKS) != 0) {
+                long tableBytes = 4L * landmarkCount + 16L * landmarkCount * indexCount;
+                ByteBuffer tables = channel.map(FileChannel.MapMode.READ_ONLY, position, tableBytes);
+                int[] landmarks = ints(tables, landmarkCount);
+                checkLandmarks(file, landmarks, names);
+                double[] fromLandmark = doubles(tables, landmarkCount * indexCount);
+                double[] toLandmark = doubles(tables, landmarkCount * indexCount);
+                graph.landmarks = new Landmarks(landmarks, indexCount, fromLandmark, toLandmark,
+                        storage.getVersion());
+            }
+            return graph;
+        }
+    }
+
+    // checks that the counts in a snapshot's header are not negative and that
+    // its arrays could fit in a file of its size, so that no array is sized
+    // from a count that would overflow or exhaust the heap
+    private static void checkCounts(Path file, long size, int flags, int indexCount, int edgeCount,
+            int landmarkCount) throws IOException {
+        if (indexCount < 0 || edgeCount < 0 || landmarkCount < 0 || (flags & ~HAS_LANDMARKS) != 0
+                || ((flags & HAS_LANDMARKS) == 0 && landmarkCount != 0))
+            throw new IOException(file + " has an invalid snapshot header");
+        checkLayout(file, size, flags, indexCount, edgeCount, landmarkCount, -1);
+    }
+
+    // checks that the arrays the header describes, with nameBytes bytes of
+    // names, fill the file up to its checksum exactly, or at least fit when
+    // nameBytes is not known yet and is passed as -1
+    private static void checkLayout(Path file, long size, int flags, int indexCount, int edgeCount,
+            int landmarkCount, long nameBytes) throws IOException {
+        long expected = 24 + 4L * indexCount + Math.max(nameBytes, 0) + 2 * (4L * (indexCount + 1) + 12L * edgeCount) + 4;
+        if ((flags & HAS_LANDMARKS) != 0)
+            expected += 4L * landmarkCount + 16L * landmarkCount * indexCount;
+        if (nameBytes < 0 ? expected > size : expected != size)
+            throw new IOException(file + " is " + size + " bytes long, which does not match its header");
+        if ((long) landmarkCount * indexCount > Integer.MAX_VALUE)
+            throw new IOException(file + " has landmark tables too large to read");
+    }
+
+    // returns the total length of the names, checking that every length is
+    // either a length or the -1 of an unused index
+    private static long nameBytes(Path file, int[] nameLengths) throws IOException {
+        long total = 0;
+        for (int length : nameLengths) {
+            if (length < -1)
+                throw new IOException(file + " has a negative name length");
+            total += Math.max(length, 0);
+        }
+        return total;
+    }
+
+    // checks that one direction of a snapshot's edges is a valid CSR array:
+    // offsets rise from 0 to edgeCount, every neighbor is a used index, and
+    // every weight is a non-negative number
+    private static void checkEdges(Path file, IntUnaryOperator offsets, IntUnaryOperator neighbors,
+            IntToDoubleFunction weights, Object[] names, int edgeCount) throws IOException {
+        int indexCount = names.length;
+        if (offsets.applyAsInt(0) != 0 || offsets.applyAsInt(indexCount) != edgeCount)
+            throw new IOException(file + " has edge offsets that do not span its edges");
+        for (int i = 0; i < indexCount; i++) {
+            int begin = offsets.applyAsInt(i);
+            int end = offsets.applyAsInt(i + 1);
+            if (end < begin || (names[i] == null && end != begin))
+                throw new IOException(file + " has invalid edge offsets at index " + i);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            int neighbor = neighbors.applyAsInt(e);
+            if (neighbor < 0 || neighbor >= indexCount || names[neighbor] == null)
+                throw new IOException(file + " has an edge to missing index " + neighbor);
+            double weight = weights.applyAsDouble(e);
+            if (!(weight >= 0))
+                throw new IOException(file + " has an edge with invalid weight " + weight);
+        }
+    }
+
+    // checks that every landmark is a used index
+    private static void checkLandmarks(Path file, int[] landmarks, Object[] names) throws IOException {
+        for (int landmark : landmarks)
+            if (landmark < 0 || landmark >= names.length || names[landmark] == null)
+                throw new IOException(file + " has a landmark at missing index " + landmark);
+    }
+
+    // bulk reads count ints, advancing the buffer past them
+    private static int[] ints(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    // bulk reads count doubles, advancing the buffer past them
+    private static double[] doubles(ByteBuffer in, int count) {
+        double[] values = new double[count];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + 8 * count);
+        return values;
+    }
+
+}
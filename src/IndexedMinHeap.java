@@ -0,0 +1,227 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A d-ary min-heap of int keys in the range [0, capacity), each ordered by a
+ * double priority. Because the heap position of every key is tracked, the
+ * priority of a key already in the heap can be lowered in place with
+ * decreaseKey, so a key is never stored more than once.
+ */
+public class IndexedMinHeap {
+
+    protected final int arity;
+    // keys and their priorities in heap order
+    protected int[] heapKeys;
+    protected double[] heapPriorities;
+    // heap position of each key, or -1 when the key is not in the heap
+    protected int[] positions;
+    protected int size = 0;
+
+    /**
+     * Constructor for IndexedMinHeap.
+     *
+     * @param capacity one more than the largest key the heap will hold
+     * @param arity    the number of children of each heap node, at least 2
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public IndexedMinHeap(int capacity, int arity) {
+        if (arity < 2)
+            throw new IllegalArgumentException("heap arity must be at least 2");
+        this.arity = arity;
+        this.heapKeys = new int[capacity];
+        this.heapPriorities = new double[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Grows the heap so that it can hold keys less than capacity.
+     *
+     * @param capacity one more than the largest key the heap must hold
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= positions.length)
+            return;
+        int oldCapacity = positions.length;
+        heapKeys = Arrays.copyOf(heapKeys, capacity);
+        heapPriorities = Arrays.copyOf(heapPriorities, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        Arrays.fill(positions, oldCapacity, capacity, -1);
+    }
+
+    /**
+     * Return the arity of this heap.
+     *
+     * @return the number of children of each heap node
+     */
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Return the number of keys in this heap.
+     *
+     * @return the number of keys in this heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether this heap holds no keys.
+     *
+     * @return true if this heap is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether a key is in this heap.
+     *
+     * @param key the key to check for
+     * @return true if the key is in this heap, false otherwise
+     */
+    public boolean contains(int key) {
+        return positions[key] >= 0;
+    }
+
+    /**
+     * Return the current priority of a key in this heap.
+     *
+     * @param key the key to look up
+     * @return the priority of that key
+     * @throws NoSuchElementException if the key is not in this heap
+     */
+    public double priorityOf(int key) {
+        if (positions[key] < 0)
+            throw new NoSuchElementException("key " + key + " not in heap");
+        return heapPriorities[positions[key]];
+    }
+
+    /**
+     * Adds a key that is not already in this heap.
+     *
+     * @param key      the key to add
+     * @param priority the priority of that key
+     * @throws IllegalArgumentException if the key is already in this heap
+     */
+    public void insert(int key, double priority) {
+        if (positions[key] >= 0)
+            throw new IllegalArgumentException("key " + key + " already in heap");
+        siftUp(size++, key, priority);
+    }
+
+    /**
+     * Lowers the priority of a key that is already in this heap.
+     *
+     * @param key      the key to update
+     * @param priority the new priority, no greater than the current one
+     * @throws NoSuchElementException   if the key is not in this heap
+     * @throws IllegalArgumentException if priority is greater than the key's
+     *                                  current priority
+     */
+    public void decreaseKey(int key, double priority) {
+        int position = positions[key];
+        if (position < 0)
+            throw new NoSuchElementException("key " + key + " not in heap");
+        if (priority > heapPriorities[position])
+            throw new IllegalArgumentException("priority of key " + key + " cannot increase");
+        siftUp(position, key, priority);
+    }
+
+    /**
+     * Adds a key, or lowers its priority when it is already in this heap and
+     * the new priority is lower than its current one.
+     *
+     * @param key      the key to add or update
+     * @param priority the new priority of that key
+     */
+    public void insertOrDecrease(int key, double priority) {
+        int position = positions[key];
+        if (position < 0)
+            siftUp(size++, key, priority);
+        else if (priority < heapPriorities[position])
+            siftUp(position, key, priority);
+    }
+
+    /**
+     * Return the lowest priority in this heap without removing its key.
+     *
+     * @return the lowest priority in this heap
+     * @throws NoSuchElementException if this heap is empty
+     */
+    public double peekPriority() {
+        if (size == 0)
+            throw new NoSuchElementException("heap is empty");
+        return heapPriorities[0];
+    }
+
+    /**
+     * Removes the key with the lowest priority from this heap.
+     *
+     * @return the removed key
+     * @throws NoSuchElementException if this heap is empty
+     */
+    public int poll() {
+        if (size == 0)
+            throw new NoSuchElementException("heap is empty");
+        int min = heapKeys[0];
+        positions[min] = -1;
+        size--;
+        // move the last key to the root and restore the heap order below it
+        if (size > 0)
+            siftDown(0, heapKeys[size], heapPriorities[size]);
+        return min;
+    }
+
+    /**
+     * Removes all keys from this heap.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            positions[heapKeys[i]] = -1;
+        size = 0;
+    }
+
+    // moves a hole at position up until key can be stored there
+    private void siftUp(int position, int key, double priority) {
+        while (position > 0) {
+            int parent = (position - 1) / arity;
+            if (heapPriorities[parent] <= priority)
+                break;
+            heapKeys[position] = heapKeys[parent];
+            heapPriorities[position] = heapPriorities[parent];
+            positions[heapKeys[position]] = position;
+            position = parent;
+        }
+        heapKeys[position] = key;
+        heapPriorities[position] = priority;
+        positions[key] = position;
+    }
+
+    // moves a hole at position down until key can be stored there
+    private void siftDown(int position, int key, double priority) {
+        while (true) {
+            int firstChild = position * arity + 1;
+            if (firstChild >= size)
+                break;
+            // find the child with the lowest priority
+            int lastChild = Math.min(firstChild + arity, size);
+            int minChild = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++)
+                if (heapPriorities[child] < heapPriorities[minChild])
+                    minChild = child;
+            if (heapPriorities[minChild] >= priority)
+                break;
+            heapKeys[position] = heapKeys[minChild];
+            heapPriorities[position] = heapPriorities[minChild];
+            positions[heapKeys[position]] = position;
+            position = minChild;
+        }
+        heapKeys[position] = key;
+        heapPriorities[position] = priority;
+        positions[key] = position;
+    }
+
+}
@@ -0,0 +1,278 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A set of landmark nodes together with the shortest path costs from every
+ * landmark to every node, and from every node to every landmark. By the
+ * triangle inequality these costs give a lower bound on the cost of the
+ * shortest path between any two nodes, which DijkstraGraph uses as the
+ * heuristic of its ALT (A*, landmarks, triangle inequality) search mode.
+ * Graphs without coordinates can be searched this way because only path
+ * costs are needed.
+ */
+public class Landmarks {
+
+    /**
+     * The ways landmarks can be chosen. FARTHEST repeatedly picks the node
+     * whose round trip to its nearest landmark is the most expensive. AVOID
+     * grows a shortest path tree from a random root, weighs each node by how
+     * much the current landmarks underestimate its distance from that root,
+     * and picks a leaf of the heaviest subtree that contains no landmark.
+     */
+    public enum Selection {
+        FARTHEST, AVOID
+    }
+
+    // indexes of the landmark nodes
+    protected final int[] landmarks;
+    protected final int indexCount;
+    // fromLandmark[k * indexCount + v] is the cost of the shortest path from
+    // landmark k to node v, and toLandmark[k * indexCount + v] is the cost of
+    // the shortest path from node v to landmark k
+    protected final double[] fromLandmark;
+    protected final double[] toLandmark;
+    // version of the FrozenGraph these tables were computed from
+    protected final int version;
+
+    /**
+     * Constructor for Landmarks, used by select.
+     */
+    protected Landmarks(int[] landmarks, int indexCount, double[] fromLandmark,
+            double[] toLandmark, int version) {
+        this.landmarks = landmarks;
+        this.indexCount = indexCount;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+        this.version = version;
+    }
+
+    /**
+     * Chooses landmarks within a graph and computes their distance tables.
+     * This runs two complete searches of the graph for every landmark.
+     *
+     * @param graph     the graph to choose landmarks from
+     * @param count     the number of landmarks to choose
+     * @param selection how to choose the landmarks
+     * @return the chosen landmarks and their distance tables
+     * @throws IllegalArgumentException if count is not positive
+     */
+    public static Landmarks select(FrozenGraph<?> graph, int count, Selection selection) {
+        if (count < 1)
+            throw new IllegalArgumentException("at least one landmark is required");
+        int indexCount = graph.getIndexCount();
+        count = Math.min(count, graph.getNodeCount());
+        int[] chosen = new int[count];
+        double[] from = new double[count * indexCount];
+        double[] to = new double[count * indexCount];
+        IndexedMinHeap heap = new IndexedMinHeap(indexCount, 4);
+        Random random = new Random(count);
+        int[] parent = new int[indexCount];
+
+        for (int k = 0; k < count; k++) {
+            if (selection == Selection.FARTHEST)
+                chosen[k] = farthestNode(graph, chosen, k, from, to, random);
+            else
+                chosen[k] = avoidNode(graph, chosen, k, from, to, random, heap, parent);
+            double[] distances = new double[indexCount];
+            search(graph, chosen[k], false, distances, parent, heap);
+            System.arraycopy(distances, 0, from, k * indexCount, indexCount);
+            search(graph, chosen[k], true, distances, parent, heap);
+            System.arraycopy(distances, 0, to, k * indexCount, indexCount);
+        }
+        return new Landmarks(chosen, indexCount, from, to, graph.getVersion());
+    }
+
+    /**
+     * Return the number of landmarks.
+     *
+     * @return the number of landmarks
+     */
+    public int getCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Return the index of one landmark node.
+     *
+     * @param k which landmark to return
+     * @return the index of that landmark's node
+     */
+    public int getLandmark(int k) {
+        return landmarks[k];
+    }
+
+    /**
+     * Return the version of the FrozenGraph the distance tables were computed
+     * from.
+     *
+     * @return the version of that graph
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a lower bound on the cost of the shortest path from node to
+     * target. For every landmark L, that cost is at least d(L,target) -
+     * d(L,node) and at least d(node,L) - d(target,L).
+     *
+     * @param node   index of the node the path starts at
+     * @param target index of the node the path ends at
+     * @return a lower bound on the path cost, which is Double.POSITIVE_INFINITY
+     *         when the landmarks prove that no such path exists
+     */
+    public double lowerBound(int node, int target) {
+        double bound = 0;
+        for (int base = 0; base < fromLandmark.length; base += indexCount) {
+            // comparisons are false for NaN, which arises when both costs of
+            // a landmark are infinite and that landmark tells us nothing
+            double viaFrom = fromLandmark[base + target] - fromLandmark[base + node];
+            if (viaFrom > bound)
+                bound = viaFrom;
+            double viaTo = toLandmark[base + node] - toLandmark[base + target];
+            if (viaTo > bound)
+                bound = viaTo;
+        }
+        return bound;
+    }
+
+    /**
+     * Picks the node whose cheapest round trip to an already chosen landmark
+     * is most expensive, treating nodes that cannot make a round trip to any
+     * landmark as the most expensive. The first landmark is chosen at random.
+     */
+    private static int farthestNode(FrozenGraph<?> graph, int[] chosen, int chosenCount,
+            double[] from, double[] to, Random random) {
+        if (chosenCount == 0)
+            return randomNode(graph, random);
+        int indexCount = graph.getIndexCount();
+        int farthest = -1;
+        double farthestCost = -1;
+        for (int v = 0; v < indexCount; v++) {
+            if (graph.nodeData[v] == null || isChosen(chosen, chosenCount, v))
+                continue;
+            double nearest = Double.POSITIVE_INFINITY;
+            for (int k = 0; k < chosenCount; k++)
+                nearest = Math.min(nearest, from[k * indexCount + v] + to[k * indexCount + v]);
+            if (nearest > farthestCost) {
+                farthest = v;
+                farthestCost = nearest;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Picks a landmark with the avoid heuristic of Goldberg and Werneck.
+     */
+    private static int avoidNode(FrozenGraph<?> graph, int[] chosen, int chosenCount,
+            double[] from, double[] to, Random random, IndexedMinHeap heap, int[] parent) {
+        int indexCount = graph.getIndexCount();
+        int root = randomNode(graph, random);
+        double[] distances = new double[indexCount];
+        int[] order = search(graph, root, false, distances, parent, heap);
+        Landmarks current = new Landmarks(Arrays.copyOf(chosen, chosenCount), indexCount,
+                from, to, graph.getVersion());
+
+        // weigh each node of the tree by how much the landmarks chosen so far
+        // underestimate its cost from the root, and add the weight of each
+        // subtree to its root, visiting children before their parents
+        double[] size = new double[indexCount];
+        boolean[] hasLandmark = new boolean[indexCount];
+        for (int i = order.length - 1; i >= 0; i--) {
+            int v = order[i];
+            if (isChosen(chosen, chosenCount, v))
+                hasLandmark[v] = true;
+            if (hasLandmark[v])
+                size[v] = 0;
+            else
+                size[v] += distances[v] - (chosenCount == 0 ? 0 : current.lowerBound(root, v));
+            if (parent[v] != -1) {
+                size[parent[v]] += size[v];
+                hasLandmark[parent[v]] |= hasLandmark[v];
+            }
+        }
+
+        // group the tree's nodes by parent so that each node's children are
+        // stored from childStart[v] to childStart[v+1]-1
+        int[] childStart = new int[indexCount + 1];
+        for (int v : order)
+            if (parent[v] != -1)
+                childStart[parent[v] + 1]++;
+        for (int v = 0; v < indexCount; v++)
+            childStart[v + 1] += childStart[v];
+        int[] children = new int[order.length];
+        int[] fill = Arrays.copyOf(childStart, indexCount);
+        for (int v : order)
+            if (parent[v] != -1)
+                children[fill[parent[v]]++] = v;
+
+        // walk down from the root into the heaviest subtree until reaching a leaf
+        int node = root;
+        while (true) {
+            int heaviest = -1;
+            for (int c = childStart[node]; c < childStart[node + 1]; c++)
+                if (heaviest == -1 || size[children[c]] > size[heaviest])
+                    heaviest = children[c];
+            if (heaviest == -1 || size[heaviest] <= 0)
+                break;
+            node = heaviest;
+        }
+        // fall back to the farthest node when every subtree already holds a landmark
+        if (isChosen(chosen, chosenCount, node))
+            return farthestNode(graph, chosen, chosenCount, from, to, random);
+        return node;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from source to every reachable node, following
+     * entering edges instead of leaving edges when backward is true. Fills
+     * distances with the cost of each node (infinity when unreachable) and
+     * parent with each reached node's predecessor.
+     *
+     * @return the reached nodes in the order they were settled
+     */
+    private static int[] search(FrozenGraph<?> graph, int source, boolean backward,
+            double[] distances, int[] parent, IndexedMinHeap heap) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        int[] order = new int[graph.getIndexCount()];
+        int settledCount = 0;
+        distances[source] = 0;
+        parent[source] = -1;
+        heap.clear();
+        heap.insert(source, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            order[settledCount++] = node;
+            int begin = backward ? graph.reverseEdgesBegin(node) : graph.edgesBegin(node);
+            int end = backward ? graph.reverseEdgesEnd(node) : graph.edgesEnd(node);
+            for (int e = begin; e < end; e++) {
+                int next = backward ? graph.source(e) : graph.target(e);
+                double newCost = distances[node] + (backward ? graph.reverseWeight(e) : graph.weight(e));
+                if (newCost < distances[next]) {
+                    distances[next] = newCost;
+                    parent[next] = node;
+                    heap.insertOrDecrease(next, newCost);
+                }
+            }
+        }
+        return Arrays.copyOf(order, settledCount);
+    }
+
+    // picks a node index that is in use, uniformly at random
+    private static int randomNode(FrozenGraph<?> graph, Random random) {
+        while (true) {
+            int v = random.nextInt(graph.getIndexCount());
+            if (graph.nodeData[v] != null)
+                return v;
+        }
+    }
+
+    private static boolean isChosen(int[] chosen, int chosenCount, int node) {
+        for (int k = 0; k < chosenCount; k++)
+            if (chosen[k] == node)
+                return true;
+        return false;
+    }
+
+}
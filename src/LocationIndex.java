@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable index of location names that completes a prefix to the names
+ * starting with it, ignoring case. The names are kept in one array sorted by
+ * their lower case form, so the names with a given prefix are next to each
+ * other: completing a prefix is one binary search for the first of them,
+ * followed by a scan over only the names returned.
+ */
+public class LocationIndex {
+
+    // the names, sorted by their keys, and the lower case key of each name
+    protected final String[] names;
+    protected final String[] keys;
+
+    /**
+     * Builds an index of names. Duplicate names are indexed once.
+     *
+     * @param names the names to index
+     */
+    public LocationIndex(Collection<String> names) {
+        String[] distinct = new LinkedHashSet<>(names).toArray(new String[0]);
+        // order by key, breaking ties between names that differ only in case
+        Arrays.sort(distinct, Comparator.comparing(LocationIndex::keyOf).thenComparing(Comparator.naturalOrder()));
+        this.names = distinct;
+        this.keys = new String[distinct.length];
+        for (int i = 0; i < distinct.length; i++)
+            keys[i] = keyOf(distinct[i]);
+    }
+
+    /**
+     * Builds an index of the data of every node in a graph.
+     *
+     * @param graph the graph whose nodes name the locations
+     * @return the index of the graph's locations
+     */
+    public static LocationIndex of(BaseGraph<String, ?> graph) {
+        List<String> names = new ArrayList<>(graph.getNodeCount());
+        for (int id = 0; id < graph.getNodeIdCount(); id++)
+            if (graph.containsNodeId(id))
+                names.add(graph.getNodeData(id));
+        return new LocationIndex(names);
+    }
+
+    /**
+     * Returns the names that start with prefix, ignoring case, in the order
+     * of the index.
+     *
+     * @param prefix the start of the names to find
+     * @param limit  the largest number of names to return
+     * @return up to limit names starting with prefix
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = keyOf(prefix);
+        List<String> matches = new ArrayList<>(Math.min(Math.max(limit, 0), 16));
+        for (int i = firstAtLeast(key); i < keys.length && matches.size() < limit && keys[i].startsWith(key); i++)
+            matches.add(names[i]);
+        return matches;
+    }
+
+    /**
+     * Checks whether a name is indexed, with the same case.
+     *
+     * @param name the name to look for
+     * @return true if name is in the index, or false otherwise
+     */
+    public boolean contains(String name) {
+        String key = keyOf(name);
+        for (int i = firstAtLeast(key); i < keys.length && keys[i].equals(key); i++)
+            if (names[i].equals(name))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns every indexed name, in the order of the index.
+     *
+     * @return an unmodifiable list of the names
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Returns the number of indexed names.
+     *
+     * @return the number of names
+     */
+    public int getSize() {
+        return names.length;
+    }
+
+    // the position of the first key that is not less than key
+    private int firstAtLeast(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // names are compared by their lower case form, which does not depend on
+    // the default locale
+    private static String keyOf(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+}
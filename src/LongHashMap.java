@@ -0,0 +1,162 @@
+import java.util.Objects;
+
+/**
+ * An open-addressing hash table from non-negative long keys to object values,
+ * storing its keys in a primitive long array so that no key is ever boxed.
+ * BaseGraph uses it to index edges by the pair of their node ids. Unlike
+ * MapADT, lookups of missing keys return null instead of throwing, so that
+ * callers can test for a key and use its value with a single probe.
+ */
+public class LongHashMap<ValueType> {
+
+    protected static final int DEFAULT_CAPACITY = 16;
+    protected static final double LOAD_FACTOR = 0.5;
+    // marks an empty slot; keys must not be negative
+    protected static final long EMPTY = -1;
+
+    protected long[] keys;
+    protected Object[] values;
+    protected int size = 0;
+
+    /**
+     * Creates an empty map that can hold expectedSize keys without growing.
+     *
+     * @param expectedSize the number of keys the map should hold
+     */
+    public LongHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity *= 2;
+        allocate(capacity);
+    }
+
+    /**
+     * Retrieves the value that a key maps to.
+     *
+     * @param key the key to look up
+     * @return the value that key maps to, or null if key is not stored
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType get(long key) {
+        return (ValueType) values[find(key)];
+    }
+
+    /**
+     * Maps a key to a value, replacing any value it mapped to before.
+     *
+     * @param key   the key, which must not be negative
+     * @param value the value that key maps to, which must not be null
+     * @return the value key mapped to before, or null
+     * @throws IllegalArgumentException if key is negative
+     * @throws NullPointerException     if value is null
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType put(long key, ValueType value) {
+        if (key < 0)
+            throw new IllegalArgumentException("keys must not be negative");
+        Objects.requireNonNull(value);
+        int slot = find(key);
+        ValueType previous = (ValueType) values[slot];
+        if (previous == null) {
+            if (size + 1 > keys.length * LOAD_FACTOR) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * Removes the mapping for a key.
+     *
+     * @param key the key whose mapping to remove
+     * @return the value key mapped to, or null if key was not stored
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType remove(long key) {
+        int slot = find(key);
+        ValueType removed = (ValueType) values[slot];
+        if (removed == null)
+            return null;
+        size--;
+        // shift the following keys of the same run back into the hole, as in
+        // OpenAddressingMap.remove
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        return removed;
+    }
+
+    /**
+     * Removes every key from this map.
+     */
+    public void clear() {
+        allocate(keys.length);
+    }
+
+    /**
+     * Retrieves the number of keys stored in this map.
+     *
+     * @return the number of keys
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of slots in this map's table.
+     *
+     * @return the length of the underlying arrays
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    // returns the slot holding key, or the empty slot where it would be put
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    protected static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        java.util.Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldSize = size;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        size = oldSize;
+    }
+
+}
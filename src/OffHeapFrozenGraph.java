@@ -0,0 +1,227 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A FrozenGraph whose edge arrays live outside the Java heap, in direct
+ * ByteBuffers or in buffers memory-mapped from a GraphSnapshot file. The
+ * garbage collector never scans or copies these arrays, so a graph with
+ * hundreds of millions of edges can be searched with a small heap. Only the
+ * node data and the map from data to index stay on the heap.
+ *
+ * A single buffer holds at most 2 GB, so each array is split into segments of
+ * SEGMENT_SIZE elements, and reading element i reads element i % SEGMENT_SIZE
+ * of segment i / SEGMENT_SIZE.
+ */
+public class OffHeapFrozenGraph<NodeType> extends FrozenGraph<NodeType> {
+
+    protected static final int SEGMENT_SHIFT = 27;
+    protected static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    protected static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * An int array stored outside the heap in segments.
+     */
+    protected static class IntSegments {
+        protected final IntBuffer[] segments;
+
+        protected IntSegments(IntBuffer[] segments) {
+            this.segments = segments;
+        }
+
+        // allocates count ints in direct buffers of the platform's byte order
+        protected static IntSegments allocate(int count) {
+            IntBuffer[] segments = new IntBuffer[segmentCount(count)];
+            for (int i = 0; i < segments.length; i++)
+                segments[i] = ByteBuffer.allocateDirect(4 * segmentLength(count, i))
+                        .order(ByteOrder.nativeOrder()).asIntBuffer();
+            return new IntSegments(segments);
+        }
+
+        // maps count ints stored in order at position within channel
+        protected static IntSegments map(FileChannel channel, long position, int count, ByteOrder order)
+                throws IOException {
+            IntBuffer[] segments = new IntBuffer[segmentCount(count)];
+            for (int i = 0; i < segments.length; i++)
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * i * SEGMENT_SIZE,
+                        4L * segmentLength(count, i)).order(order).asIntBuffer();
+            return new IntSegments(segments);
+        }
+
+        protected int get(int index) {
+            return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+        }
+
+        protected void put(int index, int value) {
+            segments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+        }
+    }
+
+    /**
+     * A double array stored outside the heap in segments.
+     */
+    protected static class DoubleSegments {
+        protected final DoubleBuffer[] segments;
+
+        protected DoubleSegments(DoubleBuffer[] segments) {
+            this.segments = segments;
+        }
+
+        // allocates count doubles in direct buffers of the platform's byte order
+        protected static DoubleSegments allocate(int count) {
+            DoubleBuffer[] segments = new DoubleBuffer[segmentCount(count)];
+            for (int i = 0; i < segments.length; i++)
+                segments[i] = ByteBuffer.allocateDirect(8 * segmentLength(count, i))
+                        .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            return new DoubleSegments(segments);
+        }
+
+        // maps count doubles stored in order at position within channel
+        protected static DoubleSegments map(FileChannel channel, long position, int count, ByteOrder order)
+                throws IOException {
+            DoubleBuffer[] segments = new DoubleBuffer[segmentCount(count)];
+            for (int i = 0; i < segments.length; i++)
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + 8L * i * SEGMENT_SIZE,
+                        8L * segmentLength(count, i)).order(order).asDoubleBuffer();
+            return new DoubleSegments(segments);
+        }
+
+        protected double get(int index) {
+            return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+        }
+
+        protected void put(int index, double value) {
+            segments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+        }
+    }
+
+    protected final IntSegments edgeOffsets;
+    protected final IntSegments edgeTargets;
+    protected final DoubleSegments edgeWeights;
+    protected final IntSegments reverseEdgeOffsets;
+    protected final IntSegments edgeSources;
+    protected final DoubleSegments reverseEdgeWeights;
+    protected final int edgeCount;
+
+    /**
+     * Constructor for OffHeapFrozenGraph, used by copyOf and by GraphSnapshot.
+     * The arrays are laid out like those of FrozenGraph.
+     */
+    protected OffHeapFrozenGraph(Object[] nodeData, int nodeCount, int edgeCount, IntSegments offsets,
+            IntSegments targets, DoubleSegments weights, IntSegments reverseOffsets, IntSegments sources,
+            DoubleSegments reverseWeights, int version) {
+        super(nodeData, nodeCount, version);
+        this.edgeCount = edgeCount;
+        this.edgeOffsets = offsets;
+        this.edgeTargets = targets;
+        this.edgeWeights = weights;
+        this.reverseEdgeOffsets = reverseOffsets;
+        this.edgeSources = sources;
+        this.reverseEdgeWeights = reverseWeights;
+    }
+
+    /**
+     * Copies the edges of a frozen graph into direct buffers.
+     *
+     * @param graph the graph to copy
+     * @return a graph with the same nodes, edges and version whose edges are
+     *         stored outside the heap
+     */
+    public static <T> OffHeapFrozenGraph<T> copyOf(FrozenGraph<T> graph) {
+        int indexCount = graph.getIndexCount();
+        int edgeCount = graph.getEdgeCount();
+        Object[] nodeData = new Object[indexCount];
+        IntSegments offsets = IntSegments.allocate(indexCount + 1);
+        IntSegments reverseOffsets = IntSegments.allocate(indexCount + 1);
+        for (int i = 0; i < indexCount; i++) {
+            nodeData[i] = graph.nodeData[i];
+            offsets.put(i, graph.edgesBegin(i));
+            reverseOffsets.put(i, graph.reverseEdgesBegin(i));
+        }
+        offsets.put(indexCount, edgeCount);
+        reverseOffsets.put(indexCount, edgeCount);
+        IntSegments targets = IntSegments.allocate(edgeCount);
+        DoubleSegments weights = DoubleSegments.allocate(edgeCount);
+        IntSegments sources = IntSegments.allocate(edgeCount);
+        DoubleSegments reverseWeights = DoubleSegments.allocate(edgeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            targets.put(e, graph.target(e));
+            weights.put(e, graph.weight(e));
+            sources.put(e, graph.source(e));
+            reverseWeights.put(e, graph.reverseWeight(e));
+        }
+        return new OffHeapFrozenGraph<>(nodeData, graph.getNodeCount(), edgeCount, offsets, targets, weights,
+                reverseOffsets, sources, reverseWeights, graph.getVersion());
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int edgesBegin(int node) {
+        return edgeOffsets.get(node);
+    }
+
+    @Override
+    public int edgesEnd(int node) {
+        return edgeOffsets.get(node + 1);
+    }
+
+    @Override
+    public int target(int edge) {
+        return edgeTargets.get(edge);
+    }
+
+    @Override
+    public double weight(int edge) {
+        return edgeWeights.get(edge);
+    }
+
+    @Override
+    public int reverseEdgesBegin(int node) {
+        return reverseEdgeOffsets.get(node);
+    }
+
+    @Override
+    public int reverseEdgesEnd(int node) {
+        return reverseEdgeOffsets.get(node + 1);
+    }
+
+    @Override
+    public int source(int edge) {
+        return edgeSources.get(edge);
+    }
+
+    @Override
+    public double reverseWeight(int edge) {
+        return reverseEdgeWeights.get(edge);
+    }
+
+    @Override
+    public boolean hasSinglePrecisionWeights() {
+        return false;
+    }
+
+    @Override
+    public int findEdge(int pred, int succ) {
+        int end = edgesEnd(pred);
+        for (int e = edgesBegin(pred); e < end; e++)
+            if (edgeTargets.get(e) == succ)
+                return e;
+        return -1;
+    }
+
+    private static int segmentCount(int count) {
+        return Math.max(1, (int) ((count + (long) SEGMENT_MASK) >>> SEGMENT_SHIFT));
+    }
+
+    private static int segmentLength(int count, int segment) {
+        return Math.min(SEGMENT_SIZE, count - segment * SEGMENT_SIZE);
+    }
+
+}
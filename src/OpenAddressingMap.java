@@ -0,0 +1,212 @@
+import java.util.NoSuchElementException;
+
+/**
+ * Implements MapADT with a single open-addressing hash table. Keys, values
+ * and the hash code of each key are stored in three parallel arrays, and a
+ * key that collides with another is stored in the next free slot after its
+ * home slot (linear probing). Lookups compare the cached hash codes before
+ * calling equals, so most probes past other keys never call equals, and
+ * growing the table never calls hashCode again. Removing a key shifts the
+ * keys that follow it back toward their home slots instead of leaving a
+ * marker behind, so the table never fills up with removed entries.
+ *
+ * The table's capacity is always a power of two, and the table doubles in
+ * size whenever the number of keys would exceed capacity * loadFactor.
+ */
+public class OpenAddressingMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    protected static final int DEFAULT_CAPACITY = 16;
+    protected static final double DEFAULT_LOAD_FACTOR = 0.5;
+
+    // slot i is empty when keys[i] is null
+    protected Object[] keys;
+    protected Object[] values;
+    protected int[] hashes;
+    protected int size = 0;
+    protected final double loadFactor;
+    // the table grows when size would exceed this
+    protected int threshold;
+
+    /**
+     * Creates an empty map with the default capacity and load factor.
+     */
+    public OpenAddressingMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates an empty map that can hold expectedSize keys without growing,
+     * with the default load factor.
+     *
+     * @param expectedSize the number of keys the map should hold
+     */
+    public OpenAddressingMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates an empty map that can hold expectedSize keys without growing.
+     *
+     * @param expectedSize the number of keys the map should hold
+     * @param loadFactor   the largest fraction of the table's slots that may
+     *                     hold keys
+     * @throws IllegalArgumentException if expectedSize is negative or
+     *                                  loadFactor is not between 0 and 1
+     */
+    public OpenAddressingMap(int expectedSize, double loadFactor) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expected size must not be negative");
+        if (!(loadFactor > 0 && loadFactor < 1))
+            throw new IllegalArgumentException("load factor must be between 0 and 1");
+        this.loadFactor = loadFactor;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * loadFactor < expectedSize)
+            capacity *= 2;
+        allocate(capacity);
+    }
+
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (keys[slot] != null)
+            throw new IllegalArgumentException("key " + key.toString() + " already present in map");
+        if (size + 1 > threshold) {
+            allocateAndCopy(keys.length * 2);
+            slot = find(key, hash);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        size++;
+    }
+
+    @Override
+    public boolean containsKey(KeyType key) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        return keys[find(key, hash(key))] != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int slot = find(key, hash(key));
+        if (keys[slot] == null)
+            throw new NoSuchElementException("key " + key.toString() + " not in map");
+        return (ValueType) values[slot];
+    }
+
+    /**
+     * Retrieves the value that a key maps to, with a single lookup and without
+     * throwing when the key is missing.
+     *
+     * @param key          the key to look up
+     * @param defaultValue the value to return when key is not stored
+     * @return the value that key maps to, or defaultValue
+     * @throws NullPointerException if key is null
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int slot = find(key, hash(key));
+        return keys[slot] == null ? defaultValue : (ValueType) values[slot];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int slot = find(key, hash(key));
+        if (keys[slot] == null)
+            throw new NoSuchElementException("key " + key.toString() + " not in map");
+        ValueType removed = (ValueType) values[slot];
+        size--;
+
+        // shift each following key of the same run back into the hole when
+        // the hole lies between that key's home slot and its current slot
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hashes[hole] = hashes[next];
+                hole = next;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        allocate(keys.length);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the slot holding key, or the empty slot where it would be put.
+     */
+    private int find(Object key, int hash) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null && (hashes[slot] != hash || !keys[slot].equals(key)))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // spreads the bits of a key's hashCode so that keys whose hash codes only
+    // differ in their high bits do not share a home slot
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        threshold = (int) (capacity * loadFactor);
+        size = 0;
+    }
+
+    // moves every key into a new table of the provided capacity
+    private void allocateAndCopy(int capacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int oldSize = size;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            hashes[slot] = oldHashes[i];
+        }
+        size = oldSize;
+    }
+
+}
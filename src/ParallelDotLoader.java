@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Loads a DOT file on several threads. The file is split into chunks that
+ * start and end at line breaks, each chunk is memory-mapped and parsed by its
+ * own DotParser on a ForkJoinPool into an EdgeBuffer, and each buffer is
+ * replayed to the handler as soon as the chunks before it have been, so that
+ * a handler sees exactly the nodes and edges a single DotParser would have
+ * passed it, while only a few chunks are buffered at a time.
+ *
+ * A line break is only a safe place to split when the chunk before it ends
+ * with a complete statement, outside any comment or quoted id, and without
+ * an edge attribute statement in effect. Every chunk parser reports whether
+ * its chunk did, and at the first chunk that did not, the rest of the file
+ * is parsed on the calling thread from where that chunk's last complete
+ * statement ended. Files whose statements end with semicolons, like the ones
+ * Backend loads, are therefore parsed in parallel throughout, and any other
+ * file is still parsed correctly. Each chunk is mapped separately, so files
+ * larger than 2 GB can be loaded.
+ */
+public class ParallelDotLoader {
+
+    /**
+     * The nodes and edges parsed from one chunk, in the order they were read.
+     * A node statement is stored as an entry whose target is null.
+     */
+    public static class EdgeBuffer implements DotParser.EdgeHandler {
+        protected String[] sources = new String[1024];
+        protected String[] targets = new String[1024];
+        protected double[] weights = new double[1024];
+        protected int size = 0;
+        // where the chunk's parser stopped, and the edge weights of the
+        // braces open there, from DotParser
+        protected long resumeOffset;
+        protected double[] scopeWeights;
+
+        @Override
+        public void node(String name) {
+            add(name, null, Double.NaN);
+        }
+
+        @Override
+        public void edge(String source, String target, double weight) {
+            add(source, target, weight);
+        }
+
+        private void add(String source, String target, double weight) {
+            if (size == sources.length) {
+                sources = java.util.Arrays.copyOf(sources, size * 2);
+                targets = java.util.Arrays.copyOf(targets, size * 2);
+                weights = java.util.Arrays.copyOf(weights, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * Passes every node and edge in this buffer to a handler, in the order
+         * they were read.
+         *
+         * @param handler receives the nodes and edges
+         */
+        public void replay(DotParser.EdgeHandler handler) {
+            for (int i = 0; i < size; i++) {
+                if (targets[i] == null)
+                    handler.node(sources[i]);
+                else
+                    handler.edge(sources[i], targets[i], weights[i]);
+            }
+        }
+
+        /**
+         * Returns the number of nodes and edges in this buffer.
+         *
+         * @return the number of entries
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+    // chunks are at least this long, so that small files are parsed whole
+    protected static final long DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+    // and at most this long, so that the chunks buffered at once stay small
+    protected static final long MAX_CHUNK_SIZE = 1 << 26;
+
+    protected final String weightAttribute;
+    protected final ForkJoinPool pool;
+    protected final long minChunkSize;
+
+    /**
+     * Creates a loader that parses on the common ForkJoinPool.
+     *
+     * @param weightAttribute the name of the attribute holding edge weights
+     */
+    public ParallelDotLoader(String weightAttribute) {
+        this(weightAttribute, ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param weightAttribute the name of the attribute holding edge weights
+     * @param pool            the pool that parses the chunks
+     * @param minChunkSize    the smallest number of bytes worth parsing on a
+     *                        thread of its own
+     */
+    public ParallelDotLoader(String weightAttribute, ForkJoinPool pool, long minChunkSize) {
+        if (minChunkSize <= 0)
+            throw new IllegalArgumentException("chunks must not be empty");
+        this.weightAttribute = weightAttribute;
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Parses a DOT file in parallel and passes its nodes and edges to a
+     * handler on the calling thread, in file order.
+     *
+     * @param file    the file to load
+     * @param handler receives the nodes and edges
+     * @return the number of edges passed to the handler
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a weight attribute is not an
+     *                                  unsigned decimal number, or the graph
+     *                                  uses syntax DotParser does not
+     *                                  support
+     */
+    public int load(Path file, DotParser.EdgeHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            int chunks = bounds.length - 1;
+            // chunks are parsed at most this far ahead of the one being replayed
+            int window = 2 * pool.getParallelism();
+            List<ForkJoinTask<EdgeBuffer>> tasks = new ArrayList<>(Collections.nCopies(chunks, null));
+            int submitted = 0;
+            int edges = 0;
+            try {
+                for (int i = 0; i < chunks; i++) {
+                    for (; submitted < chunks && submitted <= i + window; submitted++) {
+                        long start = bounds[submitted];
+                        long end = bounds[submitted + 1];
+                        boolean last = submitted == chunks - 1;
+                        tasks.set(submitted, pool.submit(() -> parseChunk(channel, start, end, last)));
+                    }
+                    EdgeBuffer buffer = tasks.set(i, null).join();
+                    buffer.replay(handler);
+                    for (int j = 0; j < buffer.size; j++)
+                        if (buffer.targets[j] != null)
+                            edges++;
+                    if (!endsAtStatement(buffer, bounds[i + 1])) {
+                        // the next chunk may have started inside a statement,
+                        // comment or quoted id, or missed an edge weight
+                        DotParser parser = new DotParser(weightAttribute, handler);
+                        channel.position(buffer.resumeOffset);
+                        edges += parser.parse(Channels.newInputStream(channel), buffer.resumeOffset,
+                                buffer.scopeWeights, false);
+                        break;
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                // chunks that were not needed must finish before the channel closes
+                for (ForkJoinTask<EdgeBuffer> task : tasks)
+                    if (task != null) {
+                        task.cancel(false);
+                        task.quietlyJoin();
+                    }
+            }
+            return edges;
+        }
+    }
+
+    // true if a chunk's parser stopped at its end, without any edge weight
+    // that the chunks after it would have to apply
+    private static boolean endsAtStatement(EdgeBuffer buffer, long end) {
+        if (buffer.resumeOffset != end)
+            return false;
+        for (double weight : buffer.scopeWeights)
+            if (!Double.isNaN(weight))
+                return false;
+        return true;
+    }
+
+    /**
+     * Splits the file into chunks for the pool's threads, moving each split
+     * forward to just after the next line break.
+     */
+    protected long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunks = Math.min(size / minChunkSize, 4L * pool.getParallelism());
+        chunks = Math.max(chunks, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        chunks = Math.max(chunks, 1);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        for (long i = 1; i < chunks; i++) {
+            long split = Math.max(size / chunks * i, bounds.get(bounds.size() - 1));
+            // find the first line break at or after split - 1
+            long position = split - 1;
+            boolean found = false;
+            while (!found && position < size) {
+                window.clear();
+                int n = channel.read(window, position);
+                if (n <= 0)
+                    break;
+                for (int j = 0; j < n; j++)
+                    if (window.get(j) == '\n') {
+                        position += j;
+                        found = true;
+                        break;
+                    }
+                if (!found)
+                    position += n;
+            }
+            if (!found || position + 1 >= size)
+                break;
+            if (position + 1 > bounds.get(bounds.size() - 1))
+                bounds.add(position + 1);
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = bounds.get(i);
+        return result;
+    }
+
+    // parses one chunk as if it started where a statement can; chunks other
+    // than the last may end inside a statement
+    private EdgeBuffer parseChunk(FileChannel channel, long start, long end, boolean last) {
+        EdgeBuffer buffer = new EdgeBuffer();
+        buffer.resumeOffset = end;
+        buffer.scopeWeights = new double[] { Double.NaN };
+        if (end == start)
+            return buffer;
+        try {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            DotParser parser = new DotParser(weightAttribute, buffer);
+            parser.parse(new ByteBufferInputStream(mapped), start, null, !last);
+            buffer.resumeOffset = parser.getResumeOffset();
+            buffer.scopeWeights = parser.getScopeWeights();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    // reads a mapped chunk in bulk into the parser's buffer
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The complete answer to one route query: the nodes along the route, the
+ * weight of each edge between them, the total cost of the route, and the
+ * number of nodes the searches that found it settled. A Route is immutable,
+ * and an empty Route stands for a query that has no route.
+ */
+public class Route<NodeType> {
+
+    protected final List<NodeType> nodes;
+    protected final List<Double> travelTimes;
+    protected final double totalCost;
+    protected final int settledNodes;
+
+    /**
+     * Creates a route.
+     *
+     * @param nodes        the nodes along the route, or an empty list for no
+     *                     route
+     * @param travelTimes  the weight of each edge along the route, one fewer
+     *                     than the number of nodes
+     * @param totalCost    the cost of the whole route
+     * @param settledNodes the number of nodes settled while searching
+     * @throws IllegalArgumentException if there is not exactly one travel
+     *                                  time between each two nodes
+     */
+    public Route(List<NodeType> nodes, List<Double> travelTimes, double totalCost, int settledNodes) {
+        if (travelTimes.size() != Math.max(0, nodes.size() - 1))
+            throw new IllegalArgumentException("a route needs one travel time between each two nodes");
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.travelTimes = Collections.unmodifiableList(new ArrayList<>(travelTimes));
+        this.totalCost = totalCost;
+        this.settledNodes = settledNodes;
+    }
+
+    /**
+     * Creates the empty route, which stands for a query that has no route.
+     *
+     * @param settledNodes the number of nodes settled while searching
+     * @return a route without nodes
+     */
+    public static <T> Route<T> empty(int settledNodes) {
+        return new Route<>(Collections.emptyList(), Collections.emptyList(), Double.POSITIVE_INFINITY,
+                settledNodes);
+    }
+
+    /**
+     * Return the nodes along this route, starting with its start and ending
+     * with its end.
+     *
+     * @return an unmodifiable list of the nodes, empty if there is no route
+     */
+    public List<NodeType> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Return the weight of each edge along this route, in the order they are
+     * traversed.
+     *
+     * @return an unmodifiable list of travel times, empty if there is no route
+     */
+    public List<Double> getTravelTimes() {
+        return travelTimes;
+    }
+
+    /**
+     * Return the total cost of this route.
+     *
+     * @return the sum of the travel times, or Double.POSITIVE_INFINITY if
+     *         there is no route
+     */
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    /**
+     * Return the number of nodes settled by the searches that found this
+     * route.
+     *
+     * @return the number of settled nodes
+     */
+    public int getSettledNodes() {
+        return settledNodes;
+    }
+
+    /**
+     * Check whether this is the empty route.
+     *
+     * @return true if there is no route
+     */
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * Returns the route that follows this route and then next, which must
+     * start where this route ends. Appending to or appending the empty route
+     * gives the empty route.
+     *
+     * @param next the route to follow after this one
+     * @return the combined route
+     * @throws IllegalArgumentException if next does not start where this
+     *                                  route ends
+     */
+    public Route<NodeType> append(Route<NodeType> next) {
+        int settled = settledNodes + next.settledNodes;
+        if (isEmpty() || next.isEmpty())
+            return empty(settled);
+        if (!nodes.get(nodes.size() - 1).equals(next.nodes.get(0)))
+            throw new IllegalArgumentException("the next route must start where this route ends");
+        List<NodeType> combinedNodes = new ArrayList<>(nodes);
+        combinedNodes.addAll(next.nodes.subList(1, next.nodes.size()));
+        List<Double> combinedTimes = new ArrayList<>(travelTimes);
+        combinedTimes.addAll(next.travelTimes);
+        return new Route<>(combinedNodes, combinedTimes, totalCost + next.totalCost, settled);
+    }
+
+    @Override
+    public String toString() {
+        return nodes.toString() + " " + travelTimes.toString() + " total " + totalCost;
+    }
+
+}
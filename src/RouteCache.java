@@ -0,0 +1,277 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded cache of query results that evicts the least recently used entry,
+ * or the oldest entry, once it is full. The cache is bounded by the total
+ * weight of its values, which is the number of values unless a weigher gives
+ * each value a weight of its own, such as its size in bytes, so that the
+ * cache can be held to a memory budget. Every entry belongs to one version
+ * of the graph it was computed from, such as the graph's modification count,
+ * which must grow with every change: looking up or storing an entry for a
+ * newer version drops every cached entry first, so that no result outlives a
+ * change to the graph. A value computed from an older version is not stored,
+ * and lookups for an older version miss, so that a query that finishes after
+ * the graph changed neither caches a stale result nor drops newer ones.
+ *
+ * All methods are thread-safe. A lookup holds the cache's lock only to read
+ * and reorder one entry, and computeIfAbsent computes missing values without
+ * holding it, so concurrent misses run their searches in parallel.
+ */
+public class RouteCache<KeyType, ValueType> {
+
+    /**
+     * Which entry to evict when the cache is full: the least recently used,
+     * or the one cached first.
+     */
+    public enum EvictionPolicy {
+        LRU, FIFO
+    }
+
+    // entries in eviction order, first evicted first
+    protected final LinkedHashMap<KeyType, ValueType> entries;
+    protected final EvictionPolicy policy;
+    protected final ToLongFunction<ValueType> weigher;
+    // the largest total weight to keep, and the total weight of the entries
+    protected long capacity;
+    protected long weight = 0;
+    // the graph version of every cached entry, or NO_VERSION after clear
+    protected int version = NO_VERSION;
+    protected static final int NO_VERSION = Integer.MIN_VALUE;
+
+    protected long hits = 0;
+    protected long misses = 0;
+    protected long evictions = 0;
+    protected long invalidations = 0;
+
+    /**
+     * Creates an empty cache that keeps up to capacity values and evicts the
+     * least recently used one.
+     *
+     * @param capacity the largest number of entries to keep, or 0 to cache
+     *                 nothing
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public RouteCache(int capacity) {
+        this(capacity, EvictionPolicy.LRU, value -> 1);
+    }
+
+    /**
+     * Creates an empty cache bounded by the total weight of its values.
+     *
+     * @param capacity the largest total weight to keep, or 0 to cache nothing
+     * @param policy   which entry to evict when the cache is full
+     * @param weigher  computes the weight of a value, which must not be
+     *                 negative and must not change while it is cached
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public RouteCache(long capacity, EvictionPolicy policy, ToLongFunction<ValueType> weigher) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity must not be negative");
+        this.capacity = capacity;
+        this.policy = policy;
+        this.weigher = weigher;
+        this.entries = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+    }
+
+    /**
+     * Retrieves the value cached for key, counting a hit or a miss.
+     *
+     * @param key     the key to look up
+     * @param version the current version of the graph
+     * @return the cached value, or null if key is not cached for version
+     */
+    public synchronized ValueType get(KeyType key, int version) {
+        ValueType value = checkVersion(version) ? entries.get(key) : null;
+        if (value == null)
+            misses++;
+        else
+            hits++;
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting entries until the cache is within its capacity
+     * again. A value heavier than the whole capacity, or computed from an
+     * older version of the graph than the cached entries, is not cached.
+     *
+     * @param key     the key to cache value under
+     * @param value   the value, which must not be null
+     * @param version the version of the graph value was computed from
+     */
+    public synchronized void put(KeyType key, ValueType value, int version) {
+        if (value == null)
+            throw new NullPointerException("null values not allowed");
+        long valueWeight = weigher.applyAsLong(value);
+        if (!checkVersion(version) || valueWeight > capacity)
+            return;
+        ValueType replaced = entries.put(key, value);
+        if (replaced != null)
+            weight -= weigher.applyAsLong(replaced);
+        weight += valueWeight;
+        evict();
+    }
+
+    /**
+     * Returns the value cached for key, or computes and caches it when it is
+     * missing. The value is computed without holding the cache's lock, so two
+     * threads that miss the same key at once may both compute it.
+     *
+     * @param key     the key to look up
+     * @param version the current version of the graph
+     * @param compute computes the value of a missing key
+     * @return the cached or computed value
+     */
+    public ValueType computeIfAbsent(KeyType key, int version, Function<KeyType, ValueType> compute) {
+        ValueType value = get(key, version);
+        if (value == null) {
+            value = compute.apply(key);
+            put(key, value, version);
+        }
+        return value;
+    }
+
+    /**
+     * Removes every entry, as when the cached results come from a graph that
+     * has been replaced, and forgets their version, so that the versions of a
+     * new graph need not be newer than those of the old one.
+     */
+    public synchronized void clear() {
+        if (!entries.isEmpty())
+            invalidations++;
+        entries.clear();
+        weight = 0;
+        version = NO_VERSION;
+    }
+
+    /**
+     * Changes the largest total weight to keep, evicting the entries that no
+     * longer fit.
+     *
+     * @param capacity the largest total weight to keep, or 0 to cache nothing
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public synchronized void setCapacity(long capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity must not be negative");
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Returns the largest total weight this cache keeps, which is the largest
+     * number of entries unless the cache has a weigher.
+     *
+     * @return the capacity
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the total weight of the cached values.
+     *
+     * @return the weight of all entries
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns which entry this cache evicts when it is full.
+     *
+     * @return the eviction policy
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of entries
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached value.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found no cached value.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to make room for others.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of times the whole cache was dropped because the
+     * graph changed or was replaced.
+     *
+     * @return the number of invalidations
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the fraction of lookups that found a cached value.
+     *
+     * @return hits divided by lookups, or 0 before the first lookup
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries weighing %d of %d, %d hits, %d misses (%.1f%% hit rate), "
+                + "%d evictions, %d invalidations", entries.size(), weight, capacity, hits, misses,
+                100 * getHitRate(), evictions, invalidations);
+    }
+
+    // evicts entries in eviction order until the total weight fits
+    private void evict() {
+        Iterator<Map.Entry<KeyType, ValueType>> iterator = entries.entrySet().iterator();
+        while (weight > capacity && iterator.hasNext()) {
+            weight -= weigher.applyAsLong(iterator.next().getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    // drops every entry when the graph's version is newer than theirs, and
+    // returns false if it is older, so that nothing is cached or found for it
+    private boolean checkVersion(int version) {
+        if (version < this.version)
+            return false;
+        if (version > this.version) {
+            clear();
+            this.version = version;
+        }
+        return true;
+    }
+
+}
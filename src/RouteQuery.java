@@ -0,0 +1,88 @@
+/**
+ * One request within a batch of route queries sent to the backend: the start
+ * location of a route, its end location, and optionally a location the route
+ * must lead through. Queries with the same locations are equal, so that
+ * queries can be used as keys of a RouteCache.
+ */
+public class RouteQuery {
+
+    protected final String startLocation;
+    protected final String viaLocation; // null when the route may take any path
+    protected final String endLocation;
+
+    /**
+     * Creates a query for the shortest route from startLocation to endLocation.
+     * @param startLocation the start location of the route
+     * @param endLocation the end location of the route
+     */
+    public RouteQuery(String startLocation, String endLocation) {
+        this(startLocation, null, endLocation);
+    }
+
+    /**
+     * Creates a query for the shortest route from startLocation to endLocation that leads through
+     * viaLocation.
+     * @param startLocation the start location of the route
+     * @param viaLocation a location the route should lead through, or null for none
+     * @param endLocation the end location of the route
+     */
+    public RouteQuery(String startLocation, String viaLocation, String endLocation) {
+        if (startLocation == null || endLocation == null)
+            throw new NullPointerException("start and end locations must not be null");
+        this.startLocation = startLocation;
+        this.viaLocation = viaLocation;
+        this.endLocation = endLocation;
+    }
+
+    /**
+     * Returns the start location of the route.
+     * @return the start location
+     */
+    public String getStartLocation() {
+        return startLocation;
+    }
+
+    /**
+     * Returns the location the route should lead through.
+     * @return the via location, or null if the route may take any path
+     */
+    public String getViaLocation() {
+        return viaLocation;
+    }
+
+    /**
+     * Returns the end location of the route.
+     * @return the end location
+     */
+    public String getEndLocation() {
+        return endLocation;
+    }
+
+    /**
+     * Checks whether the route should lead through a via location.
+     * @return true if this query has a via location
+     */
+    public boolean hasViaLocation() {
+        return viaLocation != null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof RouteQuery))
+            return false;
+        RouteQuery query = (RouteQuery) other;
+        return startLocation.equals(query.startLocation) && endLocation.equals(query.endLocation)
+                && java.util.Objects.equals(viaLocation, query.viaLocation);
+    }
+
+    @Override
+    public int hashCode() {
+        return (startLocation.hashCode() * 31 + java.util.Objects.hashCode(viaLocation)) * 31 + endLocation.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return startLocation + (viaLocation == null ? "" : " -> " + viaLocation) + " -> " + endLocation;
+    }
+
+}
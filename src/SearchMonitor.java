@@ -0,0 +1,19 @@
+/**
+ * Watches the shortest path searches run by one thread, so that a long search
+ * can report its progress and be cancelled part way through. A monitor is
+ * installed with SearchWorkspace.setMonitor and is called after every
+ * SearchWorkspace.MONITOR_INTERVAL settled nodes, on the searching thread.
+ */
+@FunctionalInterface
+public interface SearchMonitor {
+
+    /**
+     * Called while a search runs. Throwing a CancellationException abandons
+     * the search, and the exception propagates to the caller of the search.
+     *
+     * @param settledCount the number of nodes the search has settled so far
+     * @throws java.util.concurrent.CancellationException to cancel the search
+     */
+    void progress(int settledCount);
+
+}
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+
+/**
+ * The per-node state of one shortest path search: the best known cost,
+ * predecessor and edge from that predecessor of every node, which nodes have
+ * been settled, and the heap of
+ * nodes waiting to be settled. A workspace is reused from one search to the
+ * next. Instead of clearing its arrays, each search increments a generation
+ * number, and array entries stamped with an older generation are treated as
+ * unset, so starting a new search takes constant time.
+ *
+ * A workspace is not thread safe; DijkstraGraph keeps one for each thread.
+ * Every MONITOR_INTERVAL settled nodes, a workspace reports its progress to
+ * the SearchMonitor installed on the calling thread, if there is one.
+ */
+public class SearchWorkspace {
+
+    /**
+     * The number of settled nodes between two calls to a SearchMonitor.
+     */
+    public static final int MONITOR_INTERVAL = 1024;
+    protected static final int MONITOR_MASK = MONITOR_INTERVAL - 1;
+
+    // the monitor of the searches run by each thread, or null for none
+    private static final ThreadLocal<SearchMonitor> monitors = new ThreadLocal<>();
+
+    protected double[] cost = new double[0];
+    protected int[] parent = new int[0];
+    // the index of the edge each node was reached by, in whichever edge
+    // arrays the search follows, or -1 when the search does not record it
+    protected int[] parentEdge = new int[0];
+    // the Edge object each node was reached by, only grown by searches of
+    // linked nodes and edges, whose edges have no index
+    protected Object[] parentLink = new Object[0];
+    // cost and parent of node v are only valid when reached[v] == generation
+    protected int[] reached = new int[0];
+    // node v has been settled when settled[v] == generation
+    protected int[] settled = new int[0];
+    protected int generation = 0;
+
+    protected IndexedMinHeap heap = null;
+    // the number of nodes settled by the current search
+    protected int settledCount = 0;
+
+    /**
+     * Prepares this workspace for a new search over node indexes less than
+     * indexCount.
+     *
+     * @param indexCount the number of node indexes in the graph to search
+     */
+    public void begin(int indexCount) {
+        if (indexCount > reached.length) {
+            // grow by at least half to avoid repeated copying
+            int capacity = Math.max(indexCount, reached.length + (reached.length >> 1));
+            cost = Arrays.copyOf(cost, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            parentEdge = Arrays.copyOf(parentEdge, capacity);
+            reached = Arrays.copyOf(reached, capacity);
+            settled = Arrays.copyOf(settled, capacity);
+        }
+        if (heap != null)
+            heap.clear();
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            // stamps from earlier generations could be mistaken for new ones
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            generation = 1;
+        }
+        settledCount = 0;
+    }
+
+    /**
+     * Return an empty heap for the current search.
+     *
+     * @param arity the arity of the heap
+     * @return the heap of nodes waiting to be settled
+     */
+    public IndexedMinHeap getHeap(int arity) {
+        if (heap == null || heap.getArity() != arity)
+            heap = new IndexedMinHeap(reached.length, arity);
+        else
+            heap.ensureCapacity(reached.length);
+        return heap;
+    }
+
+    /**
+     * Check whether a node has been reached by the current search.
+     *
+     * @param node the index of the node
+     * @return true if a path to that node has been found
+     */
+    public boolean isReached(int node) {
+        return reached[node] == generation;
+    }
+
+    /**
+     * Return the cost of the best path to a node found so far.
+     *
+     * @param node the index of the node
+     * @return the cost of that path, or Double.POSITIVE_INFINITY if the node
+     *         has not been reached
+     */
+    public double getCost(int node) {
+        return reached[node] == generation ? cost[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Return the predecessor of a node along the best path to it found so far.
+     *
+     * @param node the index of a reached node
+     * @return the index of its predecessor, or -1 for the start node
+     */
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * Return the edge by which a node was reached along the best path to it
+     * found so far.
+     *
+     * @param node the index of a reached node
+     * @return the index of the edge from its predecessor, or -1 for the start
+     *         node or when the search did not record edges
+     */
+    public int getParentEdge(int node) {
+        return parentEdge[node];
+    }
+
+    /**
+     * Return the Edge object by which a node was reached, as recorded by
+     * reachByLink.
+     *
+     * @param node the index of a node reached by reachByLink
+     * @return the edge from its predecessor, or null for the start node
+     */
+    public Object getParentLink(int node) {
+        return parentLink[node];
+    }
+
+    /**
+     * Records a new best path to a node, without the edge it ends with.
+     *
+     * @param node        the index of the node
+     * @param nodeCost    the cost of the path to that node
+     * @param nodeParent  the index of the node's predecessor along that path,
+     *                    or -1 for the start node
+     */
+    public void reach(int node, double nodeCost, int nodeParent) {
+        reach(node, nodeCost, nodeParent, -1);
+    }
+
+    /**
+     * Records a new best path to a node, so that the weight of its last edge
+     * can be read back without looking the edge up again.
+     *
+     * @param node        the index of the node
+     * @param nodeCost    the cost of the path to that node
+     * @param nodeParent  the index of the node's predecessor along that path,
+     *                    or -1 for the start node
+     * @param edge        the index of the edge from nodeParent to node, or -1
+     *                    for the start node
+     */
+    public void reach(int node, double nodeCost, int nodeParent, int edge) {
+        reached[node] = generation;
+        cost[node] = nodeCost;
+        parent[node] = nodeParent;
+        parentEdge[node] = edge;
+    }
+
+    /**
+     * Does the same as reach, for an edge object of a graph of linked nodes
+     * and edges.
+     *
+     * @param node        the index of the node
+     * @param nodeCost    the cost of the path to that node
+     * @param nodeParent  the index of the node's predecessor along that path,
+     *                    or -1 for the start node
+     * @param link        the edge from nodeParent to node, or null for the
+     *                    start node
+     */
+    public void reachByLink(int node, double nodeCost, int nodeParent, Object link) {
+        if (parentLink.length < reached.length)
+            parentLink = new Object[reached.length];
+        reach(node, nodeCost, nodeParent, -1);
+        parentLink[node] = link;
+    }
+
+    /**
+     * Check whether a node has been settled by the current search.
+     *
+     * @param node the index of the node
+     * @return true if that node's shortest path is known
+     */
+    public boolean isSettled(int node) {
+        return settled[node] == generation;
+    }
+
+    /**
+     * Marks a node as settled, meaning its shortest path is known.
+     *
+     * @param node the index of the node
+     */
+    public void settle(int node) {
+        settled[node] = generation;
+        if ((++settledCount & MONITOR_MASK) == 0)
+            report(settledCount);
+    }
+
+    /**
+     * Return the number of nodes settled by the current search.
+     *
+     * @return the number of settled nodes
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Installs a monitor on every search the calling thread runs from now on,
+     * replacing the previous monitor.
+     *
+     * @param monitor the monitor, or null to stop monitoring
+     */
+    public static void setMonitor(SearchMonitor monitor) {
+        if (monitor == null)
+            monitors.remove();
+        else
+            monitors.set(monitor);
+    }
+
+    /**
+     * Passes the progress of a search to the calling thread's monitor, for
+     * searches that count settled nodes without a workspace.
+     *
+     * @param settledCount the number of nodes settled so far
+     * @throws java.util.concurrent.CancellationException if the monitor
+     *                                                    cancels the search
+     */
+    protected static void report(int settledCount) {
+        SearchMonitor monitor = monitors.get();
+        if (monitor != null)
+            monitor.progress(settledCount);
+    }
+
+}
@@ -0,0 +1,285 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The result of one search from a single source node: the cost of the
+ * shortest path from that source to every node the search reached, together
+ * with the predecessor of each of those nodes and the edge leading to it from
+ * that predecessor. All of this is stored in primitive arrays indexed like the
+ * FrozenGraph that was searched, so the path to any reached node and the
+ * weight of each of its edges are extracted in time proportional to the
+ * path's length, without searching again.
+ *
+ * When the search was bounded by a maximum cost, only nodes whose shortest
+ * path costs no more than that bound are reached. When it was stopped once a
+ * set of target nodes had been settled, only the nodes settled before then
+ * are reached.
+ */
+public class ShortestPathTree<NodeType> {
+
+    protected final FrozenGraph<NodeType> graph;
+    protected final int source;
+    // cost of the shortest path to each node, infinite for unreached nodes
+    protected final double[] cost;
+    // index of each reached node's predecessor and position of the edge from
+    // it, both -1 for the source and for unreached nodes
+    protected final int[] parent;
+    protected final int[] parentEdge;
+    protected final double costBound;
+    protected final int settledCount;
+
+    /**
+     * Constructor for ShortestPathTree, used by DijkstraGraph.shortestPathTree.
+     *
+     * @param graph        the frozen graph that was searched
+     * @param source       index of the source node
+     * @param cost         the path cost of each node by index
+     * @param parent       the predecessor index of each node
+     * @param parentEdge   the position of the edge from each node's predecessor
+     * @param costBound    the maximum path cost the search reached
+     * @param settledCount the number of nodes settled by the search
+     */
+    protected ShortestPathTree(FrozenGraph<NodeType> graph, int source, double[] cost,
+            int[] parent, int[] parentEdge, double costBound, int settledCount) {
+        this.graph = graph;
+        this.source = source;
+        this.cost = cost;
+        this.parent = parent;
+        this.parentEdge = parentEdge;
+        this.costBound = costBound;
+        this.settledCount = settledCount;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from source until every node whose path costs
+     * no more than costBound has been settled.
+     *
+     * @param graph     the frozen graph to search
+     * @param source    index of the source node
+     * @param costBound the maximum path cost to search, or
+     *                  Double.POSITIVE_INFINITY to search the whole graph
+     * @param heap      an empty heap with capacity for every index of graph
+     * @return the tree of shortest paths from source
+     */
+    protected static <T> ShortestPathTree<T> search(FrozenGraph<T> graph, int source,
+            double costBound, IndexedMinHeap heap) {
+        return search(graph, source, costBound, null, 0, heap);
+    }
+
+    /**
+     * Does the same as search, but stops as soon as every target node has been
+     * settled, so that the tree only reaches the nodes settled until then.
+     *
+     * @param graph       the frozen graph to search
+     * @param source      index of the source node
+     * @param costBound   the maximum path cost to search
+     * @param targets     targets[v] is true when node v is a target, or null
+     *                    to search without targets
+     * @param targetCount the number of true entries in targets
+     * @param heap        an empty heap with capacity for every index of graph
+     * @return the tree of shortest paths from source
+     */
+    protected static <T> ShortestPathTree<T> search(FrozenGraph<T> graph, int source,
+            double costBound, boolean[] targets, int targetCount, IndexedMinHeap heap) {
+        int indexCount = graph.getIndexCount();
+        double[] cost = new double[indexCount];
+        int[] parent = new int[indexCount];
+        int[] parentEdge = new int[indexCount];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
+        Arrays.fill(parentEdge, -1);
+
+        int settledCount = 0;
+        cost[source] = 0;
+        heap.insert(source, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            if ((++settledCount & SearchWorkspace.MONITOR_MASK) == 0)
+                SearchWorkspace.report(settledCount);
+            if (targets != null && targets[node] && --targetCount == 0)
+                break;
+
+            // relax the edges leaving the current node, ignoring paths that
+            // cost more than the bound; settled nodes are never improved on
+            // because edge weights are not negative
+            double nodeCost = cost[node];
+            for (int e = graph.edgesBegin(node); e < graph.edgesEnd(node); e++) {
+                int next = graph.target(e);
+                double newCost = nodeCost + graph.weight(e);
+                if (newCost < cost[next] && newCost <= costBound) {
+                    cost[next] = newCost;
+                    parent[next] = node;
+                    parentEdge[next] = e;
+                    heap.insertOrDecrease(next, newCost);
+                }
+            }
+        }
+        // nodes left in the heap were reached but not settled, so their costs
+        // may not be final
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            cost[node] = Double.POSITIVE_INFINITY;
+            parent[node] = -1;
+            parentEdge[node] = -1;
+        }
+        return new ShortestPathTree<>(graph, source, cost, parent, parentEdge, costBound, settledCount);
+    }
+
+    /**
+     * Return the data of the source node.
+     *
+     * @return the data of the node every path starts at
+     */
+    public NodeType getSource() {
+        return graph.getData(source);
+    }
+
+    /**
+     * Return the maximum path cost the search reached.
+     *
+     * @return the cost bound, or Double.POSITIVE_INFINITY if the whole graph
+     *         was searched
+     */
+    public double getCostBound() {
+        return costBound;
+    }
+
+    /**
+     * Return the number of nodes settled by the search, which is the number of
+     * nodes this tree reaches.
+     *
+     * @return the number of settled nodes
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Return the frozen graph this tree was computed from.
+     *
+     * @return the searched graph
+     */
+    public FrozenGraph<NodeType> getGraph() {
+        return graph;
+    }
+
+    /**
+     * Check whether the search reached the node containing data.
+     *
+     * @param data the node contents to look for
+     * @return true if a path from the source to that node was found
+     */
+    public boolean reaches(NodeType data) {
+        int index = graph.indexOf(data);
+        return index >= 0 && cost[index] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cost of the shortest path from the source to the node with
+     * the provided index in the searched graph.
+     *
+     * @param index the index of the destination node
+     * @return the cost of the shortest path to that node, or
+     *         Double.POSITIVE_INFINITY if it was not reached
+     */
+    public double costAtIndex(int index) {
+        return cost[index];
+    }
+
+    /**
+     * Returns the cost of the shortest path from the source to the node
+     * containing data.
+     *
+     * @param data the data item in the destination node
+     * @return the cost of the shortest path to that node
+     * @throws NoSuchElementException when data does not correspond to a graph
+     *                                node or that node was not reached
+     */
+    public double costTo(NodeType data) {
+        return cost[reachedIndexOf(data)];
+    }
+
+    /**
+     * Returns the data of the nodes along the shortest path from the source to
+     * the node containing data, starting with the source and ending with data.
+     *
+     * @param data the data item in the destination node
+     * @return list of data items from nodes along that path
+     * @throws NoSuchElementException when data does not correspond to a graph
+     *                                node or that node was not reached
+     */
+    public List<NodeType> pathTo(NodeType data) {
+        int end = reachedIndexOf(data);
+        // follow the parent indexes back from the end node
+        LinkedList<NodeType> path = new LinkedList<>();
+        for (int node = end; node != -1; node = parent[node])
+            path.addFirst(graph.getData(node));
+        return path;
+    }
+
+    /**
+     * Returns the weight of each edge along the shortest path from the source
+     * to the node containing data, in the order they are traversed.
+     *
+     * @param data the data item in the destination node
+     * @return list of edge weights along that path, empty when data is the
+     *         source
+     * @throws NoSuchElementException when data does not correspond to a graph
+     *                                node or that node was not reached
+     */
+    public List<Double> travelTimesTo(NodeType data) {
+        int end = reachedIndexOf(data);
+        LinkedList<Double> times = new LinkedList<>();
+        for (int node = end; parent[node] != -1; node = parent[node])
+            times.addFirst(graph.weight(parentEdge[node]));
+        return times;
+    }
+
+    /**
+     * Returns the shortest route from the source to the node containing data,
+     * read from this tree's parent pointers without searching again. The
+     * route's settled nodes are those settled by the search that built this
+     * tree.
+     *
+     * @param data the data item in the destination node
+     * @return the shortest route from the source to that node
+     * @throws NoSuchElementException when data does not correspond to a graph
+     *                                node or that node was not reached
+     */
+    public Route<NodeType> routeTo(NodeType data) {
+        int end = reachedIndexOf(data);
+        return new Route<>(pathTo(data), travelTimesTo(data), cost[end], settledCount);
+    }
+
+    /**
+     * Returns an estimate of the heap memory used by this tree's arrays, which
+     * grows with the number of indexes of the searched graph rather than with
+     * the number of nodes the tree reaches.
+     *
+     * @return the approximate size of this tree in bytes
+     */
+    public long getMemorySize() {
+        // 8 bytes of cost and 4 each of parent and parentEdge per index, plus
+        // the headers of the three arrays and of this object
+        return 16L * cost.length + 3 * 16 + 48;
+    }
+
+    /**
+     * Finds the index of a reached node's data.
+     *
+     * @throws NoSuchElementException when data does not correspond to a graph
+     *                                node or that node was not reached
+     */
+    private int reachedIndexOf(NodeType data) {
+        int index = graph.indexOf(data);
+        if (index < 0)
+            throw new NoSuchElementException("That key is not in the graph");
+        if (cost[index] == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("No path from " + getSource().toString() + " to "
+                    + data.toString());
+        return index;
+    }
+
+}
@@ -0,0 +1,290 @@
+import java.util.Arrays;
+
+/**
+ * Chooses the order in which to visit a set of waypoints between a fixed
+ * start and a fixed end, so that the total cost of the trip is as small as
+ * possible. The waypoints are given by a square table of travel costs in
+ * which row and column 0 are the start, the last row and column are the end,
+ * and the rows and columns in between are the stops, which may be visited in
+ * any order. Costs need not be symmetric, since one way streets make going
+ * from a to b cost more than going from b to a. Pairs without a path have an
+ * infinite cost.
+ *
+ * Up to EXACT_LIMIT stops are ordered optimally by dynamic programming over
+ * the subsets of stops, the Held-Karp algorithm. More stops are ordered by
+ * starting from the nearest neighbor tour and improving it with 2-opt moves,
+ * which reverse a stretch of the tour, and Or-opt moves, which move a stretch
+ * of up to three stops elsewhere, until no move shortens it.
+ */
+public class WaypointOrder {
+
+    /**
+     * The most stops that plan orders exactly. Held-Karp takes time and
+     * memory exponential in the number of stops, and the 2^12 subsets of 12
+     * stops take under a megabyte and about a millisecond.
+     */
+    public static final int EXACT_LIMIT = 12;
+
+    /**
+     * Chooses the order of the waypoints, exactly for up to EXACT_LIMIT stops
+     * and heuristically for more.
+     *
+     * @param costs the travel costs between the waypoints, start first and
+     *              end last
+     * @return the indexes of the waypoints in visiting order, starting with 0
+     *         and ending with costs.length - 1
+     * @throws IllegalArgumentException if there are fewer than two waypoints
+     *                                  or costs is not square
+     */
+    public static int[] plan(double[][] costs) {
+        check(costs);
+        if (costs.length - 2 <= EXACT_LIMIT)
+            return optimal(costs);
+        return improved(costs);
+    }
+
+    /**
+     * Chooses the order of the waypoints with the smallest total cost, by
+     * dynamic programming over the subsets of stops.
+     *
+     * @param costs the travel costs between the waypoints, start first and
+     *              end last
+     * @return the indexes of the waypoints in the best visiting order
+     * @throws IllegalArgumentException if there are fewer than two waypoints,
+     *                                  costs is not square, or there are more
+     *                                  than 16 stops
+     */
+    public static int[] optimal(double[][] costs) {
+        check(costs);
+        int stops = costs.length - 2;
+        if (stops > 16)
+            throw new IllegalArgumentException("too many stops to order exactly: " + stops);
+        int end = costs.length - 1;
+        // best[set * stops + last] is the cost of the cheapest trip from the
+        // start through every stop in set, ending at stop last
+        int subsets = 1 << stops;
+        double[] best = new double[subsets * Math.max(stops, 1)];
+        int[] previous = new int[best.length];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        for (int last = 0; last < stops; last++) {
+            best[(1 << last) * stops + last] = costs[0][last + 1];
+            previous[(1 << last) * stops + last] = -1;
+        }
+        // every subset is larger than the subsets it extends, so they are
+        // complete by the time it is reached
+        for (int set = 1; set < subsets; set++) {
+            for (int last = 0; last < stops; last++) {
+                double cost = best[set * stops + last];
+                if ((set & (1 << last)) == 0 || cost == Double.POSITIVE_INFINITY)
+                    continue;
+                for (int next = 0; next < stops; next++) {
+                    if ((set & (1 << next)) != 0)
+                        continue;
+                    int extended = (set | (1 << next)) * stops + next;
+                    double newCost = cost + costs[last + 1][next + 1];
+                    if (newCost < best[extended]) {
+                        best[extended] = newCost;
+                        previous[extended] = last;
+                    }
+                }
+            }
+        }
+
+        int[] order = new int[costs.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        if (stops == 0)
+            return order;
+        // pick the cheapest last stop before the end, then follow the
+        // previous stops back to the start
+        int full = subsets - 1;
+        int last = 0;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int stop = 0; stop < stops; stop++) {
+            double cost = best[full * stops + stop] + costs[stop + 1][end];
+            if (cost < bestCost) {
+                bestCost = cost;
+                last = stop;
+            }
+        }
+        // without any finite trip, every order is as good as the given one
+        if (bestCost == Double.POSITIVE_INFINITY)
+            return order;
+        int set = full;
+        for (int position = stops; position >= 1; position--) {
+            order[position] = last + 1;
+            int before = previous[set * stops + last];
+            set &= ~(1 << last);
+            last = before;
+        }
+        return order;
+    }
+
+    /**
+     * Chooses a short order of the waypoints quickly: the nearest neighbor
+     * tour, shortened by 2-opt and Or-opt moves until neither finds an
+     * improvement. The order is usually within a few percent of the best.
+     *
+     * @param costs the travel costs between the waypoints, start first and
+     *              end last
+     * @return the indexes of the waypoints in visiting order, starting with 0
+     *         and ending with costs.length - 1
+     * @throws IllegalArgumentException if there are fewer than two waypoints
+     *                                  or costs is not square
+     */
+    public static int[] improved(double[][] costs) {
+        check(costs);
+        costs = withoutInfinities(costs);
+        int[] order = nearestNeighbor(costs);
+        boolean improving = true;
+        while (improving)
+            improving = twoOpt(costs, order) | orOpt(costs, order);
+        return order;
+    }
+
+    /**
+     * Returns the total cost of visiting the waypoints in order.
+     *
+     * @param costs the travel costs between the waypoints
+     * @param order the indexes of the waypoints in visiting order
+     * @return the sum of the costs between consecutive waypoints
+     */
+    public static double cost(double[][] costs, int[] order) {
+        double total = 0;
+        for (int i = 0; i + 1 < order.length; i++)
+            total += costs[order[i]][order[i + 1]];
+        return total;
+    }
+
+    // visits the cheapest unvisited stop next, starting at the start
+    private static int[] nearestNeighbor(double[][] costs) {
+        int end = costs.length - 1;
+        int[] order = new int[costs.length];
+        boolean[] visited = new boolean[costs.length];
+        order[end] = end;
+        for (int position = 1; position < end; position++) {
+            int from = order[position - 1];
+            int nearest = -1;
+            for (int stop = 1; stop < end; stop++)
+                if (!visited[stop] && (nearest == -1 || costs[from][stop] < costs[from][nearest]))
+                    nearest = stop;
+            visited[nearest] = true;
+            order[position] = nearest;
+        }
+        return order;
+    }
+
+    // reverses the stretch order[i..j] of stops whenever that is cheaper,
+    // which with asymmetric costs also changes the cost of the stretch itself
+    private static boolean twoOpt(double[][] costs, int[] order) {
+        int end = order.length - 1;
+        boolean improved = false;
+        // forward[k] and backward[k] are the costs of order[0..k] travelled
+        // forward and in reverse
+        double[] forward = new double[order.length];
+        double[] backward = new double[order.length];
+        prefixCosts(costs, order, forward, backward);
+        for (int i = 1; i < end; i++) {
+            for (int j = i + 1; j < end; j++) {
+                double before = costs[order[i - 1]][order[i]] + (forward[j] - forward[i])
+                        + costs[order[j]][order[j + 1]];
+                double after = costs[order[i - 1]][order[j]] + (backward[j] - backward[i])
+                        + costs[order[i]][order[j + 1]];
+                if (after < before - 1e-9) {
+                    for (int a = i, b = j; a < b; a++, b--) {
+                        int swapped = order[a];
+                        order[a] = order[b];
+                        order[b] = swapped;
+                    }
+                    prefixCosts(costs, order, forward, backward);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    // moves a stretch of one to three stops to wherever it is cheapest,
+    // keeping its direction
+    private static boolean orOpt(double[][] costs, int[] order) {
+        int end = order.length - 1;
+        boolean improved = false;
+        for (int length = 1; length <= 3; length++) {
+            for (int i = 1; i + length - 1 < end; i++) {
+                int j = i + length - 1;
+                int first = order[i];
+                int last = order[j];
+                // the cost saved by taking order[i..j] out of the tour
+                double removed = costs[order[i - 1]][first] + costs[last][order[j + 1]]
+                        - costs[order[i - 1]][order[j + 1]];
+                int bestAt = -1;
+                double bestGain = 1e-9;
+                // insert between order[k] and order[k + 1], outside the stretch
+                for (int k = 0; k < end; k++) {
+                    if (k >= i - 1 && k <= j)
+                        continue;
+                    double added = costs[order[k]][first] + costs[last][order[k + 1]]
+                            - costs[order[k]][order[k + 1]];
+                    if (removed - added > bestGain) {
+                        bestGain = removed - added;
+                        bestAt = k;
+                    }
+                }
+                if (bestAt >= 0) {
+                    move(order, i, j, bestAt);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    // moves order[i..j] to just after order[k], where k is outside i - 1..j
+    private static void move(int[] order, int i, int j, int k) {
+        int[] stretch = Arrays.copyOfRange(order, i, j + 1);
+        int length = stretch.length;
+        if (k < i) {
+            System.arraycopy(order, k + 1, order, k + 1 + length, i - k - 1);
+            System.arraycopy(stretch, 0, order, k + 1, length);
+        } else {
+            System.arraycopy(order, j + 1, order, i, k - j);
+            System.arraycopy(stretch, 0, order, k - length + 1, length);
+        }
+    }
+
+    private static void prefixCosts(double[][] costs, int[] order, double[] forward, double[] backward) {
+        for (int k = 1; k < order.length; k++) {
+            forward[k] = forward[k - 1] + costs[order[k - 1]][order[k]];
+            backward[k] = backward[k - 1] + costs[order[k]][order[k - 1]];
+        }
+    }
+
+    // replaces infinite costs with a cost larger than any trip of finite
+    // costs, so that the moves compare trips through missing paths by how
+    // many of them they use instead of getting infinite or undefined gains
+    private static double[][] withoutInfinities(double[][] costs) {
+        double largest = 0;
+        for (double[] row : costs)
+            for (double cost : row)
+                if (cost != Double.POSITIVE_INFINITY)
+                    largest = Math.max(largest, cost);
+        double missing = (largest + 1) * costs.length;
+        double[][] finite = new double[costs.length][];
+        for (int i = 0; i < costs.length; i++) {
+            finite[i] = costs[i].clone();
+            for (int j = 0; j < finite[i].length; j++)
+                if (finite[i][j] == Double.POSITIVE_INFINITY)
+                    finite[i][j] = missing;
+        }
+        return finite;
+    }
+
+    private static void check(double[][] costs) {
+        if (costs.length < 2)
+            throw new IllegalArgumentException("a trip needs a start and an end");
+        for (double[] row : costs)
+            if (row.length != costs.length)
+                throw new IllegalArgumentException("the cost table must be square");
+    }
+
+}